@@ -0,0 +1,281 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Tests the {@link ForecastCache} of the {@link WeatherProvider}: that queries of a city's
+ * forecast are served from it, and that changes to the weather invalidate exactly the cached
+ * forecasts that contain them.
+ */
+public class TestForecastCache extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "weather.db";
+    private static final int NUM_DAYS = 16;
+    private static final long START_DATE = 16270;
+
+    private static final String[] PROJECTION = new String[] {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COL_DATE,
+            WeatherEntry.COL_DESCRIPTION,
+            WeatherEntry.COL_TEMP_HI,
+            WeatherEntry.COL_TEMP_LO,
+            LocationEntry.COL_LATITUDE,
+            LocationEntry.COL_LONGITUDE,
+    };
+    private static final String SORT_ORDER = WeatherEntry.COL_DATE + " ASC";
+
+    private WeatherProvider mProvider;
+    private ForecastCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mProvider = new WeatherProvider();
+        mProvider.attachInfo(mContext, null);
+        mCache = mProvider.getForecastCache();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mProvider.shutdown();
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testQuery_HitAfterMiss() {
+        insertCity("City1", 1, 20.0);
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate("City1", START_DATE + 2);
+
+        final String cached1 = dump(mProvider.query(uri, PROJECTION, null, null, SORT_ORDER));
+        final String cached2 = dump(mProvider.query(uri, PROJECTION, null, null, SORT_ORDER));
+
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+        // a selection is not served from the cache, so this queries the database
+        final String uncached = dump(mProvider.query(uri, PROJECTION, "1", null, SORT_ORDER));
+        assertEquals(uncached, cached1);
+        assertEquals(uncached, cached2);
+        assertEquals(1, mCache.getMissCount());
+    }
+
+    public void testQuery_DateRange() {
+        insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDateRange("City1", START_DATE,
+                START_DATE + 7);
+        final Cursor cursor = mProvider.query(uri, PROJECTION, null, null, SORT_ORDER);
+        assertEquals(7, cursor.getCount());
+        cursor.close();
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    public void testQuery_SingleDate() {
+        insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDate("City1", START_DATE + 3);
+        final Cursor cursor = mProvider.query(uri, PROJECTION, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(START_DATE + 3, cursor.getLong(1));
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    public void testQuery_UnknownCity() {
+        final Cursor cursor = mProvider.query(
+                WeatherEntry.buildUriFromCityIdAndStartDate("City1", START_DATE), PROJECTION,
+                null, null, SORT_ORDER);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+        assertEquals(0, mCache.getEntryCount());
+    }
+
+    public void testInsert_InvalidatesOnlyMatchingLocation() {
+        final long locationId1 = insertCity("City1", 1, 20.0);
+        insertCity("City2", 2, 20.0);
+        queryForecast("City1");
+        queryForecast("City2");
+
+        mProvider.insert(WeatherEntry.CONTENT_URI, createWeatherValues(locationId1,
+                START_DATE + 5, 30.0));
+
+        assertEquals(1, mCache.getEntryCount());
+        assertNotNull(mCache.getWindow("City2", START_DATE));
+        assertEquals(30.0, queryTempHi("City1", START_DATE + 5), 0.0);
+    }
+
+    public void testInsert_BeforeStartDate() {
+        final long locationId = insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        // a day before the cached forecast does not change it
+        mProvider.insert(WeatherEntry.CONTENT_URI, createWeatherValues(locationId,
+                START_DATE - 1, 30.0));
+
+        assertNotNull(mCache.getWindow("City1", START_DATE));
+    }
+
+    public void testDelete_EndDate() {
+        insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        mProvider.delete(WeatherEntry.buildUriFromEndDate(START_DATE + 1), null, null);
+
+        assertEquals(0, mCache.getEntryCount());
+        assertEquals(NUM_DAYS - 1, queryForecast("City1"));
+    }
+
+    public void testUpdate_CacheInfoDoesNotInvalidate() {
+        insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_ETAG, "\"abc\"");
+        mProvider.update(LocationEntry.CONTENT_URI, cv, null, null);
+        assertEquals(1, mCache.getEntryCount());
+
+        cv.clear();
+        cv.put(LocationEntry.COL_LATITUDE, 1.5);
+        mProvider.update(LocationEntry.CONTENT_URI, cv, null, null);
+        assertEquals(0, mCache.getEntryCount());
+    }
+
+    public void testApplyBatch() throws Exception {
+        final long locationId = insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        ops.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValues(createWeatherValues(locationId, START_DATE + 5, 30.0))
+                .build());
+        mProvider.applyBatch(ops);
+
+        assertEquals(0, mCache.getEntryCount());
+        assertEquals(30.0, queryTempHi("City1", START_DATE + 5), 0.0);
+    }
+
+    public void testEviction() {
+        final int numCities = 100;
+        for (int i = 1; i <= numCities; i++) {
+            insertCity("City" + i, i, 20.0);
+        }
+        for (int i = 1; i <= numCities; i++) {
+            queryForecast("City" + i);
+        }
+
+        assertTrue(mCache.getEvictionCount() > 0);
+        assertTrue(mCache.getSize() <= ForecastCache.MAX_SIZE_BYTES);
+        // the most recently queried forecast is still cached
+        assertNotNull(mCache.getWindow("City" + numCities, START_DATE));
+    }
+
+    public void testCall_Stats() {
+        insertCity("City1", 1, 20.0);
+        queryForecast("City1");
+        queryForecast("City1");
+
+        final Bundle stats = mProvider.call(WeatherContract.METHOD_GET_FORECAST_CACHE_STATS,
+                null, null);
+        assertEquals(1, stats.getLong(WeatherContract.KEY_HIT_COUNT));
+        assertEquals(1, stats.getLong(WeatherContract.KEY_MISS_COUNT));
+        assertEquals(0, stats.getLong(WeatherContract.KEY_EVICTION_COUNT));
+        assertEquals(1, stats.getInt(WeatherContract.KEY_ENTRY_COUNT));
+        assertTrue(stats.getLong(WeatherContract.KEY_SIZE_BYTES) > 0);
+    }
+
+    /**
+     * Inserts a location with the given city ID and {@link #NUM_DAYS} days of weather from
+     * {@link #START_DATE}.
+     * @return the ID of the location.
+     */
+    private long insertCity(String cityId, long locationId, double tempHi) {
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry._ID, locationId);
+        cv.put(LocationEntry.COL_CITY_ID, cityId);
+        cv.put(LocationEntry.COL_LATITUDE, 43.45);
+        cv.put(LocationEntry.COL_LONGITUDE, -80.49);
+        mProvider.insert(LocationEntry.CONTENT_URI, cv);
+
+        final ContentValues[] values = new ContentValues[NUM_DAYS];
+        for (int i = 0; i < NUM_DAYS; i++) {
+            values[i] = createWeatherValues(locationId, START_DATE + i, tempHi);
+        }
+        mProvider.bulkInsert(WeatherEntry.CONTENT_URI, values);
+        return locationId;
+    }
+
+    private static ContentValues createWeatherValues(long locationId, long date, double tempHi) {
+        final ContentValues cv = new ContentValues();
+        cv.put(WeatherEntry.COL_LOCATION_ID, locationId);
+        cv.put(WeatherEntry.COL_DATE, date);
+        cv.put(WeatherEntry.COL_DESCRIPTION, "Clear");
+        cv.put(WeatherEntry.COL_TEMP_HI, tempHi);
+        cv.put(WeatherEntry.COL_TEMP_LO, 10.5);
+        return cv;
+    }
+
+    /**
+     * Queries the forecast of the given city from {@link #START_DATE}, as the forecast list does.
+     * @return the number of days.
+     */
+    private int queryForecast(String cityId) {
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate(cityId, START_DATE);
+        final Cursor cursor = mProvider.query(uri, PROJECTION, null, null, SORT_ORDER);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private double queryTempHi(String cityId, long date) {
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate(cityId, START_DATE);
+        final Cursor cursor = mProvider.query(uri, PROJECTION, null, null, SORT_ORDER);
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.getLong(1) == date) {
+                    return cursor.getDouble(3);
+                }
+            }
+            fail("no weather on " + date);
+            return 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the column names and values of the given cursor, as a string, and closes it.
+     */
+    private static String dump(Cursor cursor) {
+        final StringBuilder sb = new StringBuilder();
+        try {
+            for (final String columnName : cursor.getColumnNames()) {
+                sb.append(columnName).append(',');
+            }
+            while (cursor.moveToNext()) {
+                sb.append('\n');
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    sb.append(cursor.getString(i)).append(',');
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return sb.toString();
+    }
+
+}
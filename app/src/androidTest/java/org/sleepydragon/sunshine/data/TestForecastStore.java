@@ -0,0 +1,243 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+import org.sleepydragon.sunshine.forecast.HttpCacheInfo;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TestForecastStore extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "weather.db";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(DATABASE_NAME);
+        TestWeatherProvider.clearCaches(mContext);
+    }
+
+    private static ForecastBatch createForecast(int numDays, float high) {
+        final ForecastBatch forecast = new ForecastBatch(numDays);
+        for (int i = 0; i < numDays; i++) {
+            forecast.add(1405789200 + (i * 86400), "Clear", "01d", high, 10.0f, 67f, 986.8f, 2.5f,
+                    202.5f);
+        }
+        forecast.setCoordinates("43.45", "-80.48");
+        return forecast;
+    }
+
+    public void testSave() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastStore store = new ForecastStore(cr);
+        final long locationId1 = store.save("City1", createForecast(7, 20.0f), null);
+        final long locationId2 = store.save("City1", createForecast(7, 25.0f), null);
+        assertEquals(locationId1, locationId2);
+
+        final String[] projection = new String[] {WeatherEntry.COL_TEMP_HI};
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId("City1"), projection, null,
+                null, null);
+        assertEquals(7, cursor.getCount());
+        while (cursor.moveToNext()) {
+            assertEquals(25.0, cursor.getDouble(0), 0.0);
+        }
+        cursor.close();
+    }
+
+    public void testSave_KeepsWeatherIds() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastStore store = new ForecastStore(cr);
+        store.save("City1", createForecast(7, 20.0f), null);
+        final List<Long> ids1 = queryWeatherIds(cr);
+        store.save("City1", createForecast(7, 25.0f), null);
+        final List<Long> ids2 = queryWeatherIds(cr);
+
+        // the forecast list relies on the IDs of its rows staying the same
+        assertEquals(7, ids1.size());
+        assertEquals(ids1, ids2);
+    }
+
+    private static List<Long> queryWeatherIds(ContentResolver cr) {
+        final String[] projection = new String[] {WeatherEntry._ID};
+        final Cursor cursor = cr.query(WeatherEntry.CONTENT_URI, projection, null, null,
+                WeatherEntry.COL_DATE);
+        try {
+            final List<Long> ids = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testSave_AllColumns() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastStore store = new ForecastStore(cr);
+        store.save("City1", createForecast(1, 20.0f), null);
+
+        final String[] projection = new String[] {
+                WeatherEntry.COL_DATE,
+                WeatherEntry.COL_DESCRIPTION,
+                WeatherEntry.COL_ICON_ID,
+                WeatherEntry.COL_TEMP_HI,
+                WeatherEntry.COL_TEMP_LO,
+                WeatherEntry.COL_HUMIDITY,
+                WeatherEntry.COL_PRESSURE,
+                WeatherEntry.COL_WIND_SPEED,
+                WeatherEntry.COL_WIND_DIRECTION,
+        };
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId("City1"), projection, null,
+                null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1405789200, cursor.getLong(0));
+        assertEquals("Clear", cursor.getString(1));
+        assertEquals("01d", cursor.getString(2));
+        assertEquals(20.0, cursor.getDouble(3), 0.001);
+        assertEquals(10.0, cursor.getDouble(4), 0.001);
+        assertEquals(67.0, cursor.getDouble(5), 0.001);
+        assertEquals(98.68, cursor.getDouble(6), 0.001);
+        assertEquals(9.0, cursor.getDouble(7), 0.001);
+        assertEquals("SSW", cursor.getString(8));
+        cursor.close();
+    }
+
+    public void testSave_UnknownValues() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastBatch forecast = new ForecastBatch();
+        forecast.add(1405789200, "Clear", null, 20.0f, 10.0f, Float.NaN, Float.NaN, Float.NaN,
+                Float.NaN);
+        new ForecastStore(cr).save("City1", forecast, null);
+
+        final String[] projection = new String[] {
+                WeatherEntry.COL_ICON_ID,
+                WeatherEntry.COL_HUMIDITY,
+                WeatherEntry.COL_PRESSURE,
+                WeatherEntry.COL_WIND_SPEED,
+                WeatherEntry.COL_WIND_DIRECTION,
+        };
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId("City1"), projection, null,
+                null, null);
+        assertTrue(cursor.moveToFirst());
+        for (int i = 0; i < projection.length; i++) {
+            assertTrue(projection[i], cursor.isNull(i));
+        }
+        cursor.close();
+    }
+
+    public void testSaveAll() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastStore store = new ForecastStore(cr);
+        store.save("City3", createForecast(7, 20.0f), null);
+
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo("\"abc\"", null, 1234, 5678);
+        final List<FetchResult> results = new ArrayList<>();
+        results.add(FetchResult.ok("City1", createForecast(7, 21.0f), cacheInfo));
+        results.add(FetchResult.ok("City2", createForecast(5, 22.0f), null));
+        results.add(FetchResult.notModified("City3", cacheInfo));
+        results.add(FetchResult.failed("City4", FetchResult.Status.CONNECT_FAILED, "failed"));
+        store.saveAll(results);
+
+        assertEquals(7, queryWeatherCount(cr, "City1"));
+        assertEquals(5, queryWeatherCount(cr, "City2"));
+        assertEquals(7, queryWeatherCount(cr, "City3"));
+        assertEquals(0, queryWeatherCount(cr, "City4"));
+
+        final Map<String, HttpCacheInfo> cacheInfos = store.loadAllCacheInfo();
+        assertEquals(3, cacheInfos.size());
+        assertEquals("\"abc\"", cacheInfos.get("City1").etag);
+        assertTrue(cacheInfos.containsKey("City2"));
+        assertNull(cacheInfos.get("City2"));
+        assertEquals(1234, cacheInfos.get("City3").fetchTimeMillis);
+    }
+
+    public void testSaveAll_Empty() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        store.saveAll(new ArrayList<FetchResult>());
+        assertTrue(store.loadAllCacheInfo().isEmpty());
+    }
+
+    public void testDeleteExpired() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ForecastStore store = new ForecastStore(cr);
+        // the days 16270 to 16276
+        store.save("City1", createForecast(7, 20.0f), null);
+        store.save("City2", createForecast(7, 20.0f), null);
+
+        // keeps the 2 days before today, 16273 and 16274, and the days after
+        assertEquals(6, store.deleteExpired(16275, 2));
+        assertEquals(4, queryWeatherCount(cr, "City1"));
+        assertEquals(4, queryWeatherCount(cr, "City2"));
+        assertEquals(0, store.deleteExpired(16275, 2));
+
+        assertEquals(4, store.deleteExpired(16275, 0));
+        assertEquals(2, queryWeatherCount(cr, "City1"));
+    }
+
+    public void testDeleteExpired_NegativeDays() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        try {
+            store.deleteExpired(16275, -1);
+            fail("IllegalArgumentException should have been thrown");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static int queryWeatherCount(ContentResolver cr, String cityId) {
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId(cityId), null, null, null,
+                null);
+        final int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    public void testToCompassPoint() {
+        assertEquals("N", ForecastStore.toCompassPoint(0f));
+        assertEquals("N", ForecastStore.toCompassPoint(355f));
+        assertEquals("E", ForecastStore.toCompassPoint(90f));
+        assertEquals("SSW", ForecastStore.toCompassPoint(202.5f));
+        assertEquals("W", ForecastStore.toCompassPoint(270f));
+        assertNull(ForecastStore.toCompassPoint(Float.NaN));
+    }
+
+    public void testLoadCacheInfo_NeverDownloaded() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        assertNull(store.loadCacheInfo("City1"));
+        store.save("City1", createForecast(7, 20.0f), null);
+        assertNull(store.loadCacheInfo("City1"));
+    }
+
+    public void testLoadCacheInfo() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo("\"abc\"", "LastModified", 1234, 5678);
+        store.save("City1", createForecast(7, 20.0f), cacheInfo);
+
+        final HttpCacheInfo loadedCacheInfo = store.loadCacheInfo("City1");
+        assertEquals("\"abc\"", loadedCacheInfo.etag);
+        assertEquals("LastModified", loadedCacheInfo.lastModified);
+        assertEquals(1234, loadedCacheInfo.fetchTimeMillis);
+        assertEquals(5678, loadedCacheInfo.ttlMillis);
+    }
+
+    public void testSaveCacheInfo() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo(null, "LastModified", 1234, 5678);
+        assertFalse(store.saveCacheInfo("City1", cacheInfo));
+
+        store.save("City1", createForecast(7, 20.0f), null);
+        assertTrue(store.saveCacheInfo("City1", cacheInfo));
+        final HttpCacheInfo loadedCacheInfo = store.loadCacheInfo("City1");
+        assertNull(loadedCacheInfo.etag);
+        assertEquals("LastModified", loadedCacheInfo.lastModified);
+        assertEquals(1234, loadedCacheInfo.fetchTimeMillis);
+    }
+
+}
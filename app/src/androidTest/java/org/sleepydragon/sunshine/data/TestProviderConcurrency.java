@@ -0,0 +1,226 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads forecasts from the {@link WeatherProvider} while a sync continuously writes them, as the
+ * forecast list does while a background sync runs, and reports the latency of the reads with and
+ * without write-ahead logging.
+ * <p>
+ * The latencies are logged rather than asserted, since they depend on the device's storage.
+ */
+public class TestProviderConcurrency extends AndroidTestCase {
+
+    private static final String LOG_TAG = "TestProviderConcurrency";
+    private static final String DATABASE_NAME = "weather.db";
+
+    private static final int NUM_LOCATIONS = 100;
+    private static final int NUM_DAYS = 16;
+    private static final int NUM_READERS = 4;
+    private static final long DURATION_MILLIS = 3000;
+
+    private static final String[] PROJECTION = new String[] {
+            WeatherEntry.COL_DATE,
+            WeatherEntry.COL_DESCRIPTION,
+            WeatherEntry.COL_TEMP_HI,
+            WeatherEntry.COL_TEMP_LO,
+    };
+    private static final String SELECTION = WeatherEntry.COL_LOCATION_ID + "=?";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testWriteAheadLoggingEnabled() {
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        try {
+            final String journalMode = DatabaseUtils.stringForQuery(x.getWritableDatabase(),
+                    "PRAGMA journal_mode", null);
+            assertEquals("wal", journalMode.toLowerCase());
+        } finally {
+            x.close();
+        }
+    }
+
+    public void testReadsDuringSync() throws Exception {
+        final long[] rollbackLatencies = runReadersDuringSync(false);
+        mContext.deleteDatabase(DATABASE_NAME);
+        final long[] walLatencies = runReadersDuringSync(true);
+
+        logLatencies("rollback journal", rollbackLatencies);
+        logLatencies("write-ahead log", walLatencies);
+        assertTrue(rollbackLatencies.length > 0);
+        assertTrue(walLatencies.length > 0);
+    }
+
+    /**
+     * Runs {@link #NUM_READERS} threads that query the weather of random locations while another
+     * thread repeatedly saves the forecasts of all locations, for {@link #DURATION_MILLIS}.
+     * @return the latencies of the queries, in microseconds, sorted in ascending order.
+     */
+    private long[] runReadersDuringSync(final boolean writeAheadLoggingEnabled)
+            throws Exception {
+        final WeatherProvider provider = new WeatherProvider() {
+            @Override
+            WeatherOpenHelper createOpenHelper() {
+                return new WeatherOpenHelper(getContext(), writeAheadLoggingEnabled);
+            }
+        };
+        provider.attachInfo(mContext, null);
+        populateLocations(provider);
+
+        final long endTime = SystemClock.elapsedRealtime() + DURATION_MILLIS;
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final AtomicInteger syncCount = new AtomicInteger();
+
+        final Thread writer = new Thread("writer") {
+            @Override
+            public void run() {
+                try {
+                    long startDate = 16000;
+                    while (SystemClock.elapsedRealtime() < endTime) {
+                        provider.bulkInsert(WeatherEntry.CONTENT_URI,
+                                createSyncValues(startDate));
+                        syncCount.incrementAndGet();
+                        startDate++;
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }
+        };
+
+        final List<long[]> readerLatencies = new ArrayList<>(NUM_READERS);
+        final int[] readerCounts = new int[NUM_READERS];
+        final Thread[] readers = new Thread[NUM_READERS];
+        for (int i = 0; i < NUM_READERS; i++) {
+            final int readerIndex = i;
+            final long[] latencies = new long[100000];
+            readerLatencies.add(latencies);
+            readers[i] = new Thread("reader " + i) {
+                @Override
+                public void run() {
+                    try {
+                        int count = 0;
+                        long locationId = readerIndex;
+                        while (SystemClock.elapsedRealtime() < endTime
+                                && count < latencies.length) {
+                            locationId = (locationId * 31 + 7) % NUM_LOCATIONS;
+                            final String[] selectionArgs =
+                                    new String[] {Long.toString(locationId + 1)};
+                            final long startNanos = System.nanoTime();
+                            final Cursor cursor = provider.query(WeatherEntry.CONTENT_URI,
+                                    PROJECTION, SELECTION, selectionArgs, null);
+                            try {
+                                // forces the query to actually be executed
+                                cursor.getCount();
+                            } finally {
+                                cursor.close();
+                            }
+                            latencies[count++] = (System.nanoTime() - startNanos) / 1000;
+                        }
+                        readerCounts[readerIndex] = count;
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+        }
+
+        writer.start();
+        for (final Thread reader : readers) {
+            reader.start();
+        }
+        writer.join();
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        provider.shutdown();
+
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        assertTrue(syncCount.get() > 0);
+        Log.i(LOG_TAG, (writeAheadLoggingEnabled ? "write-ahead log" : "rollback journal")
+                + ": " + syncCount.get() + " syncs of " + (NUM_LOCATIONS * NUM_DAYS) + " rows");
+
+        int totalCount = 0;
+        for (final int count : readerCounts) {
+            totalCount += count;
+        }
+        final long[] allLatencies = new long[totalCount];
+        int offset = 0;
+        for (int i = 0; i < NUM_READERS; i++) {
+            System.arraycopy(readerLatencies.get(i), 0, allLatencies, offset, readerCounts[i]);
+            offset += readerCounts[i];
+        }
+        Arrays.sort(allLatencies);
+        return allLatencies;
+    }
+
+    private static void populateLocations(WeatherProvider provider) {
+        final ContentValues[] values = new ContentValues[NUM_LOCATIONS];
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            final ContentValues cv = new ContentValues();
+            cv.put(LocationEntry._ID, i + 1);
+            cv.put(LocationEntry.COL_CITY_ID, "City" + (i + 1));
+            values[i] = cv;
+        }
+        provider.bulkInsert(LocationEntry.CONTENT_URI, values);
+    }
+
+    /**
+     * Creates the rows saved by a sync of every location's forecast.
+     */
+    private static ContentValues[] createSyncValues(long startDate) {
+        final ContentValues[] values = new ContentValues[NUM_LOCATIONS * NUM_DAYS];
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            for (int j = 0; j < NUM_DAYS; j++) {
+                final ContentValues cv = new ContentValues();
+                cv.put(WeatherEntry.COL_LOCATION_ID, i + 1);
+                cv.put(WeatherEntry.COL_DATE, startDate + j);
+                cv.put(WeatherEntry.COL_DESCRIPTION, "Clear");
+                cv.put(WeatherEntry.COL_TEMP_HI, 20.0 + j);
+                cv.put(WeatherEntry.COL_TEMP_LO, 10.0 + j);
+                values[i * NUM_DAYS + j] = cv;
+            }
+        }
+        return values;
+    }
+
+    private static void logLatencies(String name, long[] sortedLatencies) {
+        Log.i(LOG_TAG, name + ": " + sortedLatencies.length + " reads"
+                + ", p50=" + percentile(sortedLatencies, 50) + "us"
+                + ", p90=" + percentile(sortedLatencies, 90) + "us"
+                + ", p99=" + percentile(sortedLatencies, 99) + "us"
+                + ", max=" + sortedLatencies[sortedLatencies.length - 1] + "us");
+    }
+
+    private static long percentile(long[] sortedValues, int percentile) {
+        final int index = (int) Math.ceil(sortedValues.length * percentile / 100.0) - 1;
+        return sortedValues[Math.max(0, index)];
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that the {@link WeatherProvider} notifies the observers of each city's forecast, as
+ * registered by the forecast list's loader, only when that city's weather changes, and only once
+ * for each sync.
+ */
+public class TestProviderNotifications extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "weather.db";
+    private static final int NUM_CITIES = 100;
+    private static final long START_DATE = 16270;
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long SETTLE_MILLIS = 500;
+
+    private final List<CountingObserver> mObservers = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(DATABASE_NAME);
+        TestWeatherProvider.clearCaches(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final ContentResolver cr = getContext().getContentResolver();
+        for (final CountingObserver observer : mObservers) {
+            cr.unregisterContentObserver(observer);
+        }
+        mObservers.clear();
+        super.tearDown();
+    }
+
+    public void testSaveAll_NotifiesEachCityOnce() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        store.saveAll(createResults(0, NUM_CITIES, 20.0f));
+        registerObservers();
+
+        store.saveAll(createResults(0, NUM_CITIES, 25.0f));
+
+        awaitNotifications(NUM_CITIES);
+        for (int i = 0; i < NUM_CITIES; i++) {
+            assertEquals("City" + i, 1, mObservers.get(i).getCount());
+        }
+    }
+
+    public void testSaveAll_FewCities() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        store.saveAll(createResults(0, NUM_CITIES, 20.0f));
+        registerObservers();
+
+        store.saveAll(createResults(10, 13, 25.0f));
+
+        awaitNotifications(3);
+        for (int i = 0; i < NUM_CITIES; i++) {
+            final int expectedCount = (i >= 10 && i < 13) ? 1 : 0;
+            assertEquals("City" + i, expectedCount, mObservers.get(i).getCount());
+        }
+    }
+
+    public void testSave_NotifiesOnlyThatCity() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        store.saveAll(createResults(0, NUM_CITIES, 20.0f));
+        registerObservers();
+
+        store.save("City42", createForecast(25.0f), null);
+
+        awaitNotifications(1);
+        assertEquals(1, mObservers.get(42).getCount());
+        assertEquals(1, getTotalCount());
+    }
+
+    public void testDeleteExpired_NotifiesOnlyCitiesWithPastWeather() {
+        final ForecastStore store = new ForecastStore(getContext().getContentResolver());
+        store.saveAll(createResults(0, NUM_CITIES, 20.0f));
+        store.deleteExpired(START_DATE + 3, 0);
+        store.save("City7", createForecast(20.0f), null);
+        registerObservers();
+
+        store.deleteExpired(START_DATE + 3, 0);
+
+        awaitNotifications(1);
+        assertEquals(1, mObservers.get(7).getCount());
+        assertEquals(1, getTotalCount());
+    }
+
+    public void testDeleteLocation_NotifiesThatCity() {
+        final ContentResolver cr = getContext().getContentResolver();
+        new ForecastStore(cr).saveAll(createResults(0, NUM_CITIES, 20.0f));
+        registerObservers();
+
+        cr.delete(LocationEntry.buildUriFromCityId("City5"), null, null);
+
+        awaitNotifications(1);
+        assertEquals(1, mObservers.get(5).getCount());
+        assertEquals(1, getTotalCount());
+    }
+
+    public void testUpdateCityId_NotifiesOldAndNewCities() {
+        final ContentResolver cr = getContext().getContentResolver();
+        new ForecastStore(cr).saveAll(createResults(0, NUM_CITIES - 1, 20.0f));
+        registerObservers();
+
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_CITY_ID, "City" + (NUM_CITIES - 1));
+        cr.update(LocationEntry.buildUriFromCityId("City5"), cv, null, null);
+
+        awaitNotifications(2);
+        assertEquals(1, mObservers.get(5).getCount());
+        assertEquals(1, mObservers.get(NUM_CITIES - 1).getCount());
+        assertEquals(2, getTotalCount());
+    }
+
+    /**
+     * Registers an observer of the forecast of each city, as the forecast list's loader does.
+     */
+    private void registerObservers() {
+        final ContentResolver cr = getContext().getContentResolver();
+        for (int i = 0; i < NUM_CITIES; i++) {
+            final CountingObserver observer = new CountingObserver();
+            cr.registerContentObserver(
+                    WeatherEntry.buildUriFromCityIdAndStartDate("City" + i, START_DATE), true,
+                    observer);
+            mObservers.add(observer);
+        }
+    }
+
+    /**
+     * Waits until the observers have been notified the given number of times in total, and then
+     * a little longer, so that any further notifications are also counted.
+     */
+    private void awaitNotifications(int count) {
+        final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (getTotalCount() < count && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(10);
+        }
+        SystemClock.sleep(SETTLE_MILLIS);
+    }
+
+    private int getTotalCount() {
+        int count = 0;
+        for (final CountingObserver observer : mObservers) {
+            count += observer.getCount();
+        }
+        return count;
+    }
+
+    private static List<FetchResult> createResults(int firstCity, int endCity, float high) {
+        final List<FetchResult> results = new ArrayList<>();
+        for (int i = firstCity; i < endCity; i++) {
+            results.add(FetchResult.ok("City" + i, createForecast(high), null));
+        }
+        return results;
+    }
+
+    /**
+     * Creates a forecast of 7 days, from {@link #START_DATE}.
+     */
+    private static ForecastBatch createForecast(float high) {
+        final ForecastBatch forecast = new ForecastBatch(7);
+        for (int i = 0; i < 7; i++) {
+            forecast.add(1405789200 + (i * 86400), "Clear", "01d", high, 10.0f, 67f, 986.8f, 2.5f,
+                    202.5f);
+        }
+        forecast.setCoordinates("43.45", "-80.48");
+        return forecast;
+    }
+
+    /**
+     * Counts its notifications, which are delivered on a binder thread since it has no handler.
+     */
+    private static final class CountingObserver extends ContentObserver {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        public CountingObserver() {
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            mCount.incrementAndGet();
+        }
+
+        public int getCount() {
+            return mCount.get();
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.DashboardEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asserts that the statements with which {@link WeatherProvider} queries each of its URIs are
+ * served by indexes, rather than by scanning tables or sorting, on a database of 100,000 weather
+ * rows.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "weather.db";
+    private static final int NUM_LOCATIONS = 100;
+    private static final int NUM_DAYS_PER_LOCATION = 1000;
+    private static final long START_DATE = 16000;
+
+    private static final String CITY_ID = "City50";
+    private static final String SORT_ORDER = WeatherEntry.COL_DATE + " ASC";
+
+    private WeatherOpenHelper mOpenHelper;
+    private WeatherProvider mProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mOpenHelper = new WeatherOpenHelper(mContext);
+        populate(mOpenHelper.getWritableDatabase());
+        mProvider = new WeatherProvider();
+        mProvider.attachInfo(mContext, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mOpenHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testWeather() {
+        // the provider does not add a selection, so use the one that the weather table's index
+        // is for
+        final String selection = WeatherEntry.COL_LOCATION_ID + "=? AND "
+                + WeatherEntry.COL_DATE + ">=?";
+        final String[] selectionArgs = new String[] {"50", Long.toString(START_DATE)};
+        assertIndexed(WeatherEntry.CONTENT_URI, selection, selectionArgs, SORT_ORDER);
+    }
+
+    public void testWeatherWithCityId() {
+        assertIndexed(WeatherEntry.buildUriFromCityId(CITY_ID), null, null, SORT_ORDER);
+    }
+
+    public void testWeatherWithCityIdAndStartDate() {
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate(CITY_ID,
+                START_DATE + 500);
+        assertIndexed(uri, null, null, SORT_ORDER);
+    }
+
+    public void testWeatherWithCityIdAndDateRange() {
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDateRange(CITY_ID, START_DATE + 500,
+                START_DATE + 507);
+        assertIndexed(uri, null, null, SORT_ORDER);
+    }
+
+    public void testWeatherWithCityIdAndDate() {
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDate(CITY_ID,
+                START_DATE + 500);
+        assertIndexed(uri, null, null, null);
+    }
+
+    public void testForecastWindow() {
+        assertIndexed("forecast window", mProvider.buildForecastWindowQuery(50, START_DATE + 500));
+    }
+
+    public void testLocation() {
+        final String selection = LocationEntry.COL_CITY_ID + "=?";
+        final String[] selectionArgs = new String[] {CITY_ID};
+        assertIndexed(LocationEntry.CONTENT_URI, selection, selectionArgs, null);
+    }
+
+    public void testLocationWithId() {
+        assertIndexed(LocationEntry.buildUriFromId(50), null, null, null);
+    }
+
+    public void testLocationWithCityId() {
+        assertIndexed(LocationEntry.buildUriFromCityId(CITY_ID), null, null, null);
+    }
+
+    public void testDashboard() {
+        assertIndexed(DashboardEntry.buildUriFromDate(START_DATE + 500), null, null, null);
+    }
+
+    public void testDashboardPage() {
+        final Uri uri = DashboardEntry.buildUriFromDateAndPage(START_DATE + 500, 50, 20);
+        assertIndexed(uri, null, null, null);
+    }
+
+    private void assertIndexed(Uri uri, String selection, String[] selectionArgs,
+            String sortOrder) {
+        final WeatherProvider.Query query = mProvider.buildQuery(uri, null, selection,
+                selectionArgs, sortOrder);
+        assertIndexed(uri.toString(), query);
+    }
+
+    private void assertIndexed(String name, WeatherProvider.Query query) {
+        final List<String> plan = explainQueryPlan(query);
+        assertFalse("empty query plan for " + name, plan.isEmpty());
+        for (final String step : plan) {
+            // e.g. "SCAN TABLE weather" or "USE TEMP B-TREE FOR ORDER BY"
+            if (step.startsWith("SCAN ") || step.contains("TEMP B-TREE")) {
+                fail("query of " + name + " is not served by an index: " + plan);
+            }
+        }
+    }
+
+    private List<String> explainQueryPlan(WeatherProvider.Query query) {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        final Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query.sql,
+                query.selectionArgs);
+        try {
+            final int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            final List<String> plan = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailIndex));
+            }
+            return plan;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void populate(SQLiteDatabase db) {
+        db.beginTransaction();
+        final SQLiteStatement insertLocation = db.compileStatement("INSERT INTO "
+                + LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + ","
+                + LocationEntry.COL_CITY_ID + ") VALUES (?,?)");
+        final SQLiteStatement insertWeather = db.compileStatement("INSERT INTO "
+                + WeatherEntry.TABLE_NAME + " (" + WeatherEntry.COL_LOCATION_ID + ","
+                + WeatherEntry.COL_DATE + "," + WeatherEntry.COL_DESCRIPTION + ","
+                + WeatherEntry.COL_TEMP_HI + "," + WeatherEntry.COL_TEMP_LO
+                + ") VALUES (?,?,?,?,?)");
+        try {
+            for (int i = 1; i <= NUM_LOCATIONS; i++) {
+                insertLocation.bindLong(1, i);
+                insertLocation.bindString(2, "City" + i);
+                insertLocation.executeInsert();
+                for (int j = 0; j < NUM_DAYS_PER_LOCATION; j++) {
+                    insertWeather.bindLong(1, i);
+                    insertWeather.bindLong(2, START_DATE + j);
+                    insertWeather.bindString(3, "Clear");
+                    insertWeather.bindDouble(4, 20 + (j % 10));
+                    insertWeather.bindDouble(5, 10 + (j % 10));
+                    insertWeather.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertLocation.close();
+            insertWeather.close();
+        }
+    }
+
+}
@@ -3,14 +3,26 @@ package org.sleepydragon.sunshine.data;
 import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 import android.test.AndroidTestCase;
+import android.util.Log;
 
 public class TestWeatherOpenHelper extends AndroidTestCase {
 
+    private static final String LOG_TAG = "TestWeatherOpenHelper";
     private static final String DATABASE_NAME = "weather.db";
 
+    /**
+     * The maximum time allowed for upgrading a large database; generous, since it must hold on
+     * slow devices, but far less than downloading every location's forecast again.
+     */
+    private static final long MAX_LARGE_UPGRADE_MILLIS = 30 * 1000;
+
     public void testCreate() {
         deleteDatabase();
         final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
@@ -20,6 +32,39 @@ public class TestWeatherOpenHelper extends AndroidTestCase {
         db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
     }
 
+    public void testAutoVacuum() {
+        deleteDatabase();
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        try {
+            assertEquals(WeatherOpenHelper.AUTO_VACUUM_INCREMENTAL, DatabaseUtils.longForQuery(
+                    x.getWritableDatabase(), "PRAGMA auto_vacuum", null));
+        } finally {
+            x.close();
+        }
+    }
+
+    public void testAutoVacuum_AttemptedOnce() {
+        deleteDatabase();
+        new WeatherOpenHelper(mContext, false).getWritableDatabase().close();
+
+        // revert the conversion, as if the VACUUM had failed
+        final SQLiteDatabase raw = mContext.openOrCreateDatabase(DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        raw.execSQL("PRAGMA auto_vacuum=0");
+        raw.execSQL("VACUUM");
+        assertEquals(0, DatabaseUtils.longForQuery(raw, "PRAGMA auto_vacuum", null));
+        raw.close();
+
+        // the conversion must not be attempted again by every open
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext, false);
+        try {
+            assertEquals(0, DatabaseUtils.longForQuery(x.getWritableDatabase(),
+                    "PRAGMA auto_vacuum", null));
+        } finally {
+            x.close();
+        }
+    }
+
     public void testInsert() {
         final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
         final SQLiteDatabase db = x.getReadableDatabase();
@@ -33,7 +78,7 @@ public class TestWeatherOpenHelper extends AndroidTestCase {
         assertTrue(locationId >= 0);
 
         final ContentValues cvWeather = new ContentValues();
-        cvWeather.put(WeatherEntry.COL_DATE, "TestDate");
+        cvWeather.put(WeatherEntry.COL_DATE, 16270);
         cvWeather.put(WeatherEntry.COL_DESCRIPTION, "TestDescription");
         cvWeather.put(WeatherEntry.COL_ICON_ID, "TestIconId");
         cvWeather.put(WeatherEntry.COL_LOCATION_ID, locationId);
@@ -60,7 +105,7 @@ public class TestWeatherOpenHelper extends AndroidTestCase {
                 null);
         assertEquals(curWeather.getCount(), 1);
         assertTrue(curWeather.moveToFirst());
-        assertColValue(curWeather, WeatherEntry.COL_DATE, "TestDate");
+        assertColValue(curWeather, WeatherEntry.COL_DATE, 16270);
         assertColValue(curWeather, WeatherEntry.COL_DESCRIPTION, "TestDescription");
         assertColValue(curWeather, WeatherEntry.COL_ICON_ID, "TestIconId");
         assertColValue(curWeather, WeatherEntry.COL_LOCATION_ID, locationId);
@@ -73,6 +118,144 @@ public class TestWeatherOpenHelper extends AndroidTestCase {
         curWeather.close();
     }
 
+    public void testUpgradeFromVersion1() {
+        deleteDatabase();
+        final SQLiteDatabase v1 = createVersion1Database();
+        v1.execSQL("INSERT INTO location (_id, city_id, display_name, latitude, longitude) "
+                + "VALUES (7, 'Kitchener,on', 'Kitchener', 43.45, -80.49)");
+        v1.execSQL("INSERT INTO weather (location_id, date, description, icon_id, temp_hi, "
+                + "temp_lo, humidity, pressure, wind_speed, wind_direction) "
+                + "VALUES (7, 1400000000, 'Clear', '01d', 25.5, 12.5, 40, 101.3, 15, 'NNW')");
+        v1.execSQL("INSERT INTO weather (location_id, date, description) "
+                + "VALUES (7, 1400086400, 'Rain')");
+        v1.close();
+
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        final SQLiteDatabase db = x.getWritableDatabase();
+        try {
+            assertEquals(WeatherOpenHelper.DATABASE_VERSION, db.getVersion());
+
+            final Cursor curLocation = db.query(LocationEntry.TABLE_NAME, null, null, null, null,
+                    null, null);
+            assertEquals(1, curLocation.getCount());
+            assertTrue(curLocation.moveToFirst());
+            assertColValue(curLocation, LocationEntry._ID, 7);
+            assertColValue(curLocation, LocationEntry.COL_CITY_ID, "Kitchener,on");
+            assertColValue(curLocation, LocationEntry.COL_DISPLAY_NAME, "Kitchener");
+            assertColValue(curLocation, LocationEntry.COL_LATITUDE, "43.45");
+            assertTrue(curLocation.isNull(curLocation.getColumnIndex(LocationEntry.COL_ETAG)));
+            assertTrue(curLocation.isNull(curLocation.getColumnIndex(LocationEntry.COL_TTL)));
+            curLocation.close();
+
+            final Cursor curWeather = db.query(WeatherEntry.TABLE_NAME, null, null, null, null,
+                    null, WeatherEntry.COL_DATE);
+            assertEquals(2, curWeather.getCount());
+            assertTrue(curWeather.moveToFirst());
+            assertColValue(curWeather, WeatherEntry.COL_LOCATION_ID, 7);
+            // the unix timestamps must now be epoch days
+            assertColValue(curWeather, WeatherEntry.COL_DATE, 16203);
+            assertColValue(curWeather, WeatherEntry.COL_DESCRIPTION, "Clear");
+            assertColValue(curWeather, WeatherEntry.COL_ICON_ID, "01d");
+            assertColValue(curWeather, WeatherEntry.COL_TEMP_HI, "25.5");
+            assertColValue(curWeather, WeatherEntry.COL_WIND_DIRECTION, "NNW");
+            assertTrue(curWeather.moveToNext());
+            assertColValue(curWeather, WeatherEntry.COL_DATE, 16204);
+            assertColValue(curWeather, WeatherEntry.COL_DESCRIPTION, "Rain");
+            curWeather.close();
+
+            // the location IDs, stored as text by version 1, must now be integers
+            assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM "
+                    + WeatherEntry.TABLE_NAME + " WHERE typeof(" + WeatherEntry.COL_LOCATION_ID
+                    + ")='integer'", null));
+
+            // the unique constraint must still replace rows of the same location and date
+            final ContentValues cv = new ContentValues();
+            cv.put(WeatherEntry.COL_LOCATION_ID, 7);
+            cv.put(WeatherEntry.COL_DATE, 16204);
+            cv.put(WeatherEntry.COL_DESCRIPTION, "Snow");
+            assertTrue(db.insert(WeatherEntry.TABLE_NAME, null, cv) >= 0);
+            assertEquals(2, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+
+            // the database must have been converted to incremental auto-vacuum
+            assertEquals(WeatherOpenHelper.AUTO_VACUUM_INCREMENTAL,
+                    DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        } finally {
+            x.close();
+        }
+    }
+
+    public void testUpgradeFromVersion1_LargeCache() {
+        final int numLocations = 100;
+        final int numDaysPerLocation = 1000;
+        deleteDatabase();
+        final SQLiteDatabase v1 = createVersion1Database();
+        v1.beginTransaction();
+        final SQLiteStatement insertLocation = v1.compileStatement(
+                "INSERT INTO location (_id, city_id) VALUES (?,?)");
+        final SQLiteStatement insertWeather = v1.compileStatement(
+                "INSERT INTO weather (location_id, date, description, temp_hi, temp_lo) "
+                + "VALUES (?,?,'Clear',20,10)");
+        try {
+            for (int i = 1; i <= numLocations; i++) {
+                insertLocation.bindLong(1, i);
+                insertLocation.bindString(2, "City" + i);
+                insertLocation.executeInsert();
+                for (int j = 0; j < numDaysPerLocation; j++) {
+                    insertWeather.bindLong(1, i);
+                    insertWeather.bindLong(2, 1400000000L + j * 86400L);
+                    insertWeather.executeInsert();
+                }
+            }
+            v1.setTransactionSuccessful();
+        } finally {
+            v1.endTransaction();
+            insertLocation.close();
+            insertWeather.close();
+        }
+        v1.close();
+
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        final long startTime = SystemClock.elapsedRealtime();
+        final SQLiteDatabase db = x.getWritableDatabase();
+        final long elapsedMillis = SystemClock.elapsedRealtime() - startTime;
+        try {
+            Log.i(LOG_TAG, "upgraded " + (numLocations * numDaysPerLocation)
+                    + " weather rows from version 1 in " + elapsedMillis + " ms");
+            assertEquals(WeatherOpenHelper.DATABASE_VERSION, db.getVersion());
+            assertEquals(numLocations, DatabaseUtils.queryNumEntries(db,
+                    LocationEntry.TABLE_NAME));
+            assertEquals(numLocations * numDaysPerLocation, DatabaseUtils.queryNumEntries(db,
+                    WeatherEntry.TABLE_NAME));
+            assertEquals(numDaysPerLocation, DatabaseUtils.queryNumEntries(db,
+                    WeatherEntry.TABLE_NAME, WeatherEntry.COL_LOCATION_ID + "=?",
+                    new String[] {"50"}));
+            assertTrue("upgrade took " + elapsedMillis + " ms",
+                    elapsedMillis < MAX_LARGE_UPGRADE_MILLIS);
+        } finally {
+            x.close();
+        }
+    }
+
+    /**
+     * Creates a database with the schema of version 1, as created by the first release of the
+     * app.
+     */
+    private SQLiteDatabase createVersion1Database() {
+        final SQLiteDatabase db = mContext.openOrCreateDatabase(DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE location(_id INTEGER PRIMARY KEY, "
+                + "city_id TEXT UNIQUE NOT NULL, display_name TEXT, latitude REAL, "
+                + "longitude REAL, UNIQUE (city_id) ON CONFLICT IGNORE)");
+        db.execSQL("CREATE TABLE weather(_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "location_id TEXT NOT NULL, date INTEGER NOT NULL, description TEXT, "
+                + "icon_id TEXT, temp_hi REAL, temp_lo REAL, humidity REAL, pressure REAL, "
+                + "wind_speed REAL, wind_direction TEXT, "
+                + "FOREIGN KEY (location_id) REFERENCES location (_id), "
+                + "UNIQUE (date,location_id) ON CONFLICT REPLACE)");
+        db.setVersion(1);
+        return db;
+    }
+
     private void deleteDatabase() {
         mContext.deleteDatabase(DATABASE_NAME);
     }
@@ -1,15 +1,25 @@
 package org.sleepydragon.sunshine.data;
 
+import org.sleepydragon.sunshine.data.WeatherContract.DashboardEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
 
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 
+import java.util.ArrayList;
+
 import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
 
@@ -21,6 +31,21 @@ public class TestWeatherProvider extends AndroidTestCase {
     protected void setUp() throws Exception {
         super.setUp();
         mContext.deleteDatabase(DATABASE_NAME);
+        clearCaches(mContext);
+    }
+
+    /**
+     * Clears the caches of the app's {@link WeatherProvider}, which outlives the database deleted
+     * by each test and would otherwise serve the forecasts and locations of earlier tests.
+     */
+    static void clearCaches(Context context) {
+        final ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        try {
+            ((WeatherProvider) client.getLocalContentProvider()).clearCaches();
+        } finally {
+            client.release();
+        }
     }
 
     public void testGetType_Weather() {
@@ -32,7 +57,7 @@ public class TestWeatherProvider extends AndroidTestCase {
     }
 
     public void testGetType_WeatherFromCityIdAndDate() {
-        doTestGetType(WeatherEntry.buildUriFromCityIdAndDate("Kitchener", "Jan 01, 2014")
+        doTestGetType(WeatherEntry.buildUriFromCityIdAndDate("Kitchener", 16270)
                 , WeatherEntry.CONTENT_TYPE_ITEM);
     }
 
@@ -44,6 +69,20 @@ public class TestWeatherProvider extends AndroidTestCase {
         doTestGetType(LocationEntry.buildUriFromId(123), LocationEntry.CONTENT_TYPE_ITEM);
     }
 
+    public void testGetType_LocationFromCityId() {
+        doTestGetType(LocationEntry.buildUriFromCityId("Kitchener,ca"),
+                LocationEntry.CONTENT_TYPE_ITEM);
+        // a numeric city ID is not taken for a location ID
+        doTestGetType(LocationEntry.buildUriFromCityId("6176823"),
+                LocationEntry.CONTENT_TYPE_ITEM);
+    }
+
+    public void testGetType_Dashboard() {
+        doTestGetType(DashboardEntry.buildUriFromDate(16270), DashboardEntry.CONTENT_TYPE);
+        doTestGetType(DashboardEntry.buildUriFromDateAndPage(16270, 5, 20),
+                DashboardEntry.CONTENT_TYPE);
+    }
+
     private void doTestGetType(Uri uri, String expected) {
         final ContentResolver cr = getContext().getContentResolver();
         final String actual = cr.getType(uri);
@@ -71,13 +110,10 @@ public class TestWeatherProvider extends AndroidTestCase {
     }
 
     private long insertWeather(long locationId) {
-        return insertWeather(locationId, null);
+        return insertWeather(locationId, 16270);
     }
 
-    private long insertWeather(long locationId, String date) {
-        if (date == null) {
-            date = "TestDate";
-        }
+    private long insertWeather(long locationId, long date) {
         final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
         final SQLiteDatabase db = x.getReadableDatabase();
         final ContentValues cv = new ContentValues();
@@ -126,7 +162,7 @@ public class TestWeatherProvider extends AndroidTestCase {
         assertEquals(curWeather.getCount(), 1);
         assertTrue(curWeather.moveToFirst());
         assertColValue(curWeather, WeatherEntry._ID, Long.toString(weatherId));
-        assertColValue(curWeather, WeatherEntry.COL_DATE, "TestDate");
+        assertColValue(curWeather, WeatherEntry.COL_DATE, 16270);
         assertColValue(curWeather, WeatherEntry.COL_DESCRIPTION, "TestDescription");
         assertColValue(curWeather, WeatherEntry.COL_ICON_ID, "TestIconId");
         assertColValue(curWeather, WeatherEntry.COL_LOCATION_ID, locationId);
@@ -142,10 +178,10 @@ public class TestWeatherProvider extends AndroidTestCase {
     public void testQuery_WEATHER_WITH_CITY_ID() {
         final long locationId1 = insertLocation("City1");
         final long locationId2 = insertLocation("City2");
-        final long weatherId11 = insertWeather(locationId1, "Date1");
-        final long weatherId12 = insertWeather(locationId1, "Date2");
-        final long weatherId21 = insertWeather(locationId2, "Date1");
-        final long weatherId22 = insertWeather(locationId2, "Date2");
+        final long weatherId11 = insertWeather(locationId1, 16270);
+        final long weatherId12 = insertWeather(locationId1, 16271);
+        final long weatherId21 = insertWeather(locationId2, 16270);
+        final long weatherId22 = insertWeather(locationId2, 16271);
 
         final ContentResolver cr = mContext.getContentResolver();
         final Uri uri = WeatherEntry.buildUriFromCityId("City1");
@@ -158,6 +194,507 @@ public class TestWeatherProvider extends AndroidTestCase {
         assertTrue(cursor.moveToFirst());
     }
 
+    private static ContentValues createLocationValues(String cityId) {
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_CITY_ID, cityId);
+        cv.put(LocationEntry.COL_DISPLAY_NAME, "TestDisplayName");
+        cv.put(LocationEntry.COL_LATITUDE, -54.321);
+        cv.put(LocationEntry.COL_LONGITUDE, 12.345);
+        return cv;
+    }
+
+    private static ContentValues createWeatherValues(long locationId, long date, double tempHi) {
+        final ContentValues cv = new ContentValues();
+        cv.put(WeatherEntry.COL_LOCATION_ID, locationId);
+        cv.put(WeatherEntry.COL_DATE, date);
+        cv.put(WeatherEntry.COL_DESCRIPTION, "TestDescription");
+        cv.put(WeatherEntry.COL_ICON_ID, "TestIconId");
+        cv.put(WeatherEntry.COL_TEMP_HI, tempHi);
+        cv.put(WeatherEntry.COL_TEMP_LO, 12.5);
+        return cv;
+    }
+
+    private int queryCount(Uri uri) {
+        final ContentResolver cr = getContext().getContentResolver();
+        final Cursor cursor = cr.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testQuery_WEATHER_WITH_CITY_ID_StartDate() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        final ContentValues[] values = new ContentValues[7];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = createWeatherValues(locationId, 1000 + i, 20.0);
+        }
+        cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate("City1", 1004);
+        final String[] projection = new String[] {WeatherEntry.COL_DATE};
+        final Cursor cursor = cr.query(uri, projection, null, null, WeatherEntry.COL_DATE);
+        assertEquals(3, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1004, cursor.getLong(0));
+        cursor.close();
+    }
+
+    public void testQuery_WEATHER_WITH_CITY_ID_DateRange() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        final long locationId2 = insertLocation("City2");
+        final ContentValues[] values = new ContentValues[14];
+        for (int i = 0; i < 7; i++) {
+            values[i] = createWeatherValues(locationId1, 1000 + i, 20.0);
+            values[i + 7] = createWeatherValues(locationId2, 1000 + i, 20.0);
+        }
+        cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDateRange("City1", 1002, 1005);
+        final String[] projection = new String[] {WeatherEntry.COL_DATE};
+        final Cursor cursor = cr.query(uri, projection, null, null, WeatherEntry.COL_DATE);
+        assertEquals(3, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1002, cursor.getLong(0));
+        assertTrue(cursor.moveToLast());
+        assertEquals(1004, cursor.getLong(0));
+        cursor.close();
+    }
+
+    public void testQuery_WEATHER_WITH_CITY_ID_AND_DATE() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        final ContentValues[] values = new ContentValues[7];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = createWeatherValues(locationId, 1000 + i, 20.0 + i);
+        }
+        cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        final Uri uri = WeatherEntry.buildUriFromCityIdAndDate("City1", 1003);
+        final String[] projection = new String[] {WeatherEntry.COL_DATE, WeatherEntry.COL_TEMP_HI};
+        final Cursor cursor = cr.query(uri, projection, null, null, null);
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1003, cursor.getLong(0));
+        assertEquals(23.0, cursor.getDouble(1), 0.0);
+        cursor.close();
+    }
+
+    public void testQuery_InvalidDate() {
+        final Uri uri = WeatherEntry.buildUriFromCityId("City1").buildUpon()
+                .appendQueryParameter(WeatherEntry.QUERY_PARAM_START, "Jan 01, 2014")
+                .build();
+        try {
+            getContext().getContentResolver().query(uri, null, null, null, null);
+            fail("IllegalArgumentException should have been thrown");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static final String[] DASHBOARD_PROJECTION = new String[] {
+            LocationEntry.TABLE_NAME + "." + LocationEntry._ID,
+            LocationEntry.COL_CITY_ID,
+            WeatherEntry.COL_DATE,
+            WeatherEntry.COL_TEMP_HI,
+    };
+
+    public void testQuery_DASHBOARD_WITH_DATE() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        final long locationId2 = insertLocation("City2");
+        final long locationId3 = insertLocation("City3");
+        final ContentValues[] values = new ContentValues[14];
+        for (int i = 0; i < 7; i++) {
+            values[i] = createWeatherValues(locationId1, 1000 + i, 20.0 + i);
+            values[i + 7] = createWeatherValues(locationId3, 1000 + i, 30.0 + i);
+        }
+        cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        final Cursor cursor = cr.query(DashboardEntry.buildUriFromDate(1003),
+                DASHBOARD_PROJECTION, null, null, null);
+        try {
+            assertEquals(3, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertEquals(locationId1, cursor.getLong(0));
+            assertEquals("City1", cursor.getString(1));
+            assertEquals(1003, cursor.getLong(2));
+            assertEquals(23.0, cursor.getDouble(3), 0.0);
+            // a location without weather on the date is still returned
+            assertTrue(cursor.moveToNext());
+            assertEquals(locationId2, cursor.getLong(0));
+            assertTrue(cursor.isNull(2));
+            assertTrue(cursor.moveToNext());
+            assertEquals(locationId3, cursor.getLong(0));
+            assertEquals(33.0, cursor.getDouble(3), 0.0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testQuery_DASHBOARD_WITH_DATE_Pages() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final int numLocations = 25;
+        final int pageSize = 10;
+        for (int i = 0; i < numLocations; i++) {
+            final long locationId = insertLocation("City" + i);
+            insertWeather(locationId, 1000);
+        }
+
+        final ArrayList<String> cityIds = new ArrayList<>();
+        long afterLocationId = Long.MIN_VALUE;
+        int numPages = 0;
+        while (true) {
+            final Uri uri = DashboardEntry.buildUriFromDateAndPage(1000, afterLocationId,
+                    pageSize);
+            final Cursor cursor = cr.query(uri, DASHBOARD_PROJECTION, null, null, null);
+            try {
+                assertTrue(cursor.getCount() <= pageSize);
+                while (cursor.moveToNext()) {
+                    afterLocationId = cursor.getLong(0);
+                    cityIds.add(cursor.getString(1));
+                }
+                numPages++;
+                if (cursor.getCount() < pageSize) {
+                    break;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        assertEquals(3, numPages);
+        assertEquals(numLocations, cityIds.size());
+        for (int i = 0; i < numLocations; i++) {
+            assertEquals("City" + i, cityIds.get(i));
+        }
+    }
+
+    public void testQuery_DASHBOARD_WITH_DATE_Selection() {
+        final ContentResolver cr = getContext().getContentResolver();
+        insertLocation("City1");
+        insertLocation("City2");
+        final Cursor cursor = cr.query(DashboardEntry.buildUriFromDate(1000),
+                DASHBOARD_PROJECTION, LocationEntry.COL_CITY_ID + "=?", new String[] {"City2"},
+                null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("City2", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testQuery_DASHBOARD_WITH_DATE_SortOrder() {
+        try {
+            getContext().getContentResolver().query(DashboardEntry.buildUriFromDate(1000),
+                    DASHBOARD_PROJECTION, null, null, LocationEntry.COL_CITY_ID);
+            fail("IllegalArgumentException should have been thrown");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testInsert_Provider() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final Uri locationUri = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        final long locationId = ContentUris.parseId(locationUri);
+        assertTrue(locationId >= 0);
+        final Uri weatherUri = cr.insert(WeatherEntry.CONTENT_URI,
+                createWeatherValues(locationId, 16270, 25.5));
+        assertTrue(ContentUris.parseId(weatherUri) >= 0);
+
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId("City1"), null, null, null,
+                null);
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertColValue(cursor, WeatherEntry.COL_DATE, 16270);
+        assertColValue(cursor, WeatherEntry.COL_TEMP_HI, "25.5");
+        cursor.close();
+    }
+
+    public void testInsert_ProviderExistingLocation() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final Uri uri1 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        final Uri uri2 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        assertEquals(uri1, uri2);
+        assertEquals(1, queryCount(LocationEntry.CONTENT_URI));
+    }
+
+    public void testInsert_ProviderDeletedLocation() {
+        // the location's ID is cached by the first insert, and must not be returned once the
+        // location is deleted
+        final ContentResolver cr = getContext().getContentResolver();
+        final Uri uri1 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        assertEquals(1, cr.delete(LocationEntry.buildUriFromCityId("City1"), null, null));
+        final Uri uri2 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        assertFalse(uri1.equals(uri2));
+        assertEquals(1, queryCount(uri2));
+    }
+
+    public void testQuery_LOCATION_WITH_CITY_ID() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("6176823");
+        insertLocation("City2");
+
+        final Cursor cursor = cr.query(LocationEntry.buildUriFromCityId("6176823"), null, null,
+                null, null);
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertColValue(cursor, LocationEntry._ID, locationId);
+        cursor.close();
+        assertEquals(0, queryCount(LocationEntry.buildUriFromCityId("City3")));
+    }
+
+    public void testUpdate_LOCATION_WITH_CITY_ID() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_DISPLAY_NAME, "NewDisplayName");
+        assertEquals(1, cr.update(LocationEntry.buildUriFromCityId("City1"), cv, null, null));
+        assertEquals(0, cr.update(LocationEntry.buildUriFromCityId("City2"), cv, null, null));
+
+        final Cursor cursor = cr.query(LocationEntry.buildUriFromId(locationId), null, null, null,
+                null);
+        assertTrue(cursor.moveToFirst());
+        assertColValue(cursor, LocationEntry.COL_DISPLAY_NAME, "NewDisplayName");
+        cursor.close();
+    }
+
+    public void testUpdate_CityIdInvalidatesCachedId() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final Uri uri1 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_CITY_ID, "City2");
+        assertEquals(1, cr.update(uri1, cv, null, null));
+
+        // City1 no longer exists, so it is inserted as a new location
+        final Uri uri2 = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        assertFalse(uri1.equals(uri2));
+        assertEquals(2, queryCount(LocationEntry.CONTENT_URI));
+    }
+
+    public void testApplyBatch_RolledBackLocationNotCached() throws Exception {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        ops.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(createLocationValues("City1"))
+                .build());
+        // fails, since the location has no city ID
+        ops.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValue(LocationEntry.COL_DISPLAY_NAME, "City2")
+                .build());
+        try {
+            cr.applyBatch(WeatherContract.CONTENT_AUTHORITY, ops);
+            fail("an exception should have been thrown");
+        } catch (SQLException expected) {
+        }
+        assertEquals(0, queryCount(LocationEntry.CONTENT_URI));
+
+        // the location rolled back must not be returned from the cache
+        final Uri uri = cr.insert(LocationEntry.CONTENT_URI, createLocationValues("City1"));
+        assertEquals(1, queryCount(uri));
+    }
+
+    public void testBulkInsert() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        final long locationId2 = insertLocation("City2");
+
+        final ContentValues[] values = new ContentValues[32];
+        for (int i = 0; i < 16; i++) {
+            values[i] = createWeatherValues(locationId1, 16270 + i, 20.0);
+            values[i + 16] = createWeatherValues(locationId2, 16270 + i, 20.0);
+        }
+        assertEquals(32, cr.bulkInsert(WeatherEntry.CONTENT_URI, values));
+        assertEquals(32, queryCount(WeatherEntry.CONTENT_URI));
+        assertEquals(16, queryCount(WeatherEntry.buildUriFromCityId("City1")));
+
+        // re-inserting the same dates must replace the existing rows
+        final ContentValues[] newValues = new ContentValues[16];
+        for (int i = 0; i < 16; i++) {
+            newValues[i] = createWeatherValues(locationId1, 16270 + i, 30.0);
+        }
+        assertEquals(16, cr.bulkInsert(WeatherEntry.CONTENT_URI, newValues));
+        assertEquals(32, queryCount(WeatherEntry.CONTENT_URI));
+
+        final String[] projection = new String[] {WeatherEntry.COL_TEMP_HI};
+        final Cursor cursor = cr.query(WeatherEntry.buildUriFromCityId("City1"), projection, null,
+                null, null);
+        assertEquals(16, cursor.getCount());
+        while (cursor.moveToNext()) {
+            assertEquals(30.0, cursor.getDouble(0), 0.0);
+        }
+        cursor.close();
+    }
+
+    public void testBulkInsert_Locations() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final ContentValues[] values = new ContentValues[] {
+                createLocationValues("City1"),
+                createLocationValues("City2"),
+                createLocationValues("City1"),
+        };
+        assertEquals(2, cr.bulkInsert(LocationEntry.CONTENT_URI, values));
+        assertEquals(2, queryCount(LocationEntry.CONTENT_URI));
+    }
+
+    public void testApplyBatch() throws Exception {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        insertWeather(locationId, 16270);
+
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI).build());
+        for (int i = 0; i < 7; i++) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(createWeatherValues(locationId, 16270 + i, 20.0))
+                    .build());
+        }
+        final ContentProviderResult[] results =
+                cr.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        assertEquals(8, results.length);
+        assertEquals(Integer.valueOf(1), results[0].count);
+        assertEquals(7, queryCount(WeatherEntry.CONTENT_URI));
+    }
+
+    public void testDelete() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        insertWeather(locationId, 16270);
+        insertWeather(locationId, 16271);
+        final String selection = WeatherEntry.COL_DATE + "=?";
+        assertEquals(1, cr.delete(WeatherEntry.CONTENT_URI, selection, new String[] {"16270"}));
+        assertEquals(1, cr.delete(WeatherEntry.CONTENT_URI, null, null));
+        assertEquals(0, queryCount(WeatherEntry.CONTENT_URI));
+        assertEquals(1, cr.delete(LocationEntry.buildUriFromId(locationId), null, null));
+        assertEquals(0, queryCount(LocationEntry.CONTENT_URI));
+    }
+
+    public void testDelete_LOCATION_WITH_CITY_ID() {
+        final ContentResolver cr = getContext().getContentResolver();
+        insertLocation("City1");
+        insertLocation("City2");
+        assertEquals(1, cr.delete(LocationEntry.buildUriFromCityId("City1"), null, null));
+        assertEquals(0, cr.delete(LocationEntry.buildUriFromCityId("City1"), null, null));
+        assertEquals(1, queryCount(LocationEntry.CONTENT_URI));
+        assertEquals(1, queryCount(LocationEntry.buildUriFromCityId("City2")));
+    }
+
+    public void testDelete_LocationDeletesItsWeather() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        insertWeather(locationId1, 16270);
+        insertWeather(locationId1, 16271);
+        final long locationId2 = insertLocation("City2");
+        insertWeather(locationId2, 16270);
+
+        assertEquals(1, cr.delete(LocationEntry.buildUriFromCityId("City1"), null, null));
+        assertEquals(1, queryCount(WeatherEntry.CONTENT_URI));
+        assertEquals(1, cr.delete(LocationEntry.CONTENT_URI, null, null));
+        assertEquals(0, queryCount(WeatherEntry.CONTENT_URI));
+
+        // a location that reuses the ID of a deleted location must not inherit its weather
+        insertLocation("City3");
+        assertEquals(0, queryCount(WeatherEntry.buildUriFromCityId("City3")));
+    }
+
+    public void testDelete_EndDate() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        final long locationId2 = insertLocation("City2");
+        final ContentValues[] values = new ContentValues[20];
+        for (int i = 0; i < 10; i++) {
+            values[i] = createWeatherValues(locationId1, 16270 + i, 20.0);
+            values[i + 10] = createWeatherValues(locationId2, 16270 + i, 20.0);
+        }
+        cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+
+        assertEquals(10, cr.delete(WeatherEntry.buildUriFromEndDate(16275), null, null));
+        // every location must keep the days from the end date onwards
+        assertEquals(5, queryCount(WeatherEntry.buildUriFromCityId("City1")));
+        assertEquals(5, queryCount(WeatherEntry.buildUriFromCityIdAndStartDate("City1", 16275)));
+        assertEquals(5, queryCount(WeatherEntry.buildUriFromCityIdAndStartDate("City2", 16275)));
+        assertEquals(0, cr.delete(WeatherEntry.buildUriFromEndDate(16275), null, null));
+    }
+
+    public void testDelete_EndDateDeletesOrphanedWeather() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId1 = insertLocation("City1");
+        insertWeather(locationId1, 16270);
+        insertWeather(locationId1, 16280);
+        final long locationId2 = insertLocation("City2");
+        insertWeather(locationId2, 16280);
+
+        // delete the location behind the provider's back, as databases written before a
+        // location's weather was deleted along with it may have done
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        final SQLiteDatabase db = x.getWritableDatabase();
+        assertEquals(1, db.delete(LocationEntry.TABLE_NAME, LocationEntry._ID + "=?",
+                new String[] {Long.toString(locationId1)}));
+
+        // the deleted location's weather is deleted whatever its date
+        assertEquals(2, cr.delete(WeatherEntry.buildUriFromEndDate(16275), null, null));
+        assertEquals(1, queryCount(WeatherEntry.CONTENT_URI));
+        assertEquals(1, queryCount(WeatherEntry.buildUriFromCityId("City2")));
+    }
+
+    public void testDelete_EndDateManyBatches() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final int numLocations = 5;
+        final int numDays = 1000;
+        for (int i = 0; i < numLocations; i++) {
+            final long locationId = insertLocation("City" + i);
+            final ContentValues[] values = new ContentValues[numDays];
+            for (int j = 0; j < numDays; j++) {
+                values[j] = createWeatherValues(locationId, 16000 + j, 20.0);
+            }
+            cr.bulkInsert(WeatherEntry.CONTENT_URI, values);
+        }
+
+        // more rows than are deleted by each batch
+        assertEquals(numLocations * 900,
+                cr.delete(WeatherEntry.buildUriFromEndDate(16900), null, null));
+        assertEquals(numLocations * 100, queryCount(WeatherEntry.CONTENT_URI));
+
+        // the pages freed by the delete must have been returned to the file system
+        final WeatherOpenHelper x = new WeatherOpenHelper(mContext);
+        try {
+            final long freePages = DatabaseUtils.longForQuery(x.getReadableDatabase(),
+                    "PRAGMA freelist_count", null);
+            assertTrue("free pages: " + freePages,
+                    freePages <= WeatherOpenHelper.VACUUM_THRESHOLD_PAGES);
+        } finally {
+            x.close();
+        }
+    }
+
+    public void testDelete_EndDateWithSelection() {
+        final Uri uri = WeatherEntry.buildUriFromEndDate(16275);
+        try {
+            getContext().getContentResolver().delete(uri, WeatherEntry.COL_LOCATION_ID + "=?",
+                    new String[] {"1"});
+            fail("IllegalArgumentException should have been thrown");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testUpdate() {
+        final ContentResolver cr = getContext().getContentResolver();
+        final long locationId = insertLocation("City1");
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_DISPLAY_NAME, "NewDisplayName");
+        assertEquals(1, cr.update(LocationEntry.buildUriFromId(locationId), cv, null, null));
+
+        final Cursor cursor = cr.query(LocationEntry.buildUriFromId(locationId), null, null, null,
+                null);
+        assertTrue(cursor.moveToFirst());
+        assertColValue(cursor, LocationEntry.COL_DISPLAY_NAME, "NewDisplayName");
+        cursor.close();
+    }
+
     private static void assertColValue(Cursor cursor, String colName, long expected) {
         assertColValue(cursor, colName, Long.toString(expected));
     }
@@ -0,0 +1,220 @@
+package org.sleepydragon.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.ForecastFormatter;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapts the pages of the dashboard returned by the
+ * {@link org.sleepydragon.sunshine.data.WeatherProvider} into the rows of the dashboard list, one
+ * for each location.
+ * <p>
+ * Like {@link ForecastAdapter}, the rows are copied out of the cursors, keep their text once
+ * formatted until the measurement units change, and are bound through a {@link ViewHolder}.  The
+ * rows are copied by {@link #readPage} on a background thread, so that the main thread only
+ * appends them with {@link #addPage}.
+ * <p>
+ * The cursors must have the columns specified by {@link #PROJECTION}.
+ */
+public class DashboardAdapter extends BaseAdapter {
+
+    public static final String[] PROJECTION = new String[] {
+            LocationEntry.TABLE_NAME + "." + LocationEntry._ID,
+            LocationEntry.COL_CITY_ID,
+            LocationEntry.COL_DISPLAY_NAME,
+            WeatherEntry.COL_DESCRIPTION,
+            WeatherEntry.COL_TEMP_HI,
+            WeatherEntry.COL_TEMP_LO,
+    };
+
+    public static final int COL_INDEX_LOCATION_ID = 0;
+    public static final int COL_INDEX_CITY_ID = 1;
+    public static final int COL_INDEX_DISPLAY_NAME = 2;
+    public static final int COL_INDEX_DESCRIPTION = 3;
+    public static final int COL_INDEX_TEMP_HI = 4;
+    public static final int COL_INDEX_TEMP_LO = 5;
+
+    private final LayoutInflater mLayoutInflater;
+    private final String mNoForecastText;
+    private final List<Row> mRows;
+    private ForecastFormatter mForecastFormatter;
+
+    public DashboardAdapter(Context context, MeasurementUnits measurementUnits) {
+        mLayoutInflater = LayoutInflater.from(context);
+        mNoForecastText = context.getString(R.string.msg_dashboard_no_forecast);
+        mRows = new ArrayList<>();
+        mForecastFormatter = new ForecastFormatter(measurementUnits);
+    }
+
+    /**
+     * Sets the measurement units in which to display the temperatures.
+     */
+    public void setMeasurementUnits(MeasurementUnits measurementUnits) {
+        if (measurementUnits != mForecastFormatter.getMeasurementUnits()) {
+            mForecastFormatter = new ForecastFormatter(measurementUnits);
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Reads the rows of a page of the dashboard from the given cursor, such as on a background
+     * thread, to be given to {@link #addPage}.  The cursor is neither retained nor closed.
+     */
+    public static List<Row> readPage(Cursor cursor) {
+        if (cursor.getCount() == 0) {
+            return Collections.emptyList();
+        }
+        final List<Row> rows = new ArrayList<>(cursor.getCount());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            final String displayName = cursor.getString(COL_INDEX_DISPLAY_NAME);
+            final String name = (displayName == null)
+                    ? cursor.getString(COL_INDEX_CITY_ID) : displayName;
+            final boolean hasForecast = !cursor.isNull(COL_INDEX_TEMP_HI);
+            rows.add(new Row(cursor.getLong(COL_INDEX_LOCATION_ID), name, hasForecast,
+                    cursor.getString(COL_INDEX_DESCRIPTION),
+                    cursor.getDouble(COL_INDEX_TEMP_HI),
+                    cursor.getDouble(COL_INDEX_TEMP_LO)));
+        }
+        return rows;
+    }
+
+    /**
+     * Appends the rows of the next page of the dashboard, as read by {@link #readPage}.
+     */
+    public void addPage(List<Row> rows) {
+        if (!rows.isEmpty()) {
+            mRows.addAll(rows);
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Replaces all rows with the given rows, as read by {@link #readPage}, such as when the
+     * weather changed.
+     */
+    public void setRows(List<Row> rows) {
+        mRows.clear();
+        mRows.addAll(rows);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Returns the ID of the location of the last row, after which the next page starts; or
+     * {@link Long#MIN_VALUE} if there are no rows.
+     */
+    public long getLastLocationId() {
+        return mRows.isEmpty() ? Long.MIN_VALUE : mRows.get(mRows.size() - 1).locationId;
+    }
+
+    @Override
+    public int getCount() {
+        return mRows.size();
+    }
+
+    @Override
+    public Row getItem(int position) {
+        return mRows.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).locationId;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final View view;
+        final ViewHolder holder;
+        if (convertView == null) {
+            view = mLayoutInflater.inflate(R.layout.list_item_forecast, parent, false);
+            holder = new ViewHolder(view);
+            view.setTag(holder);
+        } else {
+            view = convertView;
+            holder = (ViewHolder) view.getTag();
+        }
+
+        final String text = mRows.get(position).getText(mForecastFormatter, mNoForecastText);
+        if (text != holder.text) {
+            holder.textView.setText(text);
+            holder.text = text;
+        }
+        return view;
+    }
+
+    /**
+     * A row of the dashboard: a location, and its forecast for the day.
+     */
+    public static final class Row {
+
+        public final long locationId;
+        public final String name;
+        public final boolean hasForecast;
+        public final String description;
+        public final double high;
+        public final double low;
+
+        private ForecastFormatter mTextFormatter;
+        private String mText;
+
+        public Row(long locationId, String name, boolean hasForecast, String description,
+                double high, double low) {
+            this.locationId = locationId;
+            this.name = name;
+            this.hasForecast = hasForecast;
+            this.description = description;
+            this.high = high;
+            this.low = low;
+        }
+
+        /**
+         * Returns the text of this row, such as "Kitchener - Clear - 25&deg;C/14&deg;C",
+         * formatting it again only if the formatter changed.
+         */
+        public String getText(ForecastFormatter formatter, String noForecastText) {
+            if (formatter != mTextFormatter) {
+                if (hasForecast) {
+                    mText = name + " - " + ((description == null) ? "" : description) + " - "
+                            + formatter.formatHighLows(high, low);
+                } else {
+                    mText = name + " - " + noForecastText;
+                }
+                mTextFormatter = formatter;
+            }
+            return mText;
+        }
+    }
+
+    /**
+     * The views of a row of the dashboard list, and the text last set on them.
+     */
+    private static final class ViewHolder {
+
+        public final TextView textView;
+        public String text;
+
+        public ViewHolder(View view) {
+            textView = (TextView) view.findViewById(R.id.list_item_forecast_textview);
+        }
+    }
+
+}
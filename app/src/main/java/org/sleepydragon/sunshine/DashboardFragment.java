@@ -0,0 +1,264 @@
+package org.sleepydragon.sunshine;
+
+import android.app.Fragment;
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import org.sleepydragon.sunshine.data.WeatherContract.DashboardEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.CancellationToken;
+import org.sleepydragon.sunshine.forecast.EpochDays;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+import org.sleepydragon.sunshine.forecast.TaskScheduler;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+/**
+ * A fragment showing today's forecast of every location, as the dashboard.
+ * <p>
+ * The dashboard is loaded a page at a time, each with a single query of the
+ * {@link org.sleepydragon.sunshine.data.WeatherProvider}, so the first rows are displayed as soon
+ * as the first page is loaded however many locations there are; the next page is loaded as the
+ * list is scrolled towards its end.  When the weather changes, the pages loaded so far are loaded
+ * again.  Like {@link ForecastFragment}, the pages are loaded on the DB lane of the app-wide
+ * {@link TaskScheduler}, with a {@link CancellationToken} that is cancelled when the fragment is
+ * destroyed.
+ */
+public class DashboardFragment extends Fragment {
+
+    private static final int PAGE_SIZE = 50;
+
+    private TaskScheduler mScheduler;
+    private Executor mMainThreadExecutor;
+    private CancellationToken mToken;
+    private ContentObserver mWeatherObserver;
+
+    private DashboardAdapter mDashboardAdapter;
+    private MeasurementUnits mMeasurementUnits;
+    private long mDate;
+    private boolean mDestroyed;
+
+    /**
+     * Whether a page is being loaded, or the loaded pages are being reloaded.
+     */
+    private boolean mLoading;
+
+    /**
+     * Whether the last page has been loaded.
+     */
+    private boolean mEndReached;
+
+    /**
+     * Whether the weather changed while a page was being loaded, in which case the loaded pages
+     * are reloaded once it has been loaded.
+     */
+    private boolean mReloadPending;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mScheduler = Schedulers.getTaskScheduler();
+        mMainThreadExecutor = Schedulers.getMainThreadExecutor();
+        mToken = new CancellationToken();
+        mDate = EpochDays.fromTimeMillis(System.currentTimeMillis(), TimeZone.getDefault());
+        mWeatherObserver = new WeatherObserver();
+        getActivity().getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI,
+                true, mWeatherObserver);
+        mScheduler.submit(TaskScheduler.Lane.IO, mToken, new LoadMeasurementUnitsRunnable());
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+            Bundle savedInstanceState) {
+        final View rootView = inflater.inflate(R.layout.fragment_dashboard, container, false);
+
+        final MeasurementUnits measurementUnits =
+                (mMeasurementUnits == null) ? MeasurementUnits.METRIC : mMeasurementUnits;
+        mDashboardAdapter = new DashboardAdapter(getActivity(), measurementUnits);
+        final ListView listView = (ListView) rootView.findViewById(R.id.listview_dashboard);
+        listView.setAdapter(mDashboardAdapter);
+        listView.setOnScrollListener(new LoadNextPageOnScrollListener());
+        loadNextPage();
+
+        return rootView;
+    }
+
+    @Override
+    public void onDestroy() {
+        try {
+            mDestroyed = true;
+            mToken.cancel();
+            getActivity().getContentResolver().unregisterContentObserver(mWeatherObserver);
+        } finally {
+            super.onDestroy();
+        }
+    }
+
+    /**
+     * Starts loading the next page, unless a page is already being loaded or the last page has
+     * been loaded.
+     */
+    private void loadNextPage() {
+        if (mLoading || mEndReached || mMeasurementUnits == null || mDashboardAdapter == null) {
+            return;
+        }
+        mLoading = true;
+        final Uri uri = DashboardEntry.buildUriFromDateAndPage(mDate,
+                mDashboardAdapter.getLastLocationId(), PAGE_SIZE);
+        final ContentResolver cr = getActivity().getContentResolver();
+        mScheduler.submit(TaskScheduler.Lane.DB, mToken, new Runnable() {
+            @Override
+            public void run() {
+                final List<DashboardAdapter.Row> rows = queryRows(cr, uri);
+                mMainThreadExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(List<DashboardAdapter.Row> rows) {
+        if (mDestroyed) {
+            return;
+        }
+        mLoading = false;
+        mDashboardAdapter.addPage(rows);
+        if (rows.size() < PAGE_SIZE) {
+            mEndReached = true;
+        }
+        if (mReloadPending) {
+            reload();
+        }
+    }
+
+    /**
+     * Starts loading the pages loaded so far again, in a single query, such as since the weather
+     * changed; if a page is being loaded then they are loaded again once it has been loaded.
+     */
+    private void reload() {
+        if (mLoading) {
+            mReloadPending = true;
+            return;
+        }
+        mReloadPending = false;
+        mLoading = true;
+        final int count = Math.max(mDashboardAdapter.getCount(), PAGE_SIZE);
+        final Uri uri = DashboardEntry.buildUriFromDateAndPage(mDate, Long.MIN_VALUE, count);
+        final ContentResolver cr = getActivity().getContentResolver();
+        mScheduler.submit(TaskScheduler.Lane.DB, mToken, new Runnable() {
+            @Override
+            public void run() {
+                final List<DashboardAdapter.Row> rows = queryRows(cr, uri);
+                mMainThreadExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onReloaded(rows, count);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onReloaded(List<DashboardAdapter.Row> rows, int count) {
+        if (mDestroyed) {
+            return;
+        }
+        mLoading = false;
+        mDashboardAdapter.setRows(rows);
+        mEndReached = (rows.size() < count);
+        if (mReloadPending) {
+            reload();
+        }
+    }
+
+    /**
+     * Queries the given page of the dashboard and reads its rows; invoked on the DB lane.
+     */
+    private static List<DashboardAdapter.Row> queryRows(ContentResolver cr, Uri uri) {
+        final Cursor cursor = cr.query(uri, DashboardAdapter.PROJECTION, null, null, null);
+        try {
+            return DashboardAdapter.readPage(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Loads the measurement units from the shared preferences, which reads them from disk, on
+     * the IO lane, and then starts loading the first page on the main thread.
+     */
+    private class LoadMeasurementUnitsRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            final SharedPreferences prefs =
+                    PreferenceManager.getDefaultSharedPreferences(getActivity());
+            final String value = prefs.getString(getString(R.string.pref_units_key), null);
+            final String valueImperial = getString(R.string.prefs_units_entry_value_imperial);
+            final MeasurementUnits measurementUnits = valueImperial.equals(value)
+                    ? MeasurementUnits.IMPERIAL : MeasurementUnits.METRIC;
+            mMainThreadExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mDestroyed) {
+                        mMeasurementUnits = measurementUnits;
+                        if (mDashboardAdapter != null) {
+                            mDashboardAdapter.setMeasurementUnits(measurementUnits);
+                        }
+                        loadNextPage();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Loads the next page once the list is scrolled to within half a page of its end.
+     */
+    private class LoadNextPageOnScrollListener implements AbsListView.OnScrollListener {
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            if (firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_SIZE / 2) {
+                loadNextPage();
+            }
+        }
+    }
+
+    private class WeatherObserver extends ContentObserver {
+
+        public WeatherObserver() {
+            super(new Handler(Looper.getMainLooper()));
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            if (!mDestroyed && mMeasurementUnits != null && mDashboardAdapter != null) {
+                reload();
+            }
+        }
+    }
+
+}
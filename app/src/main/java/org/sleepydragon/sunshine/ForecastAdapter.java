@@ -0,0 +1,182 @@
+package org.sleepydragon.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.ForecastFormatter;
+import org.sleepydragon.sunshine.forecast.ForecastRow;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Adapts the forecast returned by the {@link org.sleepydragon.sunshine.data.WeatherProvider} into
+ * the rows of the forecast list.
+ * <p>
+ * The forecast is copied out of each cursor given to {@link #setForecast} into
+ * {@link ForecastRow}s, which keep their text once formatted; the rows whose forecast did not
+ * change are carried over from the previous forecast, along with their text, and if no row
+ * changed then the list is not redrawn at all.  Each row's view holds a {@link ViewHolder}, so
+ * binding a row neither looks up its views nor, unless the row's text changed, sets its text;
+ * scrolling through rows that have already been displayed therefore performs no allocations.
+ * <p>
+ * The text is formatted again only when the measurement units or the locale change.  The IDs of
+ * the rows are the IDs of the weather rows, so they are stable.
+ * <p>
+ * The cursor must have the columns specified by {@link #PROJECTION}.
+ */
+public class ForecastAdapter extends BaseAdapter {
+
+    public static final String[] PROJECTION = new String[] {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COL_DATE,
+            WeatherEntry.COL_DESCRIPTION,
+            WeatherEntry.COL_TEMP_HI,
+            WeatherEntry.COL_TEMP_LO,
+            LocationEntry.COL_LATITUDE,
+            LocationEntry.COL_LONGITUDE,
+    };
+
+    public static final int COL_INDEX_ID = 0;
+    public static final int COL_INDEX_DATE = 1;
+    public static final int COL_INDEX_DESCRIPTION = 2;
+    public static final int COL_INDEX_TEMP_HI = 3;
+    public static final int COL_INDEX_TEMP_LO = 4;
+    public static final int COL_INDEX_LATITUDE = 5;
+    public static final int COL_INDEX_LONGITUDE = 6;
+
+    private final LayoutInflater mLayoutInflater;
+    private ForecastFormatter mForecastFormatter;
+    private List<ForecastRow> mRows;
+
+    public ForecastAdapter(Context context, MeasurementUnits measurementUnits) {
+        mLayoutInflater = LayoutInflater.from(context);
+        mForecastFormatter = new ForecastFormatter(measurementUnits);
+        mRows = Collections.emptyList();
+    }
+
+    /**
+     * Sets the measurement units in which to display the temperatures.
+     */
+    public void setMeasurementUnits(MeasurementUnits measurementUnits) {
+        if (measurementUnits != mForecastFormatter.getMeasurementUnits()) {
+            mForecastFormatter = new ForecastFormatter(measurementUnits);
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Sets the forecast to display, redrawing the list only if it changed.
+     * <p>
+     * The forecast is copied out of the cursor, which is neither retained nor closed.
+     * @param cursor the cursor whose rows to display; null to display nothing.
+     */
+    public void setForecast(Cursor cursor) {
+        final List<ForecastRow> newRows;
+        if (cursor == null) {
+            newRows = Collections.emptyList();
+        } else {
+            newRows = new ArrayList<>(cursor.getCount());
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                newRows.add(new ForecastRow(
+                        cursor.getLong(COL_INDEX_ID),
+                        cursor.getLong(COL_INDEX_DATE),
+                        cursor.getString(COL_INDEX_DESCRIPTION),
+                        cursor.getDouble(COL_INDEX_TEMP_HI),
+                        cursor.getDouble(COL_INDEX_TEMP_LO)));
+            }
+        }
+
+        boolean changed = false;
+        if (!mForecastFormatter.getLocale().equals(Locale.getDefault())) {
+            // a formatter for the new locale, so that all text is formatted again
+            mForecastFormatter = new ForecastFormatter(mForecastFormatter.getMeasurementUnits());
+            changed = true;
+        }
+        final List<ForecastRow> mergedRows = ForecastRow.merge(mRows, newRows);
+        if (mergedRows != mRows) {
+            mRows = mergedRows;
+            changed = true;
+        }
+        if (changed) {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Returns the text displayed for the row at the given position, as formatted for the current
+     * measurement units and locale.
+     */
+    public String getText(int position) {
+        return getItem(position).getText(mForecastFormatter);
+    }
+
+    @Override
+    public int getCount() {
+        return mRows.size();
+    }
+
+    @Override
+    public ForecastRow getItem(int position) {
+        return mRows.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).id;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final View view;
+        final ViewHolder holder;
+        if (convertView == null) {
+            view = mLayoutInflater.inflate(R.layout.list_item_forecast, parent, false);
+            holder = new ViewHolder(view);
+            view.setTag(holder);
+        } else {
+            view = convertView;
+            holder = (ViewHolder) view.getTag();
+        }
+
+        // the text of a row is the same object until the row or the formatter changes, so only
+        // set the text if it is a different object; re-setting the same text would needlessly
+        // trigger a layout pass
+        final String text = getText(position);
+        if (text != holder.text) {
+            holder.textView.setText(text);
+            holder.text = text;
+        }
+        return view;
+    }
+
+    /**
+     * The views of a row of the forecast list, and the text last set on them.
+     */
+    private static final class ViewHolder {
+
+        public final TextView textView;
+        public String text;
+
+        public ViewHolder(View view) {
+            textView = (TextView) view.findViewById(R.id.list_item_forecast_textview);
+        }
+    }
+
+}
@@ -1,15 +1,14 @@
 package org.sleepydragon.sunshine;
 
 import android.app.Fragment;
+import android.app.LoaderManager;
+import android.content.CursorLoader;
 import android.content.Intent;
+import android.content.Loader;
 import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
-import android.os.Message;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -19,36 +18,58 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.ListView;
-import android.widget.TextView;
 import android.widget.Toast;
 
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.CancellationToken;
+import org.sleepydragon.sunshine.forecast.EpochDays;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+import org.sleepydragon.sunshine.forecast.RefreshCoordinator;
+import org.sleepydragon.sunshine.forecast.TaskScheduler;
+
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
 import static org.sleepydragon.sunshine.Utils.LOG_TAG;
 
 /**
  * A fragment showing the weather forecast.
+ * <p>
+ * The forecast is displayed from the local cache maintained by the
+ * {@link org.sleepydragon.sunshine.data.WeatherProvider} as soon as it is loaded, while a fresh
+ * forecast is downloaded in the background; once the download completes it is saved to the
+ * cache, which in turn updates the displayed forecast.
+ * <p>
+ * Background work runs on the app-wide {@link TaskScheduler} rather than on threads of the
+ * fragment's own, and is cancelled through a {@link CancellationToken} that is cancelled when the
+ * fragment is destroyed.
+ * <p>
+ * Downloads are started through a {@link RefreshCoordinator}, so that a burst of changes to the
+ * location preference, such as when the preferences are imported, starts a single download for
+ * the final location rather than one for each change, and so that a download still in progress
+ * for the same location is reused rather than restarted.
  */
 public class ForecastFragment extends Fragment {
 
     private final MyOnSharedPreferenceChangeListener mOnSharedPreferenceChangeListener;
 
-    private static final int WHAT_SHOW_MAP = 1;
-    private static final int WHAT_UPDATE_UNITS = 2;
-    private static final int WHAT_REFRESH_WEATHER_DATA = 3;
+    private static final int LOADER_ID_FORECAST = 1;
+    private static final long REFRESH_DEBOUNCE_MILLIS = 500;
 
-    private Handler mMainHandler;
-    private Handler mWorkHandler;
-    private HandlerThread mWorkHandlerThread;
+    private TaskScheduler mScheduler;
+    private Executor mMainThreadExecutor;
+    private CancellationToken mToken;
+    private RefreshCoordinator<String> mRefreshCoordinator;
 
-    private WeatherDownloadAsyncTask mWeatherDownloadAsyncTask;
-    private LoadSharedPreferencesAsyncTask mLoadSharedPreferencesAsyncTask;
-    private ArrayAdapter<String> mForecastAdapter;
+    private WeatherDownloadTask mWeatherDownloadTask;
+    private ForecastAdapter mForecastAdapter;
     private SharedPreferences mSharedPreferences;
     private MeasurementUnits mMeasurementUnits;
     private String mKeyMeasurementUnits;
     private String mKeyLocation;
     private LocationCoordinates mLocationCoordinates;
+    private String mLoaderLocation;
     private boolean mDestroyed;
 
     public ForecastFragment() {
@@ -61,16 +82,12 @@ public class ForecastFragment extends Fragment {
         setHasOptionsMenu(true);
         mKeyMeasurementUnits = getString(R.string.pref_units_key);
         mKeyLocation = getString(R.string.pref_location_key);
-        mLoadSharedPreferencesAsyncTask = new LoadSharedPreferencesAsyncTask();
-        mLoadSharedPreferencesAsyncTask.execute();
-
-        mWorkHandlerThread = new HandlerThread("ForecastFragment Handler Thread");
-        mWorkHandlerThread.start();
-        final Looper workHandlerLooper = mWorkHandlerThread.getLooper();
-        final Handler.Callback workHandlerCallback = new MyWorkHandlerCallback();
-        mWorkHandler = new Handler(workHandlerLooper, workHandlerCallback);
-        final Handler.Callback mainHandlerCallback = new MyMainHandlerCallback();
-        mMainHandler = new Handler(mainHandlerCallback);
+        mScheduler = Schedulers.getTaskScheduler();
+        mMainThreadExecutor = Schedulers.getMainThreadExecutor();
+        mToken = new CancellationToken();
+        mRefreshCoordinator = new RefreshCoordinator<>(Schedulers.getMainThreadTimer(),
+                new WeatherDownloadRefresher(), REFRESH_DEBOUNCE_MILLIS);
+        mScheduler.submit(TaskScheduler.Lane.IO, mToken, new LoadSharedPreferencesRunnable());
     }
 
     @Override
@@ -78,8 +95,9 @@ public class ForecastFragment extends Fragment {
             Bundle savedInstanceState) {
         final View rootView = inflater.inflate(R.layout.fragment_forecast, container, false);
 
-        mForecastAdapter = new ArrayAdapter<String>(getActivity(),
-                R.layout.list_item_forecast, R.id.list_item_forecast_textview);
+        final MeasurementUnits measurementUnits =
+                (mMeasurementUnits == null) ? MeasurementUnits.METRIC : mMeasurementUnits;
+        mForecastAdapter = new ForecastAdapter(getActivity(), measurementUnits);
         final ListView listView = (ListView) rootView.findViewById(R.id.listview_forecast);
         listView.setAdapter(mForecastAdapter);
         listView.setOnItemClickListener(new ForecastListItemClickedListener());
@@ -91,18 +109,16 @@ public class ForecastFragment extends Fragment {
     public void onDestroy() {
         try {
             mDestroyed = true;
-            if (mWeatherDownloadAsyncTask != null) {
-                mWeatherDownloadAsyncTask.cancel(true);
+            if (mRefreshCoordinator != null) {
+                mRefreshCoordinator.cancel();
             }
-            if (mLoadSharedPreferencesAsyncTask != null) {
-                mLoadSharedPreferencesAsyncTask.cancel(true);
+            // also cancels the download, and any other work, started by this fragment
+            if (mToken != null) {
+                mToken.cancel();
             }
             if (mSharedPreferences != null) {
                 mSharedPreferences.unregisterOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
             }
-            if (mWorkHandlerThread != null) {
-                mWorkHandlerThread.quit();
-            }
         } finally {
             super.onDestroy();
         }
@@ -118,7 +134,7 @@ public class ForecastFragment extends Fragment {
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_refresh:
-                onOptionItemRefreshSelected(false);
+                onOptionItemRefreshSelected();
                 return true;
             case R.id.action_show_location_on_map:
                 onOptionItemShowLocationOnMapSelected();
@@ -128,24 +144,46 @@ public class ForecastFragment extends Fragment {
         }
     }
 
-    private void onOptionItemRefreshSelected(boolean force) {
+    private void onOptionItemRefreshSelected() {
         if (mSharedPreferences == null) {
             return;
         }
-        if (mWeatherDownloadAsyncTask == null || force) {
-            if (mWeatherDownloadAsyncTask != null) {
-                mWeatherDownloadAsyncTask.cancel(true);
-            }
-            final String location = mSharedPreferences.getString(mKeyLocation, "Kitchener,on");
-            mWeatherDownloadAsyncTask = new MyWeatherDownloadAsyncTask(location, mMeasurementUnits);
-            mWeatherDownloadAsyncTask.execute();
+        mRefreshCoordinator.requestNow(getLocation());
+    }
+
+    private String getLocation() {
+        return mSharedPreferences.getString(mKeyLocation, "Kitchener,on");
+    }
+
+    /**
+     * Starts loading the cached forecast for the current location, if it is not already loading.
+     */
+    private void loadCachedForecast() {
+        if (mSharedPreferences == null) {
+            return;
+        }
+        final String location = getLocation();
+        if (!location.equals(mLoaderLocation)) {
+            mLoaderLocation = location;
+            mLocationCoordinates = null;
+            getLoaderManager().restartLoader(LOADER_ID_FORECAST, null,
+                    new ForecastLoaderCallbacks());
         }
     }
 
     private void onOptionItemShowLocationOnMapSelected() {
-        mWorkHandler.sendEmptyMessage(WHAT_SHOW_MAP);
+        mScheduler.submit(TaskScheduler.Lane.IO, mToken, new Runnable() {
+            @Override
+            public void run() {
+                doShowLocationOnMap();
+            }
+        });
     }
 
+    /**
+     * Resolves the map activity for the current location and starts it; invoked on the IO lane,
+     * since resolving the activity queries the package manager.
+     */
     private void doShowLocationOnMap() {
         final LocationCoordinates coordinates = mLocationCoordinates;
         if (coordinates == null) {
@@ -174,11 +212,20 @@ public class ForecastFragment extends Fragment {
         final Intent intent = new Intent(Intent.ACTION_VIEW);
         intent.setData(uri);
 
-        if (intent.resolveActivity(getActivity().getPackageManager()) != null) {
-            startActivity(intent);
-        } else {
-            Toast.makeText(getActivity(), R.string.msg_no_maps_app, Toast.LENGTH_LONG).show();
-        }
+        final boolean resolved = (intent.resolveActivity(getActivity().getPackageManager()) != null);
+        mMainThreadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mDestroyed) {
+                    return;
+                } else if (resolved) {
+                    startActivity(intent);
+                } else {
+                    Toast.makeText(getActivity(), R.string.msg_no_maps_app, Toast.LENGTH_LONG)
+                            .show();
+                }
+            }
+        });
     }
 
     private void doUpdateUnits() {
@@ -193,21 +240,44 @@ public class ForecastFragment extends Fragment {
         } else {
             mMeasurementUnits = MeasurementUnits.METRIC;
         }
-        if (mMeasurementUnits != origMeasurementUnits) {
-            mMainHandler.sendEmptyMessage(WHAT_REFRESH_WEATHER_DATA);
+        if (mMeasurementUnits != origMeasurementUnits
+                && mForecastAdapter != null) {
+            // the forecast is stored in metric units and converted as it is displayed, so
+            // changing the units only requires re-displaying it, not downloading it again
+            mForecastAdapter.setMeasurementUnits(mMeasurementUnits);
         }
     }
 
-    private void setWeatherForecast(String[] weatherForecasts, LocationCoordinates locationCoordinates) {
-        mLocationCoordinates = locationCoordinates;
-        mForecastAdapter.clear();
-        mForecastAdapter.addAll(weatherForecasts);
+    /**
+     * Starts and cancels the downloads on behalf of {@link #mRefreshCoordinator}.
+     */
+    private class WeatherDownloadRefresher implements RefreshCoordinator.Refresher<String> {
+
+        @Override
+        public void startRefresh(String location) {
+            loadCachedForecast();
+            mWeatherDownloadTask = new MyWeatherDownloadTask(location);
+            mWeatherDownloadTask.execute();
+        }
+
+        @Override
+        public void cancelRefresh(String location) {
+            if (mWeatherDownloadTask != null) {
+                // the download may have progressed to parsing or saving, which are cancelled too
+                mWeatherDownloadTask.cancel();
+                mWeatherDownloadTask = null;
+                getActivity().setProgressBarIndeterminateVisibility(false);
+            }
+        }
     }
 
-    private class MyWeatherDownloadAsyncTask extends WeatherDownloadAsyncTask {
+    private class MyWeatherDownloadTask extends WeatherDownloadTask {
 
-        public MyWeatherDownloadAsyncTask(String location, MeasurementUnits measurementUnits) {
-            super(location, measurementUnits);
+        private final String mTaskLocation;
+
+        public MyWeatherDownloadTask(String location) {
+            super(getActivity().getContentResolver(), location, mToken);
+            mTaskLocation = location;
         }
 
         @Override
@@ -217,15 +287,22 @@ public class ForecastFragment extends Fragment {
         }
 
         @Override
-        protected void onProgressUpdate(Progress... values) {
-            for (final Progress progress : values) {
-                switch (progress) {
-                    case CONNECTING:
-                        Log.d(LOG_TAG, "WeatherDownloadAsyncTask connecting to " + getUrl());
-                        break;
-                    default:
-                        break;
-                }
+        protected void onProgressUpdate(Progress progress) {
+            switch (progress) {
+                case CONNECTING:
+                    Log.d(LOG_TAG, "WeatherDownloadTask connecting to " + getUrl());
+                    break;
+                case DOWNLOADING:
+                    if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+                        final float fraction = getFractionDownloaded();
+                        Log.v(LOG_TAG, "WeatherDownloadTask downloaded "
+                                + getNumDownloadedBytes() + " bytes"
+                                + (Float.isNaN(fraction) ? ""
+                                        : " (" + Math.round(fraction * 100) + "%)"));
+                    }
+                    break;
+                default:
+                    break;
             }
         }
 
@@ -235,28 +312,25 @@ public class ForecastFragment extends Fragment {
                 return;
             }
             getActivity().setProgressBarIndeterminateVisibility(false);
-            mWeatherDownloadAsyncTask = null;
-            if (result == null || isCancelled()) {
-                Log.i(LOG_TAG, "WeatherDownloadAsyncTask download cancelled");
-                return;
-            }
+            mWeatherDownloadTask = null;
+            mRefreshCoordinator.onRefreshFinished(mTaskLocation);
             switch (result) {
                 case OK:
-                    Log.i(LOG_TAG, "WeatherDownloadAsyncTask download completed successfully");
-                    final String[] weatherData = getWeatherData();
+                    // the downloaded forecast was saved to the cache, which will cause the loader
+                    // to deliver it to the adapter
+                    Log.i(LOG_TAG, "WeatherDownloadTask download completed successfully");
                     final String lat = getLocationLatitude();
                     final String lon = getLocationLongitude();
-                    final LocationCoordinates locationCoordinates;
-                    if (lat == null || lon == null) {
-                        locationCoordinates = null;
-                    } else {
-                        locationCoordinates = new LocationCoordinates(lat, lon);
+                    if (lat != null && lon != null) {
+                        mLocationCoordinates = new LocationCoordinates(lat, lon);
                     }
-                    setWeatherForecast(weatherData, locationCoordinates);
+                    break;
+                case NOT_MODIFIED:
+                    Log.i(LOG_TAG, "WeatherDownloadTask forecast is up to date");
                     break;
                 default:
                     final String errorMessage = getErrorMessage();
-                    Log.w(LOG_TAG, "WeatherDownloadAsyncTask download failed: " + errorMessage);
+                    Log.w(LOG_TAG, "WeatherDownloadTask download failed: " + errorMessage);
                     final String format = getText(R.string.msg_weather_download_failed).toString();
                     final String message = String.format(format, errorMessage);
                     Toast.makeText(getActivity(), message, Toast.LENGTH_LONG).show();
@@ -270,26 +344,37 @@ public class ForecastFragment extends Fragment {
 
         @Override
         public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-            final CharSequence forecastText = ((TextView) view).getText();
+            final String forecastText = mForecastAdapter.getText(position);
             final Intent intent = new Intent(getActivity(), DetailActivity.class);
             intent.putExtra(Intent.EXTRA_TEXT, forecastText);
             startActivity(intent);
         }
     }
 
-    private class LoadSharedPreferencesAsyncTask extends AsyncTask<Void, Void, SharedPreferences> {
+    /**
+     * Loads the shared preferences, which reads them from disk, on the IO lane, and then starts
+     * loading and downloading the forecast on the main thread.
+     */
+    private class LoadSharedPreferencesRunnable implements Runnable {
 
         @Override
-        protected SharedPreferences doInBackground(Void... params) {
-            return PreferenceManager.getDefaultSharedPreferences(getActivity());
+        public void run() {
+            final SharedPreferences prefs =
+                    PreferenceManager.getDefaultSharedPreferences(getActivity());
+            mMainThreadExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onSharedPreferencesLoaded(prefs);
+                }
+            });
         }
 
-        @Override
-        protected void onPostExecute(SharedPreferences prefs) {
+        private void onSharedPreferencesLoaded(SharedPreferences prefs) {
             if (! mDestroyed) {
-                mLoadSharedPreferencesAsyncTask = null;
                 mSharedPreferences = prefs;
                 prefs.registerOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
+                loadCachedForecast();
+                onOptionItemRefreshSelected();
                 mOnSharedPreferenceChangeListener.onSharedPreferenceChanged(prefs, mKeyMeasurementUnits);
             }
         }
@@ -300,11 +385,46 @@ public class ForecastFragment extends Fragment {
         @Override
         public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
             if (key.equals(mKeyMeasurementUnits)) {
-                mWorkHandler.sendEmptyMessage(WHAT_UPDATE_UNITS);
+                // the preferences are already loaded, so reading them does not touch the disk
+                doUpdateUnits();
             } else if (key.equals(mKeyLocation)) {
-                onOptionItemRefreshSelected(true);
+                // the cached forecast is loaded once the location stops changing, along with
+                // the download
+                mRefreshCoordinator.request(getLocation());
+            }
+        }
+    }
+
+    private class ForecastLoaderCallbacks implements LoaderManager.LoaderCallbacks<Cursor> {
+
+        @Override
+        public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+            // only show the forecast from today onwards
+            final long startDate = EpochDays.fromTimeMillis(System.currentTimeMillis(),
+                    TimeZone.getDefault());
+
+            final Uri uri = WeatherEntry.buildUriFromCityIdAndStartDate(mLoaderLocation, startDate);
+            final String sortOrder = WeatherEntry.COL_DATE + " ASC";
+            return new CursorLoader(getActivity(), uri, ForecastAdapter.PROJECTION, null, null,
+                    sortOrder);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+            mForecastAdapter.setForecast(cursor);
+            if (mLocationCoordinates == null && cursor.moveToFirst()
+                    && !cursor.isNull(ForecastAdapter.COL_INDEX_LATITUDE)
+                    && !cursor.isNull(ForecastAdapter.COL_INDEX_LONGITUDE)) {
+                final String lat = cursor.getString(ForecastAdapter.COL_INDEX_LATITUDE);
+                final String lon = cursor.getString(ForecastAdapter.COL_INDEX_LONGITUDE);
+                mLocationCoordinates = new LocationCoordinates(lat, lon);
             }
         }
+
+        @Override
+        public void onLoaderReset(Loader<Cursor> loader) {
+            mForecastAdapter.setForecast(null);
+        }
     }
 
     private static class LocationCoordinates {
@@ -321,35 +441,4 @@ public class ForecastFragment extends Fragment {
             this.longitude = longitude;
         }
     }
-
-    private class MyWorkHandlerCallback implements Handler.Callback {
-        @Override
-        public boolean handleMessage(Message msg) {
-            switch (msg.what) {
-                case WHAT_SHOW_MAP:
-                    doShowLocationOnMap();
-                    break;
-                case WHAT_UPDATE_UNITS:
-                    doUpdateUnits();
-                    break;
-                default:
-                    return false;
-            }
-            return true;
-        }
-    }
-
-    private class MyMainHandlerCallback implements Handler.Callback {
-        @Override
-        public boolean handleMessage(Message msg) {
-            switch (msg.what) {
-                case WHAT_REFRESH_WEATHER_DATA:
-                    onOptionItemRefreshSelected(true);
-                    break;
-                default:
-                    return false;
-            }
-            return true;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -23,6 +23,7 @@ public class MainActivity extends ActionBarActivity {
                     .add(R.id.container, new ForecastFragment())
                     .commit();
         }
+        SyncService.ensureScheduled(this);
     }
 
     private static void setThreadPolicy() {
@@ -42,6 +43,9 @@ public class MainActivity extends ActionBarActivity {
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
+            case R.id.action_dashboard:
+                startActivity(new Intent(this, DashboardActivity.class));
+                return true;
             case R.id.action_settings:
                 final Intent intent = new Intent(this, SettingsActivity.class);
                 startActivity(intent);
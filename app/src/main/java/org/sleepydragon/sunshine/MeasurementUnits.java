@@ -1,6 +0,0 @@
-package org.sleepydragon.sunshine;
-
-public enum MeasurementUnits {
-    METRIC,
-    IMPERIAL,
-}
@@ -0,0 +1,84 @@
+package org.sleepydragon.sunshine;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.sleepydragon.sunshine.forecast.RefreshCoordinator;
+import org.sleepydragon.sunshine.forecast.TaskScheduler;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Provides the {@link TaskScheduler} shared by the whole app, and an {@link Executor} and a
+ * {@link RefreshCoordinator.Timer} that run tasks on the main thread.
+ */
+public final class Schedulers {
+
+    private static final int IO_THREADS = 4;
+
+    private static TaskScheduler sTaskScheduler;
+    private static Executor sMainThreadExecutor;
+    private static RefreshCoordinator.Timer sMainThreadTimer;
+
+    private Schedulers() {
+    }
+
+    /**
+     * Returns the app-wide scheduler, creating it if necessary.
+     * @return the app-wide scheduler; never returns null.
+     */
+    public static synchronized TaskScheduler getTaskScheduler() {
+        if (sTaskScheduler == null) {
+            sTaskScheduler = new TaskScheduler(IO_THREADS);
+        }
+        return sTaskScheduler;
+    }
+
+    /**
+     * Returns an executor that runs tasks on the main thread, in the order submitted.
+     * @return the executor; never returns null.
+     */
+    public static synchronized Executor getMainThreadExecutor() {
+        if (sMainThreadExecutor == null) {
+            sMainThreadExecutor = new MainThreadExecutor();
+        }
+        return sMainThreadExecutor;
+    }
+
+    /**
+     * Returns a timer that runs tasks on the main thread after a delay.
+     * @return the timer; never returns null.
+     */
+    public static synchronized RefreshCoordinator.Timer getMainThreadTimer() {
+        if (sMainThreadTimer == null) {
+            sMainThreadTimer = new MainThreadTimer();
+        }
+        return sMainThreadTimer;
+    }
+
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            mHandler.post(runnable);
+        }
+    }
+
+    private static class MainThreadTimer implements RefreshCoordinator.Timer {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            mHandler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            mHandler.removeCallbacks(task);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.sleepydragon.sunshine;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.SQLException;
+import android.util.Log;
+
+import org.sleepydragon.sunshine.data.ForecastStore;
+import org.sleepydragon.sunshine.forecast.Clock;
+import org.sleepydragon.sunshine.forecast.EpochDays;
+import org.sleepydragon.sunshine.forecast.ForecastDownloader;
+import org.sleepydragon.sunshine.forecast.ForecastFetchEngine;
+import org.sleepydragon.sunshine.forecast.ForecastSyncer;
+import org.sleepydragon.sunshine.forecast.SyncPolicy;
+
+import java.util.TimeZone;
+
+import static org.sleepydragon.sunshine.Utils.LOG_TAG;
+
+/**
+ * Syncs the forecasts of all locations in the background, and schedules the next sync.
+ * <p>
+ * Each sync is performed by a {@link ForecastSyncer}, which decides which locations to refresh
+ * and when the next sync is due, with jitter and with a backoff after failures; the forecasts are
+ * saved through the {@link org.sleepydragon.sunshine.data.WeatherProvider} by a
+ * {@link ForecastStore}.  The number of consecutive failed syncs, which determines the backoff,
+ * is kept in shared preferences, since each sync may run in a new process.
+ * <p>
+ * The next sync is scheduled with a non-waking {@link AlarmManager#RTC} alarm, so a sync never
+ * wakes the device; instead it runs when the device next wakes for some other reason, and since
+ * the alarm is inexact it is batched with the alarms of other apps, sharing their wake-up of the
+ * radio.
+ */
+public class SyncService extends IntentService {
+
+    private static final String PREFS_NAME = "sync";
+    private static final String KEY_CONSECUTIVE_FAILURES = "consecutiveFailures";
+    private static final int MAX_CONCURRENCY = 4;
+    private static final int MAX_CONCURRENCY_PER_HOST = 2;
+
+    public SyncService() {
+        super("SyncService");
+    }
+
+    /**
+     * Schedules a sync now, unless one is already scheduled, such as when the app is started for
+     * the first time or after the device restarted, which cancels all alarms.
+     */
+    public static void ensureScheduled(Context context) {
+        final Intent intent = new Intent(context, SyncService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) == null) {
+            schedule(context, System.currentTimeMillis());
+        }
+    }
+
+    private static void schedule(Context context, long timeMillis) {
+        final Intent intent = new Intent(context, SyncService.class);
+        final PendingIntent operation = PendingIntent.getService(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        final AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.RTC, timeMillis, operation);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        final SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        final int consecutiveFailures = prefs.getInt(KEY_CONSECUTIVE_FAILURES, 0);
+        final ForecastStore store = new ForecastStore(getContentResolver());
+        final ForecastFetchEngine engine = new ForecastFetchEngine(new ForecastDownloader(),
+                store, MAX_CONCURRENCY, MAX_CONCURRENCY_PER_HOST);
+        final ForecastSyncer syncer = new ForecastSyncer(engine, new SyncPolicy(),
+                Clock.SYSTEM);
+
+        ForecastSyncer.Outcome outcome;
+        try {
+            outcome = syncer.sync(store.loadAllCacheInfo(), consecutiveFailures);
+            if (!outcome.isSkipped()) {
+                deleteExpired(store);
+            }
+        } catch (SQLException e) {
+            Log.w(LOG_TAG, "unable to sync forecasts", e);
+            outcome = syncer.failed(consecutiveFailures);
+        } catch (InterruptedException e) {
+            outcome = syncer.failed(consecutiveFailures);
+        } finally {
+            engine.shutdown();
+        }
+
+        if (Utils.isDebugLogEnabled()) {
+            Log.d(LOG_TAG, "synced forecasts: " + outcome);
+        }
+        prefs.edit().putInt(KEY_CONSECUTIVE_FAILURES, outcome.consecutiveFailures).commit();
+        schedule(this, outcome.nextSyncTimeMillis);
+    }
+
+    private static void deleteExpired(ForecastStore store) {
+        final long today = EpochDays.fromTimeMillis(System.currentTimeMillis(),
+                TimeZone.getDefault());
+        try {
+            store.deleteExpired(today, ForecastStore.DEFAULT_PAST_DAYS_TO_KEEP);
+        } catch (SQLException e) {
+            // the forecasts were saved, and the expired weather is deleted by the next sync
+            Log.w(LOG_TAG, "unable to delete expired weather", e);
+        }
+    }
+
+}
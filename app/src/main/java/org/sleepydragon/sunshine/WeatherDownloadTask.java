@@ -0,0 +1,436 @@
+package org.sleepydragon.sunshine;
+
+import android.content.ContentResolver;
+import android.database.SQLException;
+import android.util.Log;
+
+import org.sleepydragon.sunshine.data.ForecastStore;
+import org.sleepydragon.sunshine.forecast.CancellationToken;
+import org.sleepydragon.sunshine.forecast.DownloadProgressListener;
+import org.sleepydragon.sunshine.forecast.EpochDays;
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+import org.sleepydragon.sunshine.forecast.ForecastDownloader;
+import org.sleepydragon.sunshine.forecast.HttpCacheInfo;
+import org.sleepydragon.sunshine.forecast.TaskScheduler;
+
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+import static org.sleepydragon.sunshine.Utils.LOG_TAG;
+
+/**
+ * Downloads the weather data from the Internet and saves it into the
+ * {@link org.sleepydragon.sunshine.data.WeatherProvider}.
+ * <p>
+ * Nothing is downloaded if the previously-downloaded weather data is still fresh; otherwise, the
+ * previously-downloaded weather data is revalidated with a conditional request so that it is only
+ * downloaded again if it has changed.
+ * <p>
+ * The work is split into steps, each run on the appropriate lane of the app-wide
+ * {@link TaskScheduler}: the cache information is loaded on the {@link TaskScheduler.Lane#DB DB}
+ * lane, the forecast is downloaded by {@link ForecastDownloader} on the
+ * {@link TaskScheduler.Lane#IO IO} lane, which parses the response as it is downloaded so that it
+ * is never buffered in memory as a whole, and the forecast is saved on the DB lane.
+ * All steps share this task's {@link CancellationToken}, so {@link #cancel} stops the task at
+ * whichever step it has reached: a download in progress is aborted by disconnecting, and steps
+ * not yet started are skipped, so a cancelled download is never saved.
+ * <p>
+ * {@link #onProgressUpdate} and {@link #onPostExecute} are invoked on the main thread, much like
+ * the methods of {@link android.os.AsyncTask} of the same names, except that neither is invoked
+ * once the task is cancelled.  The progress of the download is published as
+ * {@link Progress#DOWNLOADING}, rate-limited by
+ * {@link org.sleepydragon.sunshine.forecast.ProgressInputStream} so as not to flood the main
+ * thread; the progress itself is available from {@link #getNumDownloadedBytes} and
+ * {@link #getFractionDownloaded}.
+ */
+public class WeatherDownloadTask {
+
+    private final ContentResolver mContentResolver;
+    private final String mLocation;
+    private final ForecastDownloader mDownloader;
+    private final CancellationToken mToken;
+    private final TaskScheduler mScheduler;
+    private final Executor mMainThreadExecutor;
+    private final Runnable mPublishConnecting;
+    private final Runnable mPublishDownloading;
+
+    // each step runs after the previous step submits it, so the fields used by more than one step
+    // need not be volatile
+    private ForecastStore mForecastStore;
+    private HttpCacheInfo mCacheInfo;
+
+    private String mErrorMessage;
+    private ForecastBatch mForecast;
+    private volatile long mNumDownloadedBytes;
+    private volatile float mFractionDownloaded;
+    private String mLocationLatitude;
+    private String mLocationLongitude;
+
+    /**
+     * @param contentResolver the content resolver with which to access the
+     * {@link org.sleepydragon.sunshine.data.WeatherProvider}; must not be null.
+     * @param location the location whose forecast to download; must not be null.
+     * @param parentToken the token whose cancellation also cancels this task, such as a token
+     * that is cancelled when the component that started this task is destroyed; must not be null.
+     */
+    public WeatherDownloadTask(ContentResolver contentResolver, String location,
+            CancellationToken parentToken) {
+        if (contentResolver == null) {
+            throw new NullPointerException("contentResolver==null");
+        } else if (location == null) {
+            throw new NullPointerException("location==null");
+        } else if (parentToken == null) {
+            throw new NullPointerException("parentToken==null");
+        }
+        mContentResolver = contentResolver;
+        mLocation = location;
+        mDownloader = new ForecastDownloader();
+        mToken = parentToken.newChild();
+        mScheduler = Schedulers.getTaskScheduler();
+        mMainThreadExecutor = Schedulers.getMainThreadExecutor();
+        mPublishConnecting = new PublishProgressRunnable(Progress.CONNECTING);
+        mPublishDownloading = new PublishProgressRunnable(Progress.DOWNLOADING);
+        mFractionDownloaded = Float.NaN;
+    }
+
+    /**
+     * Starts this task.
+     * <p>
+     * This method must be invoked on the main thread, and at most once.
+     */
+    public void execute() {
+        onPreExecute();
+        mScheduler.submit(TaskScheduler.Lane.DB, mToken, new Step() {
+            @Override
+            protected void runStep() {
+                loadCacheInfo();
+            }
+        });
+    }
+
+    /**
+     * Cancels this task; neither {@link #onProgressUpdate} nor {@link #onPostExecute} will be
+     * invoked afterwards.
+     */
+    public void cancel() {
+        mToken.cancel();
+    }
+
+    /**
+     * Returns whether this task, or the token from which it was created, has been cancelled.
+     */
+    public boolean isCancelled() {
+        return mToken.isCancelled();
+    }
+
+    /**
+     * Invoked on the main thread by {@link #execute} before any work is started.
+     */
+    protected void onPreExecute() {
+    }
+
+    /**
+     * Invoked on the main thread as this task progresses.
+     */
+    protected void onProgressUpdate(Progress progress) {
+    }
+
+    /**
+     * Invoked on the main thread when this task completes, unless it was cancelled.
+     */
+    protected void onPostExecute(Result result) {
+    }
+
+    /**
+     * The first step, run on the DB lane.
+     */
+    private void loadCacheInfo() {
+        mForecastStore = new ForecastStore(mContentResolver);
+        try {
+            mCacheInfo = mForecastStore.loadCacheInfo(mLocation);
+        } catch (SQLException e) {
+            finish(Result.SAVE_FAILED, e.getMessage());
+            return;
+        }
+        if (mCacheInfo != null && mCacheInfo.isFresh(System.currentTimeMillis())) {
+            finish(Result.NOT_MODIFIED, null);
+            return;
+        }
+
+        mScheduler.submit(TaskScheduler.Lane.IO, mToken, new Step() {
+            @Override
+            protected void runStep() {
+                download();
+            }
+        });
+    }
+
+    /**
+     * The second step, run on the IO lane.
+     */
+    private void download() {
+        mMainThreadExecutor.execute(mPublishConnecting);
+        final FetchResult result = mDownloader.download(mLocation, mCacheInfo,
+                new MyDownloadProgressListener(), mToken);
+
+        switch (result.status) {
+            case OK:
+                mCacheInfo = result.cacheInfo;
+                mForecast = result.forecast;
+                mLocationLatitude = result.forecast.getLatitude();
+                mLocationLongitude = result.forecast.getLongitude();
+                mScheduler.submit(TaskScheduler.Lane.DB, mToken, new Step() {
+                    @Override
+                    protected void runStep() {
+                        save();
+                    }
+                });
+                break;
+            case NOT_MODIFIED:
+                mCacheInfo = result.cacheInfo;
+                mScheduler.submit(TaskScheduler.Lane.DB, mToken, new Step() {
+                    @Override
+                    protected void runStep() {
+                        saveCacheInfo();
+                    }
+                });
+                break;
+            case FRESH:
+                finish(Result.NOT_MODIFIED, null);
+                break;
+            case INVALID_URL:
+                finish(Result.INVALID_URL, result.errorMessage);
+                break;
+            case CONNECT_FAILED:
+                finish(Result.CONNECT_FAILED, result.errorMessage);
+                break;
+            case DOWNLOAD_FAILED:
+                finish(Result.DOWNLOAD_FAILED, result.errorMessage);
+                break;
+            case INVALID_DATA:
+                finish(Result.INVALID_DATA, result.errorMessage);
+                break;
+            default:
+                throw new RuntimeException("unsupported status: " + result.status);
+        }
+    }
+
+    /**
+     * The last step, run on the DB lane, if a forecast was downloaded.
+     * <p>
+     * Once the forecast is saved, the weather of the days that have passed is deleted, since the
+     * saved forecast replaces them as the days being displayed.
+     */
+    private void save() {
+        try {
+            mForecastStore.save(mLocation, mForecast, mCacheInfo);
+        } catch (SQLException e) {
+            finish(Result.SAVE_FAILED, e.getMessage());
+            return;
+        }
+        final long today = EpochDays.fromTimeMillis(System.currentTimeMillis(),
+                TimeZone.getDefault());
+        try {
+            mForecastStore.deleteExpired(today, ForecastStore.DEFAULT_PAST_DAYS_TO_KEEP);
+        } catch (SQLException e) {
+            // the forecast was saved, and the expired weather is deleted by the next download
+            Log.w(LOG_TAG, "unable to delete expired weather", e);
+        }
+        finish(Result.OK, null);
+    }
+
+    /**
+     * The last step, run on the DB lane, if the forecast was not modified.
+     */
+    private void saveCacheInfo() {
+        try {
+            mForecastStore.saveCacheInfo(mLocation, mCacheInfo);
+        } catch (SQLException e) {
+            finish(Result.SAVE_FAILED, e.getMessage());
+            return;
+        }
+        finish(Result.NOT_MODIFIED, null);
+    }
+
+    private void finish(final Result result, String errorMessage) {
+        mErrorMessage = errorMessage;
+        mMainThreadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the parent token, such as a fragment's, may outlive many tasks, so release this
+                // task's token from it; a fragment cancels its token on the main thread too, so a
+                // cancellation that happened first is still seen below
+                mToken.detach();
+                if (!mToken.isCancelled()) {
+                    onPostExecute(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Assembles and returns the URL that will be used to download the weather data.
+     * @return the URL that will be used to download the weather data; never returns null.
+     */
+    public String getUrl() {
+        return mDownloader.getUrl(mLocation);
+    }
+
+    /**
+     * Returns the message associated with an error that occurred in the background.
+     * <p>
+     * This method is designed to be called by {@link #onPostExecute} if any result other than
+     * {@link Result#OK} is passed in.  The message depends on the specific error and is not
+     * generally suitable for displaying directly to the user, but rather is suitable for logging
+     * to somewhere, such as to the logcat log.
+     * @return the message associated with an error that occurred in the background; returns null
+     * if no error occurred.
+     */
+    public String getErrorMessage() {
+        return mErrorMessage;
+    }
+
+    /**
+     * Returns the forecast downloaded in the background.
+     * <p>
+     * This method is designed to be called by {@link #onPostExecute} if and only if
+     * {@link Result#OK} is passed in.  The temperatures of the forecast are always in metric
+     * units; they are converted into the user's preferred units only when they are displayed.
+     * @return the forecast downloaded in the background; returns null if no forecast was
+     * downloaded.
+     */
+    public ForecastBatch getForecast() {
+        return mForecast;
+    }
+
+    /**
+     * Returns the latitude of the location whose weather data was downloaded in the background.
+     * <p>
+     * This method is designed to be called by {@link #onPostExecute} if and only if
+     * {@link Result#OK} is passed in.
+     * @return the latitude of the location whose weather data was downloaded in the background;
+     * returns null no weather data was downloaded or the latitude could not be parsed.
+     * @see #getLocationLongitude
+     */
+    public String getLocationLatitude() {
+        return mLocationLatitude;
+    }
+
+    /**
+     * Returns the longitude of the location whose weather data was downloaded in the background.
+     * <p>
+     * This method is designed to be called by {@link #onPostExecute} if and only if
+     * {@link Result#OK} is passed in.
+     * @return the longitude of the location whose weather data was downloaded in the background;
+     * returns null no weather data was downloaded or the longitude could not be parsed.
+     * @see #getLocationLatitude
+     */
+    public String getLocationLongitude() {
+        return mLocationLongitude;
+    }
+
+    /**
+     * Returns the number of bytes that have been downloaded so far from the weather service, as
+     * transferred; that is, before decompression if the response is compressed.
+     * <p>
+     * This method is designed to be called by {@link #onProgressUpdate} when specified the event
+     * {@link Progress#DOWNLOADING}.  It can, however, be called at any point and will return the
+     * most recently reported value.
+     * @return the number of bytes that have been downloaded so far from the weather service;
+     * returns 0 if download has not yet started.
+     */
+    public long getNumDownloadedBytes() {
+        return mNumDownloadedBytes;
+    }
+
+    /**
+     * Returns the fraction of the response that has been downloaded so far.
+     * <p>
+     * This method is designed to be called by {@link #onProgressUpdate} when specified the event
+     * {@link Progress#DOWNLOADING}.
+     * @return the fraction of the response that has been downloaded so far, from 0 to 1; returns
+     * NaN if the length of the response is unknown or if download has not yet started.
+     */
+    public float getFractionDownloaded() {
+        return mFractionDownloaded;
+    }
+
+    public enum Progress {
+        CONNECTING,
+        DOWNLOADING,
+    }
+
+    public enum Result {
+        OK,
+
+        /**
+         * The previously-downloaded weather data is still current, either because it is still
+         * fresh or because the server reported that it has not been modified, and so was not
+         * downloaded again.
+         */
+        NOT_MODIFIED,
+
+        INVALID_URL,
+        CONNECT_FAILED,
+        DOWNLOAD_FAILED,
+        INVALID_DATA,
+        SAVE_FAILED,
+
+        /**
+         * A step threw an unexpected exception, such as a bug or a misbehaving content provider.
+         */
+        UNEXPECTED_ERROR,
+    }
+
+    /**
+     * A step of this task, which finishes the task with {@link Result#UNEXPECTED_ERROR} if it
+     * throws, since the scheduler would otherwise leave the task unfinished and its caller waiting
+     * for {@link #onPostExecute} forever.
+     */
+    private abstract class Step implements Runnable {
+
+        @Override
+        public final void run() {
+            try {
+                runStep();
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "WeatherDownloadTask step failed unexpectedly", e);
+                finish(Result.UNEXPECTED_ERROR, e.toString());
+            }
+        }
+
+        protected abstract void runStep();
+    }
+
+    /**
+     * Publishes a progress event on the main thread; one instance is created per event so that
+     * publishing progress does not allocate.
+     */
+    private class PublishProgressRunnable implements Runnable {
+
+        private final Progress mProgress;
+
+        public PublishProgressRunnable(Progress progress) {
+            mProgress = progress;
+        }
+
+        @Override
+        public void run() {
+            if (!mToken.isCancelled()) {
+                onProgressUpdate(mProgress);
+            }
+        }
+    }
+
+    private class MyDownloadProgressListener implements DownloadProgressListener {
+
+        @Override
+        public void onDownloadProgress(long byteCount, float fractionComplete) {
+            mNumDownloadedBytes = byteCount;
+            mFractionDownloaded = fractionComplete;
+            mMainThreadExecutor.execute(mPublishDownloading);
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.SizedLruCache;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches, in memory, the weather of a city from a given date onwards, as queried by the
+ * forecast list, so that the {@link WeatherProvider} can serve repeated queries of the same
+ * city's forecast without querying the database.
+ * <p>
+ * Each cached {@link Window} holds the values of {@link #COLUMNS} for all of the city's days from
+ * its start date onwards, so that it can serve any projection of those columns, any range of
+ * dates from its start date onwards, and any single date within it.  The cache is bounded by
+ * {@link #MAX_SIZE_BYTES}, an estimate of the memory used by the windows, and evicts the
+ * least-recently-used windows beyond it.
+ * <p>
+ * The provider calls {@link #invalidate} whenever it changes weather or location rows, once the
+ * change is committed, which removes the windows that contain the changed rows; see
+ * {@link SizedLruCache} for how windows loaded concurrently with a change are kept out.
+ */
+final class ForecastCache extends SizedLruCache<ForecastCache.Key, ForecastCache.Window> {
+
+    /**
+     * The value to give {@link #invalidate} to invalidate the windows of every location.
+     */
+    public static final long ALL_LOCATIONS = -1;
+
+    static final long MAX_SIZE_BYTES = 256 * 1024;
+
+    /**
+     * The columns of the weather table, joined with the location table, that are cached; queries
+     * of other columns are not served from the cache.
+     */
+    static final String[] COLUMNS = new String[] {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_LOCATION_ID,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_DATE,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_ICON_ID,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_DESCRIPTION,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_TEMP_HI,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_TEMP_LO,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_HUMIDITY,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_PRESSURE,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_WIND_SPEED,
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_WIND_DIRECTION,
+            LocationEntry.TABLE_NAME + "." + LocationEntry.COL_CITY_ID,
+            LocationEntry.TABLE_NAME + "." + LocationEntry.COL_DISPLAY_NAME,
+            LocationEntry.TABLE_NAME + "." + LocationEntry.COL_LATITUDE,
+            LocationEntry.TABLE_NAME + "." + LocationEntry.COL_LONGITUDE,
+    };
+
+    private static final int COLUMN_INDEX_DATE = 2;
+
+    /**
+     * Maps the names by which {@link #COLUMNS} may be specified in a projection to their indexes.
+     * Each column may be specified by its qualified name and, if that is unambiguous in the join
+     * of the weather and location tables, by its unqualified name.
+     */
+    private static final Map<String, Integer> COLUMN_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            final String column = COLUMNS[i];
+            COLUMN_INDEXES.put(column, i);
+            final String unqualifiedColumn = getUnqualifiedName(column);
+            if (!unqualifiedColumn.equals(WeatherEntry._ID)) {
+                COLUMN_INDEXES.put(unqualifiedColumn, i);
+            }
+        }
+    }
+
+    ForecastCache() {
+        super(MAX_SIZE_BYTES);
+    }
+
+    @Override
+    protected long sizeOf(Key key, Window value) {
+        return value.sizeBytes;
+    }
+
+    /**
+     * Returns the window of the given city from the given date onwards.
+     * @return the window, or null if it is not cached.
+     */
+    public Window getWindow(String cityId, long startDate) {
+        return get(new Key(cityId, startDate));
+    }
+
+    /**
+     * Returns any window of the given city that contains the given date.
+     * @return the window, or null if none is cached.
+     */
+    public Window findWindowContaining(final String cityId, final long date) {
+        return find(new Filter<Key, Window>() {
+            @Override
+            public boolean matches(Key key, Window value) {
+                return key.cityId.equals(cityId) && key.startDate <= date;
+            }
+        });
+    }
+
+    /**
+     * Adds the given window.
+     * @param generation the value of {@link #getGeneration} obtained before the window was read
+     * from the database.
+     * @return whether the window was added.
+     */
+    public boolean putWindow(Window window, long generation) {
+        return put(new Key(window.cityId, window.startDate), window, generation);
+    }
+
+    /**
+     * Removes the windows containing the weather of the given location on any date up to and
+     * including the given date, that is, the windows that start on or before it.
+     * @param locationId the location whose weather changed, or {@link #ALL_LOCATIONS}.
+     * @param lastChangedDate the last date whose weather changed, or {@link Long#MAX_VALUE} if
+     * the weather of any date may have changed.
+     */
+    public void invalidate(final long locationId, final long lastChangedDate) {
+        removeAll(new Filter<Key, Window>() {
+            @Override
+            public boolean matches(Key key, Window value) {
+                return (locationId == ALL_LOCATIONS || value.locationId == locationId)
+                        && key.startDate <= lastChangedDate;
+            }
+        });
+    }
+
+    /**
+     * Returns the indexes into {@link #COLUMNS} of the columns of the given projection.
+     * @return the indexes, or null if the projection includes a column that is not cached, or is
+     * null, which queries every column of both tables.
+     */
+    public static int[] getColumnIndexes(String[] projection) {
+        if (projection == null) {
+            return null;
+        }
+        final int[] columnIndexes = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            final Integer columnIndex = COLUMN_INDEXES.get(projection[i]);
+            if (columnIndex == null) {
+                return null;
+            }
+            columnIndexes[i] = columnIndex;
+        }
+        return columnIndexes;
+    }
+
+    /**
+     * Returns whether the given column, qualified by its table name, is cached.
+     */
+    public static boolean isCachedColumn(String column) {
+        return COLUMN_INDEXES.containsKey(column);
+    }
+
+    /**
+     * Returns the name of the column of a cursor that queries the given column, which SQLite
+     * names without the table name by which the column may be qualified.
+     */
+    private static String getUnqualifiedName(String column) {
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Identifies a window by the city and its start date, as queried by the forecast list.
+     */
+    static final class Key {
+
+        public final String cityId;
+        public final long startDate;
+
+        public Key(String cityId, long startDate) {
+            if (cityId == null) {
+                throw new NullPointerException("cityId==null");
+            }
+            this.cityId = cityId;
+            this.startDate = startDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return cityId.equals(other.cityId) && startDate == other.startDate;
+        }
+
+        @Override
+        public int hashCode() {
+            return cityId.hashCode() * 31 + (int) (startDate ^ (startDate >>> 32));
+        }
+    }
+
+    /**
+     * The weather of a city from a start date onwards, as the values of {@link #COLUMNS}, sorted
+     * by date.
+     */
+    static final class Window {
+
+        private static final int OBJECT_OVERHEAD_BYTES = 16;
+        private static final int REFERENCE_BYTES = 4;
+        private static final int NUMBER_BYTES = 16;
+        private static final int STRING_OVERHEAD_BYTES = 40;
+
+        public final String cityId;
+        public final long locationId;
+        public final long startDate;
+        public final long sizeBytes;
+        private final Object[][] mRows;
+
+        private Window(String cityId, long locationId, long startDate, Object[][] rows) {
+            this.cityId = cityId;
+            this.locationId = locationId;
+            this.startDate = startDate;
+            mRows = rows;
+            sizeBytes = estimateSizeBytes(rows);
+        }
+
+        /**
+         * Reads a window from the given cursor, which must have the columns {@link #COLUMNS} and
+         * be sorted by date.
+         */
+        public static Window read(String cityId, long locationId, long startDate, Cursor cursor) {
+            final Object[][] rows = new Object[cursor.getCount()][];
+            int rowIndex = 0;
+            while (cursor.moveToNext()) {
+                final Object[] row = new Object[COLUMNS.length];
+                for (int i = 0; i < row.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            row[i] = cursor.getString(i);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[i] = cursor.getBlob(i);
+                            break;
+                        default:
+                            row[i] = null;
+                            break;
+                    }
+                }
+                rows[rowIndex++] = row;
+            }
+            return new Window(cityId, locationId, startDate, rows);
+        }
+
+        /**
+         * Creates a cursor over the rows of this window whose dates are in the given range.
+         * @param projection the columns of the cursor, which must be among {@link #COLUMNS}.
+         * @param columnIndexes the indexes of the columns of the projection, as returned by
+         * {@link #getColumnIndexes}.
+         * @param startDate the first date, inclusive.
+         * @param endDate the last date, exclusive.
+         */
+        public Cursor toCursor(String[] projection, int[] columnIndexes, long startDate,
+                long endDate) {
+            final String[] columnNames = new String[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                columnNames[i] = getUnqualifiedName(projection[i]);
+            }
+            final MatrixCursor cursor = new MatrixCursor(columnNames, mRows.length);
+            for (final Object[] row : mRows) {
+                final long date = (Long) row[COLUMN_INDEX_DATE];
+                if (date < startDate || date >= endDate) {
+                    continue;
+                }
+                final Object[] values = new Object[columnIndexes.length];
+                for (int i = 0; i < columnIndexes.length; i++) {
+                    values[i] = row[columnIndexes[i]];
+                }
+                cursor.addRow(values);
+            }
+            return cursor;
+        }
+
+        /**
+         * Estimates the bytes of memory used by the given rows.
+         */
+        private static long estimateSizeBytes(Object[][] rows) {
+            long size = OBJECT_OVERHEAD_BYTES * 2;
+            for (final Object[] row : rows) {
+                size += OBJECT_OVERHEAD_BYTES + REFERENCE_BYTES * row.length;
+                for (final Object value : row) {
+                    if (value instanceof String) {
+                        size += STRING_OVERHEAD_BYTES + 2 * ((String) value).length();
+                    } else if (value instanceof byte[]) {
+                        size += OBJECT_OVERHEAD_BYTES + ((byte[]) value).length;
+                    } else if (value != null) {
+                        size += NUMBER_BYTES;
+                    }
+                }
+            }
+            return size;
+        }
+    }
+
+}
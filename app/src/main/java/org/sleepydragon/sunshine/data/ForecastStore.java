@@ -0,0 +1,337 @@
+package org.sleepydragon.sunshine.data;
+
+import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+import org.sleepydragon.sunshine.forecast.ForecastSink;
+import org.sleepydragon.sunshine.forecast.HttpCacheInfo;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves downloaded forecasts, and the information needed to decide when to download them again,
+ * into the {@link WeatherProvider}.
+ */
+public class ForecastStore implements ForecastSink {
+
+    private static final String[] COMPASS_POINTS = {
+            "N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE",
+            "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW",
+    };
+
+    /**
+     * The default number of days before today whose weather {@link #deleteExpired} keeps.
+     */
+    public static final int DEFAULT_PAST_DAYS_TO_KEEP = 7;
+
+    private final ContentResolver mContentResolver;
+
+    public ForecastStore(ContentResolver contentResolver) {
+        if (contentResolver == null) {
+            throw new NullPointerException("contentResolver==null");
+        }
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Saves the given forecast, replacing any previously-saved forecasts for the same days, and
+     * the information about the response from which it was downloaded, in a single transaction.
+     * <p>
+     * The location with the given city ID is created if it does not already exist.  This method
+     * performs disk I/O and must not be invoked on the main thread.
+     * @param cityId the ID of the city whose forecast to save, as sent to OpenWeatherMap.
+     * @param forecast the forecast to save.
+     * @param cacheInfo the information about the response from which the forecast was
+     * downloaded; may be null.
+     * @return the ID of the location with the given city ID.
+     * @throws SQLException if saving fails.
+     */
+    public long save(String cityId, ForecastBatch forecast, HttpCacheInfo cacheInfo) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        } else if (forecast == null) {
+            throw new NullPointerException("forecast==null");
+        }
+
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        addSaveOperations(ops, cityId, forecast, cacheInfo);
+        final ContentProviderResult[] results;
+        try {
+            results = mContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, ops);
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new SQLException("saving forecast failed: " + e);
+        }
+
+        // the first operation inserts the location, yielding its ID even if it already existed
+        return ContentUris.parseId(results[0].uri);
+    }
+
+    /**
+     * Saves the forecasts of the given results, and the information about the responses from
+     * which they were downloaded or revalidated, in a single transaction.
+     * <p>
+     * The locations with the results' city IDs are created if they do not already exist.  Failed
+     * results, and results whose forecasts were still fresh, are ignored.  This method performs
+     * disk I/O and must not be invoked on the main thread.
+     * @throws SQLException if saving fails.
+     */
+    @Override
+    public void saveAll(List<FetchResult> results) {
+        if (results == null) {
+            throw new NullPointerException("results==null");
+        }
+
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        for (final FetchResult result : results) {
+            switch (result.status) {
+                case OK:
+                    addSaveOperations(ops, result.cityId, result.forecast, result.cacheInfo);
+                    break;
+                case NOT_MODIFIED:
+                    addSaveCacheInfoOperation(ops, result.cityId, result.cacheInfo);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (ops.isEmpty()) {
+            return;
+        }
+
+        try {
+            mContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, ops);
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new SQLException("saving forecasts failed: " + e);
+        }
+    }
+
+    private static void addSaveOperations(ArrayList<ContentProviderOperation> ops, String cityId,
+            ForecastBatch forecast, HttpCacheInfo cacheInfo) {
+        // inserting a location that already exists yields the ID of the existing location, which
+        // the weather rows below refer back to
+        final int locationOpIndex = ops.size();
+        final ContentValues cv = new ContentValues();
+        cv.put(LocationEntry.COL_CITY_ID, cityId);
+        cv.put(LocationEntry.COL_DISPLAY_NAME, cityId);
+        ops.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(cv)
+                .build());
+
+        for (int i = 0; i < forecast.size(); i++) {
+            ops.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(createWeatherValues(forecast, i))
+                    .withValueBackReference(WeatherEntry.COL_LOCATION_ID, locationOpIndex)
+                    .build());
+        }
+
+        // the cache information is written last, so that it never describes weather rows that
+        // were not written
+        final ContentValues cvUpdate = createLocationUpdateValues(forecast.getLatitude(),
+                forecast.getLongitude(), cacheInfo);
+        if (cvUpdate.size() > 0) {
+            ops.add(ContentProviderOperation.newUpdate(LocationEntry.buildUriFromCityId(cityId))
+                    .withValues(cvUpdate)
+                    .build());
+        }
+    }
+
+    private static void addSaveCacheInfoOperation(ArrayList<ContentProviderOperation> ops,
+            String cityId, HttpCacheInfo cacheInfo) {
+        final ContentValues cv = new ContentValues();
+        putCacheInfo(cv, cacheInfo);
+        ops.add(ContentProviderOperation.newUpdate(LocationEntry.buildUriFromCityId(cityId))
+                .withValues(cv)
+                .build());
+    }
+
+    private static ContentValues createWeatherValues(ForecastBatch forecast, int index) {
+        final ContentValues cv = new ContentValues();
+        cv.put(WeatherEntry.COL_DATE, forecast.getEpochDay(index));
+        cv.put(WeatherEntry.COL_DESCRIPTION, forecast.getDescription(index));
+        cv.put(WeatherEntry.COL_ICON_ID, forecast.getIconCode(index));
+        cv.put(WeatherEntry.COL_TEMP_HI, forecast.getHigh(index));
+        cv.put(WeatherEntry.COL_TEMP_LO, forecast.getLow(index));
+        putFloat(cv, WeatherEntry.COL_HUMIDITY, forecast.getHumidity(index));
+        // the weather service specifies pressure in hPa and wind speed in m/s
+        putFloat(cv, WeatherEntry.COL_PRESSURE, forecast.getPressure(index) / 10);
+        putFloat(cv, WeatherEntry.COL_WIND_SPEED, forecast.getWindSpeed(index) * 3.6f);
+        cv.put(WeatherEntry.COL_WIND_DIRECTION, toCompassPoint(forecast.getWindDirection(index)));
+        return cv;
+    }
+
+    /**
+     * Saves the information about the response from which the forecast for the location with
+     * the given city ID was most recently downloaded or revalidated.
+     * <p>
+     * This method performs disk I/O and must not be invoked on the main thread.
+     * @param cityId the ID of the city whose forecast was downloaded or revalidated.
+     * @param cacheInfo the information to save.
+     * @return true if the information was saved, or false if there is no location with the given
+     * city ID.
+     */
+    public boolean saveCacheInfo(String cityId, HttpCacheInfo cacheInfo) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        } else if (cacheInfo == null) {
+            throw new NullPointerException("cacheInfo==null");
+        }
+        final ContentValues cv = new ContentValues();
+        putCacheInfo(cv, cacheInfo);
+        final int updateCount = mContentResolver.update(LocationEntry.buildUriFromCityId(cityId),
+                cv, null, null);
+        return updateCount > 0;
+    }
+
+    /**
+     * Deletes the weather of every location for the days more than the given number of days
+     * before today, which are no longer displayed but would otherwise accumulate with every
+     * download.
+     * <p>
+     * This method performs disk I/O and must not be invoked on the main thread.
+     * @param today today's date, as an epoch day.
+     * @param pastDaysToKeep the number of days before today whose weather to keep, such as
+     * {@link #DEFAULT_PAST_DAYS_TO_KEEP}; must not be negative.
+     * @return the number of days' weather deleted, summed over all locations.
+     */
+    public int deleteExpired(long today, int pastDaysToKeep) {
+        if (pastDaysToKeep < 0) {
+            throw new IllegalArgumentException("invalid pastDaysToKeep: " + pastDaysToKeep);
+        }
+        final Uri uri = WeatherEntry.buildUriFromEndDate(today - pastDaysToKeep);
+        return mContentResolver.delete(uri, null, null);
+    }
+
+    /**
+     * Loads the information about the response from which the forecast for the location with the
+     * given city ID was most recently downloaded or revalidated.
+     * <p>
+     * This method performs disk I/O and must not be invoked on the main thread.
+     * @param cityId the ID of the city whose information to load.
+     * @return the information, or null if the forecast for the location with the given city ID
+     * has never been downloaded.
+     */
+    public HttpCacheInfo loadCacheInfo(String cityId) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        }
+        final String[] projection = new String[] {
+                LocationEntry.COL_ETAG,
+                LocationEntry.COL_LAST_MODIFIED,
+                LocationEntry.COL_FETCH_TIME,
+                LocationEntry.COL_TTL,
+        };
+        final Cursor cursor = mContentResolver.query(LocationEntry.buildUriFromCityId(cityId),
+                projection, null, null, null);
+        try {
+            if (!cursor.moveToFirst() || cursor.isNull(2) || cursor.isNull(3)) {
+                return null;
+            }
+            return new HttpCacheInfo(cursor.getString(0), cursor.getString(1), cursor.getLong(2),
+                    cursor.getLong(3));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Loads the information about the responses from which the forecasts of all locations were
+     * most recently downloaded or revalidated, such as to pass to
+     * {@link org.sleepydragon.sunshine.forecast.ForecastFetchEngine#fetchAll}.
+     * <p>
+     * This method performs disk I/O and must not be invoked on the main thread.
+     * @return the city IDs of all locations, each mapped to its information, or to null if the
+     * location's forecast has never been downloaded; never returns null.
+     */
+    public Map<String, HttpCacheInfo> loadAllCacheInfo() {
+        final String[] projection = new String[] {
+                LocationEntry.COL_CITY_ID,
+                LocationEntry.COL_ETAG,
+                LocationEntry.COL_LAST_MODIFIED,
+                LocationEntry.COL_FETCH_TIME,
+                LocationEntry.COL_TTL,
+        };
+        final Cursor cursor = mContentResolver.query(LocationEntry.CONTENT_URI, projection, null,
+                null, null);
+        try {
+            final Map<String, HttpCacheInfo> cacheInfos = new HashMap<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                final HttpCacheInfo cacheInfo;
+                if (cursor.isNull(3) || cursor.isNull(4)) {
+                    cacheInfo = null;
+                } else {
+                    cacheInfo = new HttpCacheInfo(cursor.getString(1), cursor.getString(2),
+                            cursor.getLong(3), cursor.getLong(4));
+                }
+                cacheInfos.put(cursor.getString(0), cacheInfo);
+            }
+            return cacheInfos;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues createLocationUpdateValues(String latitude, String longitude,
+            HttpCacheInfo cacheInfo) {
+        // the coordinates may have changed since the location was first saved
+        final ContentValues cvUpdate = new ContentValues();
+        if (latitude != null && longitude != null) {
+            try {
+                final double latitudeValue = Double.parseDouble(latitude);
+                final double longitudeValue = Double.parseDouble(longitude);
+                cvUpdate.put(LocationEntry.COL_LATITUDE, latitudeValue);
+                cvUpdate.put(LocationEntry.COL_LONGITUDE, longitudeValue);
+            } catch (NumberFormatException e) {
+                // leave the coordinates as they are
+            }
+        }
+        if (cacheInfo != null) {
+            putCacheInfo(cvUpdate, cacheInfo);
+        }
+        return cvUpdate;
+    }
+
+    private static void putFloat(ContentValues cv, String key, float value) {
+        if (Float.isNaN(value)) {
+            cv.putNull(key);
+        } else {
+            cv.put(key, value);
+        }
+    }
+
+    /**
+     * Converts the given wind direction, in degrees clockwise from north, into the nearest of the
+     * 16 points of the compass (e.g. "SSW").
+     * @return the point of the compass, or null if the given direction is NaN.
+     */
+    static String toCompassPoint(float degrees) {
+        if (Float.isNaN(degrees)) {
+            return null;
+        }
+        final int index = Math.round(degrees / (360f / COMPASS_POINTS.length));
+        final int length = COMPASS_POINTS.length;
+        return COMPASS_POINTS[((index % length) + length) % length];
+    }
+
+    private static void putCacheInfo(ContentValues cv, HttpCacheInfo cacheInfo) {
+        cv.put(LocationEntry.COL_ETAG, cacheInfo.etag);
+        cv.put(LocationEntry.COL_LAST_MODIFIED, cacheInfo.lastModified);
+        cv.put(LocationEntry.COL_FETCH_TIME, cacheInfo.fetchTimeMillis);
+        cv.put(LocationEntry.COL_TTL, cacheInfo.ttlMillis);
+    }
+
+}
@@ -10,6 +10,28 @@ public class WeatherContract {
     public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_CITY = "city";
+    public static final String PATH_DASHBOARD = "dashboard";
+
+    /**
+     * The method, passed to {@link android.content.ContentResolver#call}, that returns the
+     * statistics of the provider's in-memory cache of forecasts, such as to monitor how often
+     * the forecast list is served without querying the database.  The statistics are returned as
+     * a bundle with the keys {@link #KEY_HIT_COUNT}, {@link #KEY_MISS_COUNT},
+     * {@link #KEY_EVICTION_COUNT}, {@link #KEY_ENTRY_COUNT} and {@link #KEY_SIZE_BYTES}.
+     */
+    public static final String METHOD_GET_FORECAST_CACHE_STATS = "getForecastCacheStats";
+
+    /** The number of queries served from the cache, as a long. */
+    public static final String KEY_HIT_COUNT = "hit_count";
+    /** The number of queries that could have been, but were not, served from the cache. */
+    public static final String KEY_MISS_COUNT = "miss_count";
+    /** The number of forecasts evicted to keep the cache within its maximum size, as a long. */
+    public static final String KEY_EVICTION_COUNT = "eviction_count";
+    /** The number of forecasts in the cache, as an int. */
+    public static final String KEY_ENTRY_COUNT = "entry_count";
+    /** The estimated memory used by the forecasts in the cache, in bytes, as a long. */
+    public static final String KEY_SIZE_BYTES = "size_bytes";
 
     private WeatherContract() {
     }
@@ -33,14 +55,28 @@ public class WeatherContract {
 
         /**
          * Date to which this weather data pertains.
-         * Column type is TEXT and is the human-friendly format of the date.
+         * Column type is INTEGER and is the number of days since 1970-01-01, as returned by
+         * {@link org.sleepydragon.sunshine.forecast.EpochDays}, so that consecutive days are
+         * consecutive integers and a range of dates is a numeric range.
          */
         public static final String COL_DATE = "date";
 
+        /**
+         * The query parameter of a weather URI that specifies the first date, inclusive, of the
+         * range of dates to query, as a value of {@link #COL_DATE}.
+         */
+        public static final String QUERY_PARAM_START = "start";
+
+        /**
+         * The query parameter of a weather URI that specifies the last date, exclusive, of the
+         * range of dates to query, as a value of {@link #COL_DATE}.
+         */
+        public static final String QUERY_PARAM_END = "end";
+
         /**
          * The ID of the icon to display for this weather entry.
-         * This ID is that provided by the OpenWeatherMap API for the icon.
-         * Column type is INTEGER.
+         * This ID is the icon code provided by the OpenWeatherMap API (e.g. "10d").
+         * Column type is TEXT.
          */
         public static final String COL_ICON_ID = "icon_id";
 
@@ -97,14 +133,49 @@ public class WeatherContract {
             return CONTENT_URI.buildUpon().appendPath(cityId).build();
         }
 
-        public static Uri buildUriFromCityIdAndStartDate(String cityId, String date) {
+        /**
+         * Builds a URI with which to delete the weather of every city before the given date,
+         * that is, of the days that have passed; the date is only supported by deletes.
+         * @param endDate the last date, exclusive, as a value of {@link #COL_DATE}.
+         */
+        public static Uri buildUriFromEndDate(long endDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAM_END, Long.toString(endDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI for the weather of the given city from the given date onwards.
+         * @param startDate the first date, inclusive, as a value of {@link #COL_DATE}.
+         */
+        public static Uri buildUriFromCityIdAndStartDate(String cityId, long startDate) {
             final Uri baseUri = buildUriFromCityId(cityId);
-            return baseUri.buildUpon().appendQueryParameter(COL_DATE, date).build();
+            return baseUri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAM_START, Long.toString(startDate))
+                    .build();
         }
 
-        public static Uri buildUriFromCityIdAndDate(String cityId, String date) {
+        /**
+         * Builds a URI for the weather of the given city on the dates in the given range.
+         * @param startDate the first date, inclusive, as a value of {@link #COL_DATE}.
+         * @param endDate the last date, exclusive, as a value of {@link #COL_DATE}.
+         */
+        public static Uri buildUriFromCityIdAndDateRange(String cityId, long startDate,
+                long endDate) {
             final Uri baseUri = buildUriFromCityId(cityId);
-            return baseUri.buildUpon().appendPath(date).build();
+            return baseUri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAM_START, Long.toString(startDate))
+                    .appendQueryParameter(QUERY_PARAM_END, Long.toString(endDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI for the weather of the given city on the given date.
+         * @param date the date, as a value of {@link #COL_DATE}.
+         */
+        public static Uri buildUriFromCityIdAndDate(String cityId, long date) {
+            final Uri baseUri = buildUriFromCityId(cityId);
+            return baseUri.buildUpon().appendPath(Long.toString(date)).build();
         }
 
         public static String getCityIdFromUri(Uri uri) {
@@ -116,7 +187,11 @@ public class WeatherContract {
         }
 
         public static String getStartDateFromUri(Uri uri) {
-            return uri.getQueryParameter(COL_DATE);
+            return uri.getQueryParameter(QUERY_PARAM_START);
+        }
+
+        public static String getEndDateFromUri(Uri uri) {
+            return uri.getQueryParameter(QUERY_PARAM_END);
         }
     }
 
@@ -155,6 +230,33 @@ public class WeatherContract {
          */
         public static final String COL_LONGITUDE = "longitude";
 
+        /**
+         * The value of the ETag header of the response from which this location's forecast was
+         * most recently downloaded, used to revalidate the forecast.
+         * Column type is TEXT
+         */
+        public static final String COL_ETAG = "etag";
+
+        /**
+         * The value of the Last-Modified header of the response from which this location's
+         * forecast was most recently downloaded, used to revalidate the forecast.
+         * Column type is TEXT
+         */
+        public static final String COL_LAST_MODIFIED = "last_modified";
+
+        /**
+         * The time at which this location's forecast was most recently downloaded or revalidated,
+         * in milliseconds since the epoch.
+         * Column type is INTEGER
+         */
+        public static final String COL_FETCH_TIME = "fetch_time";
+
+        /**
+         * The number of milliseconds after {@link #COL_FETCH_TIME} during which this location's
+         * forecast is considered to be fresh and need not be downloaded again.
+         * Column type is INTEGER
+         */
+        public static final String COL_TTL = "ttl";
 
         private LocationEntry() {
         }
@@ -163,8 +265,85 @@ public class WeatherContract {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
 
+        /**
+         * Builds a URI for the location with the given city ID, which supports queries, updates
+         * and deletes.  The city ID is a separate path segment from {@link #buildUriFromId} since
+         * a city ID may itself be a number.
+         */
         public static Uri buildUriFromCityId(String cityId) {
-            return CONTENT_URI.buildUpon().appendPath(cityId).build();
+            return CONTENT_URI.buildUpon().appendPath(PATH_CITY).appendPath(cityId).build();
+        }
+
+        public static String getCityIdFromUri(Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
+    }
+
+    /**
+     * The dashboard: the weather of every location on a single day, as one row per location.
+     * <p>
+     * Each row is a location joined with its weather on the day, so the columns are those of
+     * {@link LocationEntry} and {@link WeatherEntry}; a column that both have, such as
+     * {@code _id}, must be qualified with its table name.  A location without weather on the day
+     * is still returned, with null weather columns.  The rows are sorted by the ID of the
+     * location, which pages of the dashboard use to continue from the end of the previous page.
+     */
+    public static final class DashboardEntry {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_DASHBOARD).build();
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/" + CONTENT_AUTHORITY + "/" + PATH_DASHBOARD;
+
+        /**
+         * The query parameter of a dashboard URI that specifies the ID of the location after
+         * which the page starts, exclusive, such as the last location of the previous page.
+         */
+        public static final String QUERY_PARAM_AFTER = "after";
+
+        /**
+         * The query parameter of a dashboard URI that specifies the maximum number of rows, that
+         * is, the size of the page.
+         */
+        public static final String QUERY_PARAM_LIMIT = "limit";
+
+        private DashboardEntry() {
+        }
+
+        /**
+         * Builds a URI for the weather of every location on the given date.
+         * @param date the date, as a value of {@link WeatherEntry#COL_DATE}.
+         */
+        public static Uri buildUriFromDate(long date) {
+            return CONTENT_URI.buildUpon().appendPath(Long.toString(date)).build();
+        }
+
+        /**
+         * Builds a URI for a page of the weather of every location on the given date.
+         * @param date the date, as a value of {@link WeatherEntry#COL_DATE}.
+         * @param afterLocationId the ID of the location after which the page starts, exclusive;
+         * {@link Long#MIN_VALUE} for the first page.
+         * @param limit the maximum number of rows of the page.
+         */
+        public static Uri buildUriFromDateAndPage(long date, long afterLocationId, int limit) {
+            final Uri.Builder builder = buildUriFromDate(date).buildUpon();
+            if (afterLocationId != Long.MIN_VALUE) {
+                builder.appendQueryParameter(QUERY_PARAM_AFTER, Long.toString(afterLocationId));
+            }
+            return builder.appendQueryParameter(QUERY_PARAM_LIMIT, Integer.toString(limit))
+                    .build();
+        }
+
+        public static String getDateFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static String getAfterFromUri(Uri uri) {
+            return uri.getQueryParameter(QUERY_PARAM_AFTER);
+        }
+
+        public static String getLimitFromUri(Uri uri) {
+            return uri.getQueryParameter(QUERY_PARAM_LIMIT);
         }
     }
 
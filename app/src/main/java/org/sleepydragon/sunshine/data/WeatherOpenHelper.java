@@ -4,45 +4,315 @@ import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.database.DatabaseErrorHandler;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import static org.sleepydragon.sunshine.Utils.LOG_TAG;
+
+/**
+ * Creates and upgrades the database of the {@link WeatherProvider}.
+ * <p>
+ * The queries of the provider are served by indexes rather than by scanning tables:
+ * <ul>
+ * <li>The location table is looked up by city ID through the index of the unique constraint on
+ * {@link LocationEntry#COL_CITY_ID}, and by ID through its rowid.</li>
+ * <li>The weather table is looked up by location and date through the index of the unique
+ * constraint on ({@link WeatherEntry#COL_LOCATION_ID}, {@link WeatherEntry#COL_DATE}).  The
+ * location ID is the leading column so that the index serves both the join with the location
+ * table and the range of dates within a location, and returns the rows already sorted by date.
+ * </li>
+ * </ul>
+ * {@link WeatherEntry#COL_LOCATION_ID} is declared INTEGER, like the {@link LocationEntry#_ID}
+ * column that it references, so that the join compares integers with integers and can use the
+ * index.
+ * <p>
+ * Databases created by earlier versions of the app are upgraded in place, one version at a time,
+ * so that an upgrade of the app keeps the downloaded forecasts rather than having to download
+ * every location's forecast again.  Each step is written against the schema of the version that
+ * it upgrades from, not against {@link WeatherContract}, so that later changes to the contract
+ * do not change what earlier steps do.  {@link SQLiteOpenHelper} runs the steps in a single
+ * transaction, so a failed upgrade leaves the database as it was.
+ * <p>
+ * The database uses write-ahead logging, so that the provider's queries, such as those of the
+ * forecast list, read from their own connections without waiting for a sync that is writing
+ * forecasts, and commits do not rewrite the database file.  The log is checkpointed into the
+ * database once it reaches {@link #WAL_AUTOCHECKPOINT_PAGES} pages, which is a few syncs' worth,
+ * so that it stays small enough for readers to search quickly, and it is then truncated to
+ * {@link #JOURNAL_SIZE_LIMIT_BYTES} rather than left at its largest size on disk.
+ * <p>
+ * The database uses incremental auto-vacuum, so that the pages freed by deleting the weather of
+ * days that have passed can be returned to the file system by {@link #vacuumIfNeeded} without
+ * rewriting the whole database as VACUUM does.  Android creates a table in every database before
+ * {@link #onCreate} runs, so the mode cannot simply be set before the tables are created; instead
+ * each database, new or created by an earlier version of the app, is converted by a single
+ * VACUUM the first time that it is opened.  The attempt is recorded in shared preferences, and
+ * cleared only when the database is created or upgraded, so that a VACUUM that fails, such as for
+ * lack of storage, is not repeated, at the cost of rewriting the whole database, by every open.
+ */
 public class WeatherOpenHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "weather.db";
-    private static final int DATABASE_VERSION = 1;
+
+    /**
+     * The version of the database schema.
+     * <ol>
+     * <li>The initial schema.</li>
+     * <li>Added the HTTP cache columns to the location table.</li>
+     * <li>Declared the location ID of the weather table as INTEGER, and indexed the weather table
+     * by location ID before date.</li>
+     * <li>Stored the dates of the weather table as epoch days rather than unix timestamps.</li>
+     * </ol>
+     */
+    static final int DATABASE_VERSION = 4;
+
+    /**
+     * The number of pages of the page cache of the connection that writes to the database, which
+     * is enough to hold the weather table's index and the pages modified by a sync of every
+     * location, so that a sync rarely has to read a page back from storage.
+     */
+    private static final int CACHE_SIZE_PAGES = 500;
+
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 200;
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 512 * 1024;
+
+    /**
+     * The number of free pages above which {@link #vacuumIfNeeded} returns them to the file
+     * system; fewer are left to be reused by the next syncs, since truncating the file only for
+     * it to grow again would be wasted work.
+     */
+    static final int VACUUM_THRESHOLD_PAGES = 64;
+
+    /**
+     * The value of PRAGMA auto_vacuum for incremental auto-vacuum.
+     */
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String PREFS_NAME = "weather_db";
+    private static final String KEY_AUTO_VACUUM_ATTEMPTED = "autoVacuumAttempted";
+
+    private final boolean mWriteAheadLoggingEnabled;
+    private final SharedPreferences mPrefs;
 
     public WeatherOpenHelper(Context context) {
+        this(context, true);
+    }
+
+    /**
+     * @param writeAheadLoggingEnabled whether to use write-ahead logging; only disabled by tests
+     * that compare the performance of the database with and without it.
+     */
+    WeatherOpenHelper(Context context, boolean writeAheadLoggingEnabled) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mWriteAheadLoggingEnabled = writeAheadLoggingEnabled;
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 
     public WeatherOpenHelper(Context context, DatabaseErrorHandler errorHandler) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION, errorHandler);
+        mWriteAheadLoggingEnabled = true;
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (db.isReadOnly()) {
+            return;
+        }
+        if (!mPrefs.getBoolean(KEY_AUTO_VACUUM_ATTEMPTED, false)) {
+            if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null)
+                    != AUTO_VACUUM_INCREMENTAL) {
+                enableAutoVacuum(db);
+            }
+            mPrefs.edit().putBoolean(KEY_AUTO_VACUUM_ATTEMPTED, true).commit();
+        }
+        if (mWriteAheadLoggingEnabled && db.enableWriteAheadLogging()) {
+            executePragma(db, "wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES);
+            executePragma(db, "journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES);
+        }
+        executePragma(db, "cache_size=" + CACHE_SIZE_PAGES);
+    }
+
+    /**
+     * Converts the database to incremental auto-vacuum.
+     * <p>
+     * The mode of an existing database only changes when it is rewritten by VACUUM, which cannot
+     * run in a transaction and so cannot be part of {@link #onUpgrade}.  If the VACUUM fails,
+     * such as for lack of storage, then the database is left as it was, and its freed pages are
+     * reused by later syncs rather than returned to the file system.
+     */
+    private static void enableAutoVacuum(SQLiteDatabase db) {
+        executePragma(db, "auto_vacuum=" + AUTO_VACUUM_INCREMENTAL);
+        try {
+            db.execSQL("VACUUM");
+        } catch (SQLiteException e) {
+            Log.w(LOG_TAG, "unable to enable auto-vacuum of the weather database", e);
+        }
+    }
+
+    /**
+     * Returns the free pages of the database to the file system if there are more than
+     * {@link #VACUUM_THRESHOLD_PAGES} of them, such as after deleting the weather of days that
+     * have passed.
+     */
+    static void vacuumIfNeeded(SQLiteDatabase db) {
+        final long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        if (freePages > VACUUM_THRESHOLD_PAGES) {
+            // frees one page each time that the statement is stepped, so it must be run as a
+            // query that reads every row rather than by execSQL(), which only steps it once
+            executePragma(db, "incremental_vacuum(" + freePages + ")");
+        }
+    }
+
+    /**
+     * Executes the given PRAGMA statement.
+     * <p>
+     * Some PRAGMA statements return a row and some do not, and {@link SQLiteDatabase#execSQL}
+     * rejects those that do on some versions of Android, so the statement is run as a query
+     * whose result is ignored.
+     */
+    private static void executePragma(SQLiteDatabase db, String pragma) {
+        final Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            // steps the statement to completion, since some PRAGMA statements do their work as
+            // they return their rows
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(generateCreateLocationTableSQL());
         db.execSQL(generateCreateWeatherTableSQL());
+        clearAutoVacuumAttempted();
+    }
+
+    /**
+     * Clears the record that the database has been converted to incremental auto-vacuum, so that
+     * a database that was just created or upgraded is converted when it is opened.
+     */
+    private void clearAutoVacuumAttempted() {
+        mPrefs.edit().remove(KEY_AUTO_VACUUM_ATTEMPTED).commit();
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        clearAutoVacuumAttempted();
+        if (oldVersion < 1 || newVersion > DATABASE_VERSION) {
+            // there is no way to upgrade from an unknown version, so start over
+            recreate(db);
+            return;
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            switch (version) {
+                case 1:
+                    upgradeFromVersion1(db);
+                    break;
+                case 2:
+                    upgradeFromVersion2(db);
+                    break;
+                case 3:
+                    upgradeFromVersion3(db);
+                    break;
+                default:
+                    throw new AssertionError("no upgrade from version " + version);
+            }
+        }
+    }
+
+    private void recreate(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(db);
     }
 
+    /**
+     * Adds the HTTP cache columns to the location table; the existing locations are left
+     * without cache information, so their forecasts are revalidated when next refreshed.
+     */
+    private static void upgradeFromVersion1(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE location ADD COLUMN etag TEXT");
+        db.execSQL("ALTER TABLE location ADD COLUMN last_modified TEXT");
+        db.execSQL("ALTER TABLE location ADD COLUMN fetch_time INTEGER");
+        db.execSQL("ALTER TABLE location ADD COLUMN ttl INTEGER");
+    }
+
+    /**
+     * Rebuilds the weather table with an INTEGER location ID and its unique constraint on
+     * (location_id, date), and the location table without its redundant second unique
+     * constraint.  SQLite cannot change the type or constraints of an existing column, so each
+     * table is copied into a new table that then replaces it; the IDs of the rows are kept.
+     */
+    private static void upgradeFromVersion2(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE location_new("
+                + "_id INTEGER PRIMARY KEY, "
+                + "city_id TEXT NOT NULL, "
+                + "display_name TEXT, "
+                + "latitude REAL, "
+                + "longitude REAL, "
+                + "etag TEXT, "
+                + "last_modified TEXT, "
+                + "fetch_time INTEGER, "
+                + "ttl INTEGER, "
+                + "UNIQUE (city_id) ON CONFLICT IGNORE)");
+        db.execSQL("INSERT INTO location_new SELECT _id, city_id, display_name, latitude, "
+                + "longitude, etag, last_modified, fetch_time, ttl FROM location");
+        db.execSQL("DROP TABLE location");
+        db.execSQL("ALTER TABLE location_new RENAME TO location");
+
+        db.execSQL("CREATE TABLE weather_new("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "location_id INTEGER NOT NULL, "
+                + "date INTEGER NOT NULL, "
+                + "description TEXT, "
+                + "icon_id TEXT, "
+                + "temp_hi REAL, "
+                + "temp_lo REAL, "
+                + "humidity REAL, "
+                + "pressure REAL, "
+                + "wind_speed REAL, "
+                + "wind_direction TEXT, "
+                + "FOREIGN KEY (location_id) REFERENCES location (_id), "
+                + "UNIQUE (location_id,date) ON CONFLICT REPLACE)");
+        // the location IDs were stored as text because of the column's TEXT affinity
+        db.execSQL("INSERT INTO weather_new SELECT _id, CAST(location_id AS INTEGER), date, "
+                + "description, icon_id, temp_hi, temp_lo, humidity, pressure, wind_speed, "
+                + "wind_direction FROM weather");
+        db.execSQL("DROP TABLE weather");
+        db.execSQL("ALTER TABLE weather_new RENAME TO weather");
+    }
+
+    /**
+     * Converts the dates of the weather table from unix timestamps, in seconds, into epoch days.
+     * Dates are converted in place, so the index on (location_id, date) is updated rather than
+     * rebuilt; two timestamps on the same day of the same location, which the weather service
+     * does not produce, would collapse into one row by the REPLACE conflict clause.
+     */
+    private static void upgradeFromVersion3(SQLiteDatabase db) {
+        db.execSQL("UPDATE weather SET date = date / 86400 WHERE typeof(date) = 'integer'");
+    }
+
     private static String generateCreateLocationTableSQL() {
         final StringBuilder sb = new StringBuilder();
         sb.append("CREATE TABLE ").append(LocationEntry.TABLE_NAME);
         sb.append('(');
         sb.append(LocationEntry._ID).append(" INTEGER PRIMARY KEY, ");
-        sb.append(LocationEntry.COL_CITY_ID).append(" TEXT UNIQUE NOT NULL, ");
+        sb.append(LocationEntry.COL_CITY_ID).append(" TEXT NOT NULL, ");
         sb.append(LocationEntry.COL_DISPLAY_NAME).append(" TEXT, ");
         sb.append(LocationEntry.COL_LATITUDE).append(" REAL, ");
         sb.append(LocationEntry.COL_LONGITUDE).append(" REAL, ");
+        sb.append(LocationEntry.COL_ETAG).append(" TEXT, ");
+        sb.append(LocationEntry.COL_LAST_MODIFIED).append(" TEXT, ");
+        sb.append(LocationEntry.COL_FETCH_TIME).append(" INTEGER, ");
+        sb.append(LocationEntry.COL_TTL).append(" INTEGER, ");
         sb.append("UNIQUE (").append(LocationEntry.COL_CITY_ID)
                 .append(") ON CONFLICT IGNORE");
         sb.append(')');
@@ -54,7 +324,7 @@ public class WeatherOpenHelper extends SQLiteOpenHelper {
         sb.append("CREATE TABLE ").append(WeatherEntry.TABLE_NAME);
         sb.append('(');
         sb.append(WeatherEntry._ID).append(" INTEGER PRIMARY KEY AUTOINCREMENT, ");
-        sb.append(WeatherEntry.COL_LOCATION_ID).append(" TEXT NOT NULL, ");
+        sb.append(WeatherEntry.COL_LOCATION_ID).append(" INTEGER NOT NULL, ");
         sb.append(WeatherEntry.COL_DATE).append(" INTEGER NOT NULL, ");
         sb.append(WeatherEntry.COL_DESCRIPTION).append(" TEXT, ");
         sb.append(WeatherEntry.COL_ICON_ID).append(" TEXT, ");
@@ -67,8 +337,8 @@ public class WeatherOpenHelper extends SQLiteOpenHelper {
         sb.append("FOREIGN KEY (").append(WeatherEntry.COL_LOCATION_ID)
                 .append(") REFERENCES ").append(LocationEntry.TABLE_NAME)
                 .append(" (").append(LocationEntry._ID).append("), ");
-        sb.append("UNIQUE (").append(WeatherEntry.COL_DATE).append(',')
-                .append(WeatherEntry.COL_LOCATION_ID)
+        sb.append("UNIQUE (").append(WeatherEntry.COL_LOCATION_ID).append(',')
+                .append(WeatherEntry.COL_DATE)
                 .append(") ON CONFLICT REPLACE");
         sb.append(')');
         return sb.toString();
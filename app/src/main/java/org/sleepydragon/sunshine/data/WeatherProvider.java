@@ -1,17 +1,39 @@
 package org.sleepydragon.sunshine.data;
 
+import org.sleepydragon.sunshine.data.WeatherContract.DashboardEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.WeatherEntry;
 import org.sleepydragon.sunshine.data.WeatherContract.LocationEntry;
+import org.sleepydragon.sunshine.forecast.SizedLruCache;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class WeatherProvider extends ContentProvider {
 
@@ -20,14 +42,78 @@ public class WeatherProvider extends ContentProvider {
     private static final int WEATHER_WITH_CITY_ID_AND_DATE = 102;
     private static final int LOCATION = 300;
     private static final int LOCATION_ID = 301;
+    private static final int LOCATION_WITH_CITY_ID = 302;
+    private static final int DASHBOARD_WITH_DATE = 400;
+
+    /**
+     * The maximum number of entries of {@link #mLocationIdCache}, far more than the number of
+     * cities that a user follows.
+     */
+    private static final int LOCATION_ID_CACHE_MAX_ENTRIES = 1000;
+
+    /**
+     * The maximum number of rows deleted by each transaction of {@link #deleteWeatherBefore}.
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final String DELETE_WEATHER_BEFORE_SQL = "DELETE FROM "
+            + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry._ID + " IN (SELECT "
+            + WeatherEntry._ID + " FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+            + WeatherEntry.COL_LOCATION_ID + " IN (SELECT " + LocationEntry._ID + " FROM "
+            + LocationEntry.TABLE_NAME + ") AND " + WeatherEntry.COL_DATE + "<?"
+            + " LIMIT " + DELETE_BATCH_SIZE + ")";
+
+    private static final String DELETE_ORPHANED_WEATHER_SQL = "DELETE FROM "
+            + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry._ID + " IN (SELECT "
+            + WeatherEntry._ID + " FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+            + WeatherEntry.COL_LOCATION_ID + " NOT IN (SELECT " + LocationEntry._ID + " FROM "
+            + LocationEntry.TABLE_NAME + ") LIMIT " + DELETE_BATCH_SIZE + ")";
+
+    private static final String SELECT_WEATHER_ID_SQL = "SELECT IFNULL((SELECT "
+            + WeatherEntry._ID + " FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+            + WeatherEntry.COL_LOCATION_ID + "=? AND " + WeatherEntry.COL_DATE + "=?),-1)";
+
+    private static final String SELECT_LOCATIONS_WITH_WEATHER_BEFORE_SQL = "SELECT "
+            + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME + " WHERE EXISTS (SELECT 1"
+            + " FROM " + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COL_LOCATION_ID + "="
+            + LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " AND "
+            + WeatherEntry.COL_DATE + "<?)";
+
+    /**
+     * The number of cities whose weather can change at once before the observers of all cities'
+     * weather are notified with a single notification of {@link WeatherEntry#CONTENT_URI},
+     * rather than each city's observers with a notification of the city's URI.
+     * <p>
+     * A change to this many cities is a sync of nearly every city, so few observers would be
+     * spared by notifying each city separately, and each notification is a call to the system.
+     */
+    private static final int MAX_CITY_NOTIFICATIONS = 10;
 
     private WeatherOpenHelper mOpenHelper;
     private UriMatcher mUriMatcher;
     private SQLiteQueryBuilder mWeatherWithLocationQueryBuilder;
+    private SQLiteQueryBuilder mDashboardQueryBuilder;
+    private ForecastCache mForecastCache;
+
+    /**
+     * Maps city IDs to the IDs of their locations, so that the foreign keys of the rows written
+     * by a sync, and the locations of the forecasts loaded into {@link #mForecastCache}, are
+     * resolved without querying the location table for each city.  Entries are added when a
+     * location is inserted or looked up, once that is committed, and removed when locations are
+     * deleted or their IDs change.
+     */
+    private SizedLruCache<String, Long> mLocationIdCache;
+
+    /**
+     * The changes made by the batch operation being performed by the current thread, whose
+     * change notifications and invalidations of {@link #mForecastCache} are deferred until the
+     * batch operation completes; null if the current thread is not performing a batch operation.
+     */
+    private final ThreadLocal<PendingChanges> mPendingChanges = new ThreadLocal<>();
 
     @Override
     public boolean onCreate() {
-        mOpenHelper = new WeatherOpenHelper(getContext());
+        mOpenHelper = createOpenHelper();
         mUriMatcher = buildUriMatcher();
 
         mWeatherWithLocationQueryBuilder = new SQLiteQueryBuilder();
@@ -35,57 +121,309 @@ public class WeatherProvider extends ContentProvider {
                 WeatherEntry.TABLE_NAME + " INNER JOIN " + LocationEntry.TABLE_NAME + " ON "
                 + WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_LOCATION_ID + "="
                 + LocationEntry.TABLE_NAME + "." + LocationEntry._ID);
+        // the date is part of the join, rather than the selection, so that a location without
+        // weather on the date is still returned; the join is served by the weather table's
+        // index on (location_id, date)
+        mDashboardQueryBuilder = new SQLiteQueryBuilder();
+        mDashboardQueryBuilder.setTables(
+                LocationEntry.TABLE_NAME + " LEFT JOIN " + WeatherEntry.TABLE_NAME + " ON "
+                + WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_LOCATION_ID + "="
+                + LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " AND "
+                + WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_DATE + "=?");
+        mForecastCache = new ForecastCache();
+        mLocationIdCache = new SizedLruCache<>(LOCATION_ID_CACHE_MAX_ENTRIES);
 
         return true;
     }
 
+    /**
+     * Creates the helper that opens this provider's database; overridden by tests that need a
+     * differently-configured database.
+     */
+    WeatherOpenHelper createOpenHelper() {
+        return new WeatherOpenHelper(getContext());
+    }
+
+    /**
+     * Closes this provider's database; only invoked by tests, since a provider otherwise lives
+     * as long as its process.
+     */
+    @Override
+    public void shutdown() {
+        mOpenHelper.close();
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
-        final int queryType = mUriMatcher.match(uri);
+        Cursor cursor = queryForecastCache(uri, projection, selection, selectionArgs, sortOrder);
+        if (cursor == null) {
+            final Query query = buildQuery(uri, projection, selection, selectionArgs, sortOrder);
+            final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+            cursor = db.rawQuery(query.sql, query.selectionArgs);
+        }
+
+        final ContentResolver cr = getContext().getContentResolver();
+        cursor.setNotificationUri(cr, getNotificationUri(uri));
+        return cursor;
+    }
+
+    /**
+     * Returns the URI whose notifications indicate that the result of a query of the given URI
+     * may have changed.
+     */
+    private Uri getNotificationUri(Uri uri) {
+        if (mUriMatcher.match(uri) == DASHBOARD_WITH_DATE) {
+            // the dashboard changes with the weather of any city, whose changes are notified as
+            // descendants of the weather URI
+            return WeatherEntry.CONTENT_URI;
+        }
+        return uri;
+    }
+
+    /**
+     * Queries the weather of a city from a date onwards, or on a single date, from
+     * {@link #mForecastCache}, loading the city's forecast into the cache if needed.
+     * <p>
+     * Only queries of the columns, order and dates that the cache can serve are served from it;
+     * namely, those without a selection, sorted by date, of {@link ForecastCache#COLUMNS}.  A
+     * single date is only served if it is within a forecast already in the cache, since it is
+     * queried by itself rather than as part of the forecast list.
+     * @return a cursor over the weather, or null if the query cannot be served from the cache.
+     */
+    private Cursor queryForecastCache(Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        if (selection != null || !isSortedByDate(sortOrder)) {
+            return null;
+        }
+        final int[] columnIndexes = ForecastCache.getColumnIndexes(projection);
+        if (columnIndexes == null) {
+            return null;
+        }
+
+        switch (mUriMatcher.match(uri)) {
+            case WEATHER_WITH_CITY_ID: {
+                final String startDateParam = WeatherEntry.getStartDateFromUri(uri);
+                if (startDateParam == null) {
+                    return null;
+                }
+                final String cityId = WeatherEntry.getCityIdFromUri(uri);
+                final long startDate = Long.parseLong(parseDate(uri, startDateParam));
+                final String endDateParam = WeatherEntry.getEndDateFromUri(uri);
+                final long endDate = (endDateParam == null)
+                        ? Long.MAX_VALUE : Long.parseLong(parseDate(uri, endDateParam));
+                ForecastCache.Window window = mForecastCache.getWindow(cityId, startDate);
+                if (window == null) {
+                    window = loadForecastWindow(cityId, startDate);
+                    if (window == null) {
+                        return null;
+                    }
+                }
+                return window.toCursor(projection, columnIndexes, startDate, endDate);
+            }
+            case WEATHER_WITH_CITY_ID_AND_DATE: {
+                final String cityId = WeatherEntry.getCityIdFromUri(uri);
+                final long date = Long.parseLong(parseDate(uri, WeatherEntry.getDateFromUri(uri)));
+                final ForecastCache.Window window =
+                        mForecastCache.findWindowContaining(cityId, date);
+                if (window == null) {
+                    return null;
+                }
+                return window.toCursor(projection, columnIndexes, date, date + 1);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isSortedByDate(String sortOrder) {
+        if (sortOrder == null) {
+            // the weather table's index returns the rows of a location sorted by date
+            return true;
+        }
+        final String normalizedSortOrder = sortOrder.trim().toLowerCase(Locale.US);
+        return normalizedSortOrder.equals(WeatherEntry.COL_DATE)
+                || normalizedSortOrder.equals(WeatherEntry.COL_DATE + " asc");
+    }
+
+    /**
+     * Reads the weather of the given city from the given date onwards from the database, and adds
+     * it to {@link #mForecastCache}.
+     * @return the weather, or null if there is no location with the given city ID.
+     */
+    private ForecastCache.Window loadForecastWindow(String cityId, long startDate) {
+        // obtained before reading, so that the window is not cached if a change is committed
+        // while it is being read
+        final long generation = mForecastCache.getGeneration();
         final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-        final Cursor cursor;
+        final long locationId = resolveLocationId(db, cityId);
+        if (locationId < 0) {
+            return null;
+        }
+        final Query query = buildForecastWindowQuery(locationId, startDate);
+        final Cursor cursor = db.rawQuery(query.sql, query.selectionArgs);
+        final ForecastCache.Window window;
+        try {
+            window = ForecastCache.Window.read(cityId, locationId, startDate, cursor);
+        } finally {
+            cursor.close();
+        }
+        mForecastCache.putWindow(window, generation);
+        return window;
+    }
+
+    /**
+     * Builds the SELECT statement with which {@link #loadForecastWindow} reads the weather of a
+     * location from the given date onwards.
+     */
+    Query buildForecastWindowQuery(long locationId, long startDate) {
+        final String selection = WeatherEntry.TABLE_NAME + "." + WeatherEntry.COL_LOCATION_ID
+                + "=? AND " + WeatherEntry.COL_DATE + ">=?";
+        final String sql = mWeatherWithLocationQueryBuilder.buildQuery(ForecastCache.COLUMNS,
+                selection, null, null, WeatherEntry.COL_DATE + " ASC", null);
+        return new Query(sql, new String[] {Long.toString(locationId), Long.toString(startDate)});
+    }
+
+    /**
+     * Returns the cache of the weather of cities, such as to monitor its hits, misses and
+     * evictions.
+     */
+    ForecastCache getForecastCache() {
+        return mForecastCache;
+    }
+
+    /**
+     * Removes everything from this provider's in-memory caches; only invoked by tests, which
+     * delete the database while the provider is running.
+     */
+    void clearCaches() {
+        mForecastCache.clear();
+        mLocationIdCache.clear();
+    }
+
+    /**
+     * Supports {@link WeatherContract#METHOD_GET_FORECAST_CACHE_STATS}.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!WeatherContract.METHOD_GET_FORECAST_CACHE_STATS.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        final Bundle stats = new Bundle();
+        stats.putLong(WeatherContract.KEY_HIT_COUNT, mForecastCache.getHitCount());
+        stats.putLong(WeatherContract.KEY_MISS_COUNT, mForecastCache.getMissCount());
+        stats.putLong(WeatherContract.KEY_EVICTION_COUNT, mForecastCache.getEvictionCount());
+        stats.putInt(WeatherContract.KEY_ENTRY_COUNT, mForecastCache.getEntryCount());
+        stats.putLong(WeatherContract.KEY_SIZE_BYTES, mForecastCache.getSize());
+        return stats;
+    }
+
+    /**
+     * Builds the SELECT statement with which {@link #query} queries the given URI.
+     * <p>
+     * This is separate from {@link #query} so that tests can examine the query plans of the
+     * statements without running them.
+     * @throws UnsupportedOperationException if the given URI is not supported.
+     */
+    Query buildQuery(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        final int queryType = mUriMatcher.match(uri);
+        final String sql;
+        final String[] sqlArgs;
 
         switch (queryType) {
             case WEATHER:
-                cursor = db.query(WeatherEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                sql = SQLiteQueryBuilder.buildQueryString(false, WeatherEntry.TABLE_NAME,
+                        projection, selection, null, null, sortOrder, null);
+                sqlArgs = selectionArgs;
                 break;
             case WEATHER_WITH_CITY_ID: {
+                // the dates are bound as parsed numbers so that they are compared numerically,
+                // as a range of the index on (location_id, date)
                 final String cityId = WeatherEntry.getCityIdFromUri(uri);
-                final String curSelection = LocationEntry.COL_CITY_ID + "=?";
-                final String[] curSelectionArgs = new String[] {cityId};
-                cursor = mWeatherWithLocationQueryBuilder.query(db, projection, curSelection,
-                        curSelectionArgs, null, null, sortOrder);
+                final String startDate = WeatherEntry.getStartDateFromUri(uri);
+                final String endDate = WeatherEntry.getEndDateFromUri(uri);
+                final StringBuilder curSelection = new StringBuilder();
+                final ArrayList<String> curSelectionArgs = new ArrayList<>(3);
+                curSelection.append(LocationEntry.COL_CITY_ID).append("=?");
+                curSelectionArgs.add(cityId);
+                if (startDate != null) {
+                    curSelection.append(" AND ").append(WeatherEntry.COL_DATE).append(">=?");
+                    curSelectionArgs.add(parseDate(uri, startDate));
+                }
+                if (endDate != null) {
+                    curSelection.append(" AND ").append(WeatherEntry.COL_DATE).append("<?");
+                    curSelectionArgs.add(parseDate(uri, endDate));
+                }
+                sqlArgs = curSelectionArgs.toArray(new String[curSelectionArgs.size()]);
+                sql = mWeatherWithLocationQueryBuilder.buildQuery(projection,
+                        curSelection.toString(), null, null, sortOrder, null);
                 break;
             }
-            case WEATHER_WITH_CITY_ID_AND_DATE:
+            case WEATHER_WITH_CITY_ID_AND_DATE: {
                 final String cityId = WeatherEntry.getCityIdFromUri(uri);
-                final String date = WeatherEntry.getDateFromUri(uri);
-                final String curSelection = LocationEntry.COL_CITY_ID + " = ?"
-                        + " AND " + WeatherEntry.COL_DATE + " >= ?";
-                final String[] curSelectionArgs = new String[] {cityId, date};
-                cursor = mWeatherWithLocationQueryBuilder.query(db, projection, curSelection,
-                        curSelectionArgs, null, null, sortOrder);
+                final String date = parseDate(uri, WeatherEntry.getDateFromUri(uri));
+                final String curSelection = LocationEntry.COL_CITY_ID + "=?"
+                        + " AND " + WeatherEntry.COL_DATE + "=?";
+                sqlArgs = new String[] {cityId, date};
+                sql = mWeatherWithLocationQueryBuilder.buildQuery(projection, curSelection, null,
+                        null, sortOrder, null);
                 break;
+            }
             case LOCATION:
-                cursor = db.query(LocationEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                sql = SQLiteQueryBuilder.buildQueryString(false, LocationEntry.TABLE_NAME,
+                        projection, selection, null, null, sortOrder, null);
+                sqlArgs = selectionArgs;
                 break;
             case LOCATION_ID: {
                 final long id = ContentUris.parseId(uri);
                 final String idSelection = LocationEntry._ID + "=?";
-                final String[] idSelectionArgs = new String[] {Long.toString(id)};
-                cursor = db.query(LocationEntry.TABLE_NAME, projection, idSelection,
-                        idSelectionArgs, null, null, sortOrder);
+                sql = SQLiteQueryBuilder.buildQueryString(false, LocationEntry.TABLE_NAME,
+                        projection, idSelection, null, null, sortOrder, null);
+                sqlArgs = new String[] {Long.toString(id)};
+                break;
+            }
+            case LOCATION_WITH_CITY_ID: {
+                final String cityIdSelection = LocationEntry.COL_CITY_ID + "=?";
+                sql = SQLiteQueryBuilder.buildQueryString(false, LocationEntry.TABLE_NAME,
+                        projection, cityIdSelection, null, null, sortOrder, null);
+                sqlArgs = new String[] {LocationEntry.getCityIdFromUri(uri)};
+                break;
+            }
+            case DASHBOARD_WITH_DATE: {
+                // each page continues after the last location of the previous page, rather than
+                // at an offset, so that it is a range of the location table's primary key, and
+                // loading it does not step over the rows of all of the previous pages
+                if (sortOrder != null) {
+                    throw new IllegalArgumentException("the dashboard is sorted by location ID: "
+                            + uri);
+                }
+                final String date = parseDate(uri, DashboardEntry.getDateFromUri(uri));
+                final String after = DashboardEntry.getAfterFromUri(uri);
+                final String limit = DashboardEntry.getLimitFromUri(uri);
+                final String locationIdColumn = LocationEntry.TABLE_NAME + "." + LocationEntry._ID;
+                final ArrayList<String> curSelectionArgs = new ArrayList<>();
+                // the date is bound first, since it is in the join, which precedes the selection
+                curSelectionArgs.add(date);
+                String curSelection = locationIdColumn + ">?";
+                if (selection != null) {
+                    curSelection = "(" + selection + ") AND " + curSelection;
+                    if (selectionArgs != null) {
+                        curSelectionArgs.addAll(Arrays.asList(selectionArgs));
+                    }
+                }
+                curSelectionArgs.add((after == null)
+                        ? Long.toString(Long.MIN_VALUE) : parseNumber(uri, after));
+                sqlArgs = curSelectionArgs.toArray(new String[curSelectionArgs.size()]);
+                sql = mDashboardQueryBuilder.buildQuery(projection, curSelection, null, null,
+                        locationIdColumn + " ASC",
+                        (limit == null) ? null : parseNumber(uri, limit));
                 break;
             }
             default:
                 throw new UnsupportedOperationException("unsupported URI: " + uri);
         }
 
-        final ContentResolver cr = getContext().getContentResolver();
-        cursor.setNotificationUri(cr, uri);
-        return cursor;
+        return new Query(sql, sqlArgs);
     }
 
     @Override
@@ -100,7 +438,10 @@ public class WeatherProvider extends ContentProvider {
             case LOCATION:
                 return LocationEntry.CONTENT_TYPE;
             case LOCATION_ID:
+            case LOCATION_WITH_CITY_ID:
                 return LocationEntry.CONTENT_TYPE_ITEM;
+            case DASHBOARD_WITH_DATE:
+                return DashboardEntry.CONTENT_TYPE;
             default:
                 return null;
         }
@@ -108,17 +449,670 @@ public class WeatherProvider extends ContentProvider {
 
     @Override
     public Uri insert(Uri uri, ContentValues values) {
-        return null;
+        final int uriType = mUriMatcher.match(uri);
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final Uri insertedUri;
+
+        switch (uriType) {
+            case WEATHER: {
+                final InsertStatement statement = new InsertStatement(db,
+                        WeatherEntry.TABLE_NAME, values.keySet());
+                final long id;
+                try {
+                    id = statement.execute(values);
+                } finally {
+                    statement.close();
+                }
+                if (id < 0) {
+                    throw new SQLException("failed to insert row into " + uri);
+                }
+                onWeatherChanged(values);
+                insertedUri = WeatherEntry.buildUriFromId(id);
+                break;
+            }
+            case LOCATION: {
+                final String cityId = values.getAsString(LocationEntry.COL_CITY_ID);
+                final Long cachedId = (cityId == null) ? null : mLocationIdCache.get(cityId);
+                if (cachedId != null) {
+                    // the location table ignores rows whose city ID already exists, so inserting
+                    // it would change nothing
+                    insertedUri = LocationEntry.buildUriFromId(cachedId);
+                    break;
+                }
+                final long generation = mLocationIdCache.getGeneration();
+                long id = db.insert(LocationEntry.TABLE_NAME, null, values);
+                if (id < 0) {
+                    // the location table ignores rows whose city ID already exists
+                    id = queryLocationIdFromCityId(db, cityId);
+                }
+                if (id < 0) {
+                    throw new SQLException("failed to insert row into " + uri);
+                }
+                cacheLocationId(cityId, id, generation);
+                insertedUri = LocationEntry.buildUriFromId(id);
+                notifyChange(uri);
+                break;
+            }
+            default:
+                throw new UnsupportedOperationException("unsupported URI: " + uri);
+        }
+
+        return insertedUri;
+    }
+
+    /**
+     * Inserts the given rows in a single transaction.
+     * <p>
+     * This is considerably faster than inserting the rows one at a time because the database
+     * is only synced to storage once, each distinct set of columns is compiled into a single
+     * {@link SQLiteStatement} that is re-used for every row, and observers are notified of the
+     * change only once, after all rows have been inserted; the observers of the weather are
+     * notified once for each city whose weather was inserted.  Weather rows whose date and location
+     * already exist update the existing rows in place, keeping their IDs, and location rows whose
+     * city ID already exists are ignored.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        final int uriType = mUriMatcher.match(uri);
+        final String tableName;
+        switch (uriType) {
+            case WEATHER:
+                tableName = WeatherEntry.TABLE_NAME;
+                break;
+            case LOCATION:
+                tableName = LocationEntry.TABLE_NAME;
+                break;
+            default:
+                throw new UnsupportedOperationException("unsupported URI: " + uri);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final Map<Set<String>, InsertStatement> statements = new HashMap<>();
+        final boolean isOutermostBatch = beginDeferringNotifications();
+        int insertCount = 0;
+
+        try {
+            db.beginTransaction();
+            try {
+                for (final ContentValues curValues : values) {
+                    final Set<String> columns = curValues.keySet();
+                    InsertStatement statement = statements.get(columns);
+                    if (statement == null) {
+                        final Set<String> columnsCopy = new HashSet<>(columns);
+                        statement = new InsertStatement(db, tableName, columnsCopy);
+                        statements.put(columnsCopy, statement);
+                    }
+                    long id = statement.execute(curValues);
+                    if (id >= 0) {
+                        insertCount++;
+                    }
+                    if (uriType == LOCATION) {
+                        final String cityId = curValues.getAsString(LocationEntry.COL_CITY_ID);
+                        if (id < 0 && cityId != null) {
+                            // the location table ignores rows whose city ID already exists
+                            id = queryLocationIdFromCityId(db, cityId);
+                        }
+                        if (id >= 0 && cityId != null) {
+                            mPendingChanges.get().locationIds.put(cityId, id);
+                        }
+                    }
+                }
+                db.setTransactionSuccessful();
+                if (isOutermostBatch) {
+                    mPendingChanges.get().committed = true;
+                }
+            } finally {
+                db.endTransaction();
+                for (final InsertStatement statement : statements.values()) {
+                    statement.close();
+                }
+            }
+
+            if (insertCount > 0) {
+                if (uriType == WEATHER) {
+                    onWeatherChanged(values);
+                } else {
+                    notifyChange(uri);
+                }
+            }
+        } finally {
+            if (isOutermostBatch) {
+                endDeferringNotifications();
+            }
+        }
+        return insertCount;
+    }
+
+    /**
+     * Applies the given operations in a single transaction.
+     * <p>
+     * If any operation fails then none of the operations are applied.  Observers are notified
+     * only once for each distinct URI that was changed, and for each city whose weather was
+     * changed, after all operations have been applied.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final boolean isOutermostBatch = beginDeferringNotifications();
+        final ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            if (isOutermostBatch) {
+                mPendingChanges.get().committed = true;
+            }
+        } finally {
+            db.endTransaction();
+            if (isOutermostBatch) {
+                endDeferringNotifications();
+            }
+        }
+        return results;
     }
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
-        return 0;
+        final int uriType = mUriMatcher.match(uri);
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        // a non-null where clause is required for SQLiteDatabase.delete() to return the number of
+        // rows deleted, so use "1" to delete all rows
+        final String curSelection = (selection == null) ? "1" : selection;
+
+        final int deleteCount;
+        switch (uriType) {
+            case WEATHER: {
+                final String endDate = WeatherEntry.getEndDateFromUri(uri);
+                if (endDate == null) {
+                    deleteCount = db.delete(WeatherEntry.TABLE_NAME, curSelection,
+                            selectionArgs);
+                    if (deleteCount > 0) {
+                        onWeatherChanged(ForecastCache.ALL_LOCATIONS, Long.MAX_VALUE);
+                    }
+                } else if (selection != null) {
+                    throw new IllegalArgumentException("a selection is not supported with an "
+                            + "end date: " + uri);
+                } else {
+                    deleteCount = deleteWeatherBefore(db, parseDate(uri, endDate));
+                }
+                break;
+            }
+            case LOCATION:
+                deleteCount = deleteLocations(db, curSelection, selectionArgs);
+                if (deleteCount > 0) {
+                    invalidateLocationIds(ForecastCache.ALL_LOCATIONS);
+                    onWeatherChanged(ForecastCache.ALL_LOCATIONS, Long.MAX_VALUE);
+                    notifyChange(uri);
+                }
+                break;
+            case LOCATION_ID:
+            case LOCATION_WITH_CITY_ID: {
+                final long id = getLocationIdFromUri(db, uri, uriType);
+                final String idSelection = LocationEntry._ID + "=?";
+                final String[] idSelectionArgs = new String[] {Long.toString(id)};
+                // once the location is deleted its city can no longer be looked up by its ID, so
+                // look it up first in order to notify the observers of the city's weather
+                final String cityId = queryCityId(id);
+                deleteCount = deleteLocations(db, idSelection, idSelectionArgs);
+                if (deleteCount > 0) {
+                    invalidateLocationIds(id);
+                    onWeatherChanged(id, Long.MAX_VALUE);
+                    if (cityId != null) {
+                        notifyChange(WeatherEntry.buildUriFromCityId(cityId));
+                    }
+                    notifyChange(uri);
+                }
+                break;
+            }
+            default:
+                throw new UnsupportedOperationException("unsupported URI: " + uri);
+        }
+
+        return deleteCount;
     }
 
     @Override
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-        return 0;
+        final int uriType = mUriMatcher.match(uri);
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        final int updateCount;
+        switch (uriType) {
+            case WEATHER:
+                updateCount = db.update(WeatherEntry.TABLE_NAME, values, selection, selectionArgs);
+                if (updateCount > 0) {
+                    onWeatherChanged(ForecastCache.ALL_LOCATIONS, Long.MAX_VALUE);
+                }
+                break;
+            case LOCATION:
+                updateCount = db.update(LocationEntry.TABLE_NAME, values, selection,
+                        selectionArgs);
+                if (updateCount > 0) {
+                    if (changesLocationId(values)) {
+                        invalidateLocationIds(ForecastCache.ALL_LOCATIONS);
+                    }
+                    if (hasCachedLocationColumn(values)) {
+                        onWeatherChanged(ForecastCache.ALL_LOCATIONS, Long.MAX_VALUE);
+                    }
+                    notifyChange(uri);
+                }
+                break;
+            case LOCATION_ID:
+            case LOCATION_WITH_CITY_ID: {
+                final long id = getLocationIdFromUri(db, uri, uriType);
+                final String idSelection = LocationEntry._ID + "=?";
+                final String[] idSelectionArgs = new String[] {Long.toString(id)};
+                // the location's weather is looked up by its new ID and city, so look up its old
+                // city first in order to also notify the observers of the old city's weather
+                final String oldCityId = changesLocationId(values) ? queryCityId(id) : null;
+                updateCount = db.update(LocationEntry.TABLE_NAME, values, idSelection,
+                        idSelectionArgs);
+                if (updateCount > 0) {
+                    if (changesLocationId(values)) {
+                        invalidateLocationIds(id);
+                    }
+                    if (hasCachedLocationColumn(values)) {
+                        onWeatherChanged(id, Long.MAX_VALUE);
+                    }
+                    if (oldCityId != null
+                            && !oldCityId.equals(values.getAsString(LocationEntry.COL_CITY_ID))) {
+                        notifyChange(WeatherEntry.buildUriFromCityId(oldCityId));
+                    }
+                    notifyChange(uri);
+                }
+                break;
+            }
+            default:
+                throw new UnsupportedOperationException("unsupported URI: " + uri);
+        }
+
+        return updateCount;
+    }
+
+    /**
+     * Deletes the locations that match the given selection, and their weather, in a single
+     * transaction.
+     * <p>
+     * The weather table's foreign key is not enforced, and the IDs of deleted locations are
+     * reused, so weather left behind by a deleted location would otherwise be inherited by the
+     * next location to be inserted, as well as never be deleted.
+     * @return the number of locations deleted.
+     */
+    private static int deleteLocations(SQLiteDatabase db, String selection,
+            String[] selectionArgs) {
+        db.beginTransaction();
+        try {
+            db.delete(WeatherEntry.TABLE_NAME, WeatherEntry.COL_LOCATION_ID + " IN (SELECT "
+                    + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME + " WHERE "
+                    + selection + ")", selectionArgs);
+            final int deleteCount = db.delete(LocationEntry.TABLE_NAME, selection,
+                    selectionArgs);
+            db.setTransactionSuccessful();
+            return deleteCount;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes the weather of every location before the given date, in batches of at most
+     * {@link #DELETE_BATCH_SIZE} rows, and then returns the freed pages to the file system if
+     * enough have accumulated.
+     * <p>
+     * Each batch is its own transaction, unless the caller is in a transaction, so that deleting
+     * the weather of many days does not block syncs for long or grow the write-ahead log to the
+     * size of the whole delete.  The rows of each batch are found through the index on
+     * (location_id, date), one location at a time, rather than by scanning the weather table for
+     * old dates.
+     * <p>
+     * The weather of locations that no longer exist, which databases written before locations'
+     * weather was deleted along with them may contain, is deleted too, whatever its date, since
+     * no location's forecast includes it.
+     * @return the number of rows deleted.
+     */
+    private int deleteWeatherBefore(SQLiteDatabase db, String endDate) {
+        final int orphanDeleteCount = executeBatchedDelete(db, DELETE_ORPHANED_WEATHER_SQL, null);
+
+        // the locations whose weather is deleted, so that only the observers of their cities are
+        // notified
+        final ArrayList<Long> locationIds = new ArrayList<>();
+        final Cursor cursor = db.rawQuery(SELECT_LOCATIONS_WITH_WEATHER_BEFORE_SQL,
+                new String[] {endDate});
+        try {
+            while (cursor.moveToNext()) {
+                locationIds.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        final int deleteCount = locationIds.isEmpty() ? 0
+                : executeBatchedDelete(db, DELETE_WEATHER_BEFORE_SQL, endDate);
+        if (deleteCount > 0) {
+            final long lastChangedDate = Long.parseLong(endDate) - 1;
+            for (final Long locationId : locationIds) {
+                onWeatherChanged(locationId, lastChangedDate);
+            }
+        }
+        if (deleteCount + orphanDeleteCount > 0) {
+            WeatherOpenHelper.vacuumIfNeeded(db);
+        }
+        return deleteCount + orphanDeleteCount;
+    }
+
+    /**
+     * Repeatedly executes a DELETE statement that deletes at most {@link #DELETE_BATCH_SIZE} rows
+     * until it deletes fewer than that.
+     * @param arg the argument to bind to the statement's only parameter, or null if it has none.
+     * @return the total number of rows deleted.
+     */
+    private static int executeBatchedDelete(SQLiteDatabase db, String sql, String arg) {
+        final SQLiteStatement statement = db.compileStatement(sql);
+        int deleteCount = 0;
+        try {
+            if (arg != null) {
+                statement.bindString(1, arg);
+            }
+            while (true) {
+                final int batchCount = statement.executeUpdateDelete();
+                deleteCount += batchCount;
+                if (batchCount < DELETE_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return deleteCount;
+    }
+
+    /**
+     * Parses a date specified in the given URI.
+     * @return the date, formatted as a decimal number.
+     * @throws IllegalArgumentException if the date is not a valid value of
+     * {@link WeatherEntry#COL_DATE}.
+     */
+    private static String parseDate(Uri uri, String date) {
+        try {
+            return Long.toString(Long.parseLong(date));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid date in URI: " + uri);
+        }
+    }
+
+    private static String parseNumber(Uri uri, String number) {
+        try {
+            return Long.toString(Long.parseLong(number));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number in URI: " + uri);
+        }
+    }
+
+    private static long queryLocationIdFromCityId(SQLiteDatabase db, String cityId) {
+        if (cityId == null) {
+            return -1;
+        }
+        final String[] projection = new String[] {LocationEntry._ID};
+        final String selection = LocationEntry.COL_CITY_ID + "=?";
+        final String[] selectionArgs = new String[] {cityId};
+        final Cursor cursor = db.query(LocationEntry.TABLE_NAME, projection, selection,
+                selectionArgs, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the ID of the location with the given city ID from {@link #mLocationIdCache},
+     * querying the database, and caching the result, only if it is not cached.
+     * @return the ID, or -1 if there is no location with the given city ID.
+     */
+    private long resolveLocationId(SQLiteDatabase db, String cityId) {
+        if (cityId == null) {
+            return -1;
+        }
+        final Long cachedId = mLocationIdCache.get(cityId);
+        if (cachedId != null) {
+            return cachedId;
+        }
+        final long generation = mLocationIdCache.getGeneration();
+        final long id = queryLocationIdFromCityId(db, cityId);
+        if (id >= 0) {
+            cacheLocationId(cityId, id, generation);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the ID of the location of the given {@link #LOCATION_ID} or
+     * {@link #LOCATION_WITH_CITY_ID} URI.
+     * @return the ID, or -1 if there is no location with the URI's city ID.
+     */
+    private long getLocationIdFromUri(SQLiteDatabase db, Uri uri, int uriType) {
+        if (uriType == LOCATION_ID) {
+            return ContentUris.parseId(uri);
+        }
+        return resolveLocationId(db, LocationEntry.getCityIdFromUri(uri));
+    }
+
+    /**
+     * Adds the ID of the location with the given city ID to {@link #mLocationIdCache}.
+     * <p>
+     * If the current thread is performing a batch operation then the ID is only added once the
+     * batch operation's transaction is committed, since the location may have been inserted by
+     * the batch operation and would not exist if it were rolled back.
+     * @param generation the generation of {@link #mLocationIdCache} obtained before the ID was
+     * read from the database.
+     */
+    private void cacheLocationId(String cityId, long id, long generation) {
+        if (cityId == null) {
+            return;
+        }
+        final PendingChanges pendingChanges = mPendingChanges.get();
+        if (pendingChanges != null) {
+            pendingChanges.locationIds.put(cityId, id);
+        } else {
+            mLocationIdCache.put(cityId, id, generation);
+        }
+    }
+
+    /**
+     * Removes the given location, or all locations if {@link ForecastCache#ALL_LOCATIONS}, from
+     * {@link #mLocationIdCache}.  This is not deferred by batch operations, so that no operation
+     * resolves a city ID to a location that it has deleted; if the batch operation is rolled
+     * back then the location is merely queried again.
+     */
+    private void invalidateLocationIds(final long locationId) {
+        if (locationId == ForecastCache.ALL_LOCATIONS) {
+            mLocationIdCache.clear();
+            return;
+        }
+        mLocationIdCache.removeAll(new SizedLruCache.Filter<String, Long>() {
+            @Override
+            public boolean matches(String cityId, Long id) {
+                return id == locationId;
+            }
+        });
+    }
+
+    /**
+     * Returns whether the given values of location rows change the rows' IDs or city IDs, which
+     * invalidates the entries of {@link #mLocationIdCache} of the updated rows.
+     */
+    private static boolean changesLocationId(ContentValues values) {
+        return values.containsKey(LocationEntry._ID)
+                || values.containsKey(LocationEntry.COL_CITY_ID);
+    }
+
+    /**
+     * Records that the given weather rows have been inserted or replaced; see
+     * {@link #onWeatherChanged(long, long)}.
+     */
+    private void onWeatherChanged(ContentValues... weatherValues) {
+        final Map<Long, Long> lastChangedDates = new HashMap<>();
+        for (final ContentValues values : weatherValues) {
+            final Long locationId = values.getAsLong(WeatherEntry.COL_LOCATION_ID);
+            final Long date = values.getAsLong(WeatherEntry.COL_DATE);
+            if (locationId == null || date == null) {
+                onWeatherChanged(ForecastCache.ALL_LOCATIONS, Long.MAX_VALUE);
+                return;
+            }
+            final Long lastChangedDate = lastChangedDates.get(locationId);
+            if (lastChangedDate == null || date > lastChangedDate) {
+                lastChangedDates.put(locationId, date);
+            }
+        }
+        for (final Map.Entry<Long, Long> entry : lastChangedDates.entrySet()) {
+            onWeatherChanged(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Records that the weather of the given location has changed on dates up to and including the
+     * given date: the cached forecasts containing those dates are invalidated, and the observers
+     * of the location's city are notified.
+     * <p>
+     * If the current thread is performing a batch operation then both are deferred until the
+     * batch operation completes, since a forecast read from the database before then would not
+     * include the batch's changes.
+     * @param locationId the ID of the location, or {@link ForecastCache#ALL_LOCATIONS}.
+     * @param lastChangedDate the last date whose weather changed, or {@link Long#MAX_VALUE}.
+     */
+    private void onWeatherChanged(long locationId, long lastChangedDate) {
+        final PendingChanges pendingChanges = mPendingChanges.get();
+        if (pendingChanges != null) {
+            pendingChanges.addWeatherChange(locationId, lastChangedDate);
+        } else {
+            final PendingChanges changes = new PendingChanges(mLocationIdCache.getGeneration());
+            changes.addWeatherChange(locationId, lastChangedDate);
+            dispatchChanges(changes);
+        }
+    }
+
+    /**
+     * Returns whether the given values of location columns change any column of the location
+     * table that is cached by {@link #mForecastCache}.
+     */
+    private static boolean hasCachedLocationColumn(ContentValues values) {
+        for (final String column : values.keySet()) {
+            if (column.equals(LocationEntry._ID)
+                    || ForecastCache.isCachedColumn(LocationEntry.TABLE_NAME + "." + column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies observers of the given URI that it has changed.
+     * <p>
+     * If the current thread is performing a batch operation then the notification is deferred
+     * until the batch operation completes.
+     */
+    private void notifyChange(Uri uri) {
+        final PendingChanges pendingChanges = mPendingChanges.get();
+        if (pendingChanges != null) {
+            pendingChanges.uris.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Starts deferring change notifications, and invalidations of {@link #mForecastCache}, made
+     * by the current thread.
+     * @return true if notifications were not already being deferred, in which case the caller
+     * must invoke {@link #endDeferringNotifications} once its batch operation completes;
+     * false if notifications were already being deferred, in which case the caller must not.
+     */
+    private boolean beginDeferringNotifications() {
+        if (mPendingChanges.get() != null) {
+            return false;
+        }
+        mPendingChanges.set(new PendingChanges(mLocationIdCache.getGeneration()));
+        return true;
+    }
+
+    /**
+     * Stops deferring change notifications, and invalidations of {@link #mForecastCache}, made by
+     * the current thread, and makes those that were deferred.
+     */
+    private void endDeferringNotifications() {
+        final PendingChanges pendingChanges = mPendingChanges.get();
+        mPendingChanges.remove();
+        dispatchChanges(pendingChanges);
+    }
+
+    /**
+     * Invalidates the cached forecasts, and notifies the observers, of the given changes, once
+     * they are committed.
+     * <p>
+     * The invalidations are made first, so that the observers do not query forecasts that were
+     * cached before the changes.  The observers of the weather of each city whose weather changed
+     * are notified by the city's URI, such as {@link WeatherEntry#buildUriFromCityId}, which
+     * notifies the observers of that city's forecasts but not those of other cities; if the
+     * weather of an unknown set of locations, or of more than {@link #MAX_CITY_NOTIFICATIONS}
+     * cities, changed, then the observers of all cities' weather are notified instead.  Each URI
+     * is notified once, however many of its rows changed.
+     */
+    private void dispatchChanges(PendingChanges changes) {
+        if (changes.committed) {
+            for (final Map.Entry<String, Long> entry : changes.locationIds.entrySet()) {
+                mLocationIdCache.put(entry.getKey(), entry.getValue(),
+                        changes.locationIdGeneration);
+            }
+        }
+        for (final Map.Entry<Long, Long> entry : changes.weatherChanges.entrySet()) {
+            mForecastCache.invalidate(entry.getKey(), entry.getValue());
+        }
+
+        final Set<Long> locationIds = changes.weatherChanges.keySet();
+        if (locationIds.contains(ForecastCache.ALL_LOCATIONS)
+                || locationIds.size() > MAX_CITY_NOTIFICATIONS) {
+            changes.uris.add(WeatherEntry.CONTENT_URI);
+        } else if (!locationIds.isEmpty()) {
+            for (final String cityId : queryCityIds(locationIds)) {
+                changes.uris.add(WeatherEntry.buildUriFromCityId(cityId));
+            }
+        }
+
+        final ContentResolver cr = getContext().getContentResolver();
+        for (final Uri uri : changes.uris) {
+            cr.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Returns the city ID of the location with the given ID, or null if there is no such location.
+     */
+    private String queryCityId(long locationId) {
+        final List<String> cityIds = queryCityIds(Collections.singletonList(locationId));
+        return cityIds.isEmpty() ? null : cityIds.get(0);
+    }
+
+    /**
+     * Returns the city IDs of the locations with the given IDs; locations that no longer exist
+     * are omitted.
+     */
+    private List<String> queryCityIds(Collection<Long> locationIds) {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        final String sql = "SELECT " + LocationEntry.COL_CITY_ID + " FROM "
+                + LocationEntry.TABLE_NAME + " WHERE " + LocationEntry._ID + " IN ("
+                + TextUtils.join(",", locationIds) + ")";
+        final Cursor cursor = db.rawQuery(sql, null);
+        try {
+            final List<String> cityIds = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                cityIds.add(cursor.getString(0));
+            }
+            return cityIds;
+        } finally {
+            cursor.close();
+        }
     }
 
     private static UriMatcher buildUriMatcher() {
@@ -129,10 +1123,169 @@ public class WeatherProvider extends ContentProvider {
                 WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_CITY_ID);
         uriMatcher.addURI(WeatherContract.CONTENT_AUTHORITY,
                 WeatherContract.PATH_WEATHER, WEATHER);
+        uriMatcher.addURI(WeatherContract.CONTENT_AUTHORITY,
+                WeatherContract.PATH_LOCATION + "/" + WeatherContract.PATH_CITY + "/*",
+                LOCATION_WITH_CITY_ID);
         uriMatcher.addURI(WeatherContract.CONTENT_AUTHORITY,
                 WeatherContract.PATH_LOCATION + "/#", LOCATION_ID);
         uriMatcher.addURI(WeatherContract.CONTENT_AUTHORITY,
                 WeatherContract.PATH_LOCATION, LOCATION);
+        uriMatcher.addURI(WeatherContract.CONTENT_AUTHORITY,
+                WeatherContract.PATH_DASHBOARD + "/#", DASHBOARD_WITH_DATE);
         return uriMatcher;
     }
+
+    /**
+     * The changes made by a batch operation, whose notifications and invalidations are deferred
+     * until it completes.
+     */
+    private static final class PendingChanges {
+
+        /**
+         * The URIs to notify, other than those of the weather of the changed locations.
+         */
+        public final Set<Uri> uris = new LinkedHashSet<>();
+
+        /**
+         * The IDs of the locations whose weather changed, or
+         * {@link ForecastCache#ALL_LOCATIONS}, each mapped to the last date whose weather changed.
+         */
+        public final Map<Long, Long> weatherChanges = new HashMap<>();
+
+        /**
+         * The IDs of the locations inserted or looked up by the batch operation, by city ID, to
+         * add to {@link #mLocationIdCache} if it is committed.
+         */
+        public final Map<String, Long> locationIds = new HashMap<>();
+
+        /**
+         * The generation of {@link #mLocationIdCache} when the batch operation began.
+         */
+        public final long locationIdGeneration;
+
+        /**
+         * Whether the batch operation's transaction has been committed.
+         */
+        public boolean committed;
+
+        public PendingChanges(long locationIdGeneration) {
+            this.locationIdGeneration = locationIdGeneration;
+        }
+
+        public void addWeatherChange(long locationId, long lastChangedDate) {
+            final Long pendingLastChangedDate = weatherChanges.get(locationId);
+            if (pendingLastChangedDate == null || lastChangedDate > pendingLastChangedDate) {
+                weatherChanges.put(locationId, lastChangedDate);
+            }
+        }
+    }
+
+    /**
+     * A SELECT statement built by {@link #buildQuery}, and the arguments to bind to it.
+     */
+    static final class Query {
+
+        public final String sql;
+        public final String[] selectionArgs;
+
+        public Query(String sql, String[] selectionArgs) {
+            this.sql = sql;
+            this.selectionArgs = selectionArgs;
+        }
+    }
+
+    /**
+     * A compiled INSERT statement for a specific set of columns of a table.
+     * <p>
+     * A weather row whose location and date already exist updates the existing row in place,
+     * rather than letting the table's conflict clause replace it with a new row, so that the row
+     * keeps its ID; the forecast list relies on the IDs of its rows staying the same when their
+     * forecasts are saved again.
+     */
+    private static class InsertStatement {
+
+        private final String[] mColumns;
+        private final SQLiteStatement mStatement;
+        private final SQLiteStatement mSelectIdStatement;
+        private final SQLiteStatement mUpdateStatement;
+
+        public InsertStatement(SQLiteDatabase db, String tableName, Set<String> columns) {
+            mColumns = columns.toArray(new String[columns.size()]);
+            if (tableName.equals(WeatherEntry.TABLE_NAME)
+                    && columns.contains(WeatherEntry.COL_LOCATION_ID)
+                    && columns.contains(WeatherEntry.COL_DATE)) {
+                mSelectIdStatement = db.compileStatement(SELECT_WEATHER_ID_SQL);
+                mUpdateStatement = db.compileStatement(buildUpdateSql(tableName, mColumns));
+            } else {
+                mSelectIdStatement = null;
+                mUpdateStatement = null;
+            }
+            final StringBuilder sb = new StringBuilder();
+            sb.append("INSERT INTO ").append(tableName).append(" (");
+            for (int i = 0; i < mColumns.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(mColumns[i]);
+            }
+            sb.append(") VALUES (");
+            for (int i = 0; i < mColumns.length; i++) {
+                sb.append((i > 0) ? ",?" : "?");
+            }
+            sb.append(')');
+            mStatement = db.compileStatement(sb.toString());
+        }
+
+        private static String buildUpdateSql(String tableName, String[] columns) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("UPDATE ").append(tableName).append(" SET ");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(columns[i]).append("=?");
+            }
+            sb.append(" WHERE ").append(WeatherEntry._ID).append("=?");
+            return sb.toString();
+        }
+
+        /**
+         * Inserts a row with the given values, or updates the existing weather row with the same
+         * location and date.
+         * @return the ID of the inserted or updated row, or -1 if no row was inserted because it
+         * conflicted with an existing row.
+         */
+        public long execute(ContentValues values) {
+            if (mSelectIdStatement != null) {
+                DatabaseUtils.bindObjectToProgram(mSelectIdStatement, 1,
+                        values.get(WeatherEntry.COL_LOCATION_ID));
+                DatabaseUtils.bindObjectToProgram(mSelectIdStatement, 2,
+                        values.get(WeatherEntry.COL_DATE));
+                final long id = mSelectIdStatement.simpleQueryForLong();
+                if (id >= 0) {
+                    bindValues(mUpdateStatement, values);
+                    mUpdateStatement.bindLong(mColumns.length + 1, id);
+                    mUpdateStatement.executeUpdateDelete();
+                    return id;
+                }
+            }
+            bindValues(mStatement, values);
+            return mStatement.executeInsert();
+        }
+
+        private void bindValues(SQLiteStatement statement, ContentValues values) {
+            statement.clearBindings();
+            for (int i = 0; i < mColumns.length; i++) {
+                DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(mColumns[i]));
+            }
+        }
+
+        public void close() {
+            mStatement.close();
+            if (mSelectIdStatement != null) {
+                mSelectIdStatement.close();
+                mUpdateStatement.close();
+            }
+        }
+    }
 }
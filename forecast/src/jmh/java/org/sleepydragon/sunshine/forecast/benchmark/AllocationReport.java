@@ -0,0 +1,92 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.sleepydragon.sunshine.forecast.Fixtures;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+import org.sleepydragon.sunshine.forecast.ForecastFormatter;
+import org.sleepydragon.sunshine.forecast.ForecastJsonParser;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reports the number of bytes allocated per forecast day when parsing and formatting forecasts.
+ * <p>
+ * JMH's GC profiler reports allocations per benchmark invocation, which makes payloads of
+ * different sizes hard to compare; this program normalizes the allocations by the number of days
+ * parsed.  It relies on the HotSpot-specific {@code com.sun.management.ThreadMXBean}.
+ */
+public class AllocationReport {
+
+    private static final int[] DAYS = {7, 16, 200};
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    /**
+     * Used to prevent the JIT compiler from eliminating the code being measured.
+     */
+    private static int sSink;
+
+    private interface Operation {
+        void run(String json, ForecastBatch forecast) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final ForecastFormatter formatter = new ForecastFormatter(MeasurementUnits.METRIC);
+
+        final Operation parseStreaming = new Operation() {
+            @Override
+            public void run(String json, ForecastBatch forecast) throws Exception {
+                sSink += ForecastJsonParser.parse(new StringReader(json)).size();
+            }
+        };
+        final Operation parseTree = new Operation() {
+            @Override
+            public void run(String json, ForecastBatch forecast) throws Exception {
+                sSink += ForecastJsonParser.parse(json).size();
+            }
+        };
+        final Operation format = new Operation() {
+            @Override
+            public void run(String json, ForecastBatch forecast) throws Exception {
+                sSink += formatter.formatForecast(forecast).length;
+            }
+        };
+        final Operation formatDate = new Operation() {
+            @Override
+            public void run(String json, ForecastBatch forecast) throws Exception {
+                for (int i = 0; i < forecast.size(); i++) {
+                    sSink += formatter.formatDate(forecast.getEpochDay(i)).length();
+                }
+            }
+        };
+
+        System.out.println("operation          days  bytes/day");
+        for (final int numDays : DAYS) {
+            final String json = Fixtures.forecastWithDays(numDays);
+            final ForecastBatch forecast = ForecastJsonParser.parse(json);
+            report(threadMXBean, "parseStreaming", numDays, json, forecast, parseStreaming);
+            report(threadMXBean, "parseTree", numDays, json, forecast, parseTree);
+            report(threadMXBean, "formatForecast", numDays, json, forecast, format);
+            report(threadMXBean, "formatDate", numDays, json, forecast, formatDate);
+        }
+    }
+
+    private static void report(com.sun.management.ThreadMXBean threadMXBean, String name,
+            int numDays, String json, ForecastBatch forecast, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run(json, forecast);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run(json, forecast);
+        }
+        final long endBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long bytesPerDay = (endBytes - startBytes) / ((long) MEASURED_ITERATIONS * numDays);
+        System.out.println(String.format("%-18s %4d %10d", name, numDays, bytesPerDay));
+    }
+
+}
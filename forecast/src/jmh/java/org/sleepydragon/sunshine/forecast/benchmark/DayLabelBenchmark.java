@@ -0,0 +1,73 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sleepydragon.sunshine.forecast.DayLabelFormatter;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-row cost of formatting day labels with {@link DayLabelFormatter} against
+ * constructing a new {@link SimpleDateFormat} for each row, as was done originally.
+ * <p>
+ * Each invocation formats {@value #ROWS} rows: a 16-day forecast for each of 8 cities.  Run
+ * with the GC profiler ({@code -prof gc}) to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DayLabelBenchmark {
+
+    private static final int DAYS = 16;
+    private static final int CITIES = 8;
+    private static final int ROWS = DAYS * CITIES;
+
+    private long[] mTimes;
+    private DayLabelFormatter mDayLabelFormatter;
+
+    @Setup
+    public void setUp() {
+        final long firstDay = 1405789200000L;
+        mTimes = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            mTimes[i] = firstDay + (i % DAYS) * 24L * 60 * 60 * 1000;
+        }
+        mDayLabelFormatter = new DayLabelFormatter(Locale.getDefault(), TimeZone.getDefault());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void newSimpleDateFormatPerRow(Blackhole blackhole) {
+        for (final long time : mTimes) {
+            final Date date = new Date(time);
+            final SimpleDateFormat format = new SimpleDateFormat("E, MMM d");
+            blackhole.consume(format.format(date));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void dayLabelFormatter(Blackhole blackhole) {
+        for (final long time : mTimes) {
+            blackhole.consume(mDayLabelFormatter.format(time));
+        }
+    }
+
+}
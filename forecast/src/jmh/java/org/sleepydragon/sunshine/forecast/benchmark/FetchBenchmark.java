@@ -0,0 +1,94 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.Fixtures;
+import org.sleepydragon.sunshine.forecast.ForecastDownloader;
+import org.sleepydragon.sunshine.forecast.ForecastFetchEngine;
+import org.sleepydragon.sunshine.forecast.HttpCacheInfo;
+import org.sleepydragon.sunshine.forecast.StandInHttpServer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput, in cities per second, of {@link ForecastFetchEngine} when fetching
+ * the forecasts of {@value #CITIES} cities from a {@link StandInHttpServer}.
+ * <p>
+ * The server delays each response by {@code latencyMillis} to simulate the round trip to the
+ * real weather service, which dominates the time taken to fetch a forecast.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FetchBenchmark {
+
+    private static final int CITIES = 64;
+
+    @Param({"1", "8", "32"})
+    public int concurrency;
+
+    @Param({"20"})
+    public long latencyMillis;
+
+    private StandInHttpServer mServer;
+    private ForecastFetchEngine mEngine;
+    private Map<String, HttpCacheInfo> mCities;
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = new StandInHttpServer();
+        mServer.setResponseBody(Fixtures.load(Fixtures.DAILY_7));
+        mServer.setResponseDelayMillis(latencyMillis);
+
+        final String baseUrl = mServer.getUrl("/data/2.5/forecast/daily").toString();
+        final ForecastDownloader downloader = new ForecastDownloader(baseUrl);
+        mEngine = new ForecastFetchEngine(downloader, null, concurrency, concurrency);
+
+        mCities = new LinkedHashMap<>();
+        for (int i = 0; i < CITIES; i++) {
+            mCities.put("City" + i, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mEngine.shutdown();
+        mServer.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CITIES)
+    public int fetchAll() throws InterruptedException {
+        final List<FetchResult> results = mEngine.fetchAll(mCities);
+        int okCount = 0;
+        for (final FetchResult result : results) {
+            if (result.status == FetchResult.Status.OK) {
+                okCount++;
+            }
+        }
+        if (okCount != CITIES) {
+            throw new AssertionError("only " + okCount + " of " + CITIES + " fetches succeeded");
+        }
+        return okCount;
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sleepydragon.sunshine.forecast.Fixtures;
+import org.sleepydragon.sunshine.forecast.ForecastBatch;
+import org.sleepydragon.sunshine.forecast.ForecastFormatter;
+import org.sleepydragon.sunshine.forecast.ForecastJsonParser;
+import org.sleepydragon.sunshine.forecast.ForecastParseException;
+import org.sleepydragon.sunshine.forecast.MeasurementUnits;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of formatting parsed forecasts for display with {@link ForecastFormatter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    @Param({"7", "16", "200"})
+    public int days;
+
+    @Param({"1", "500"})
+    public int cities;
+
+    @Param({"METRIC", "IMPERIAL"})
+    public MeasurementUnits units;
+
+    private ForecastBatch mForecast;
+    private ForecastFormatter mForecastFormatter;
+
+    @Setup
+    public void setUp() throws IOException, ForecastParseException {
+        mForecast = ForecastJsonParser.parse(Fixtures.forecastWithDays(days));
+        mForecastFormatter = new ForecastFormatter(units);
+    }
+
+    @Benchmark
+    public void formatForecast(Blackhole blackhole) {
+        for (int i = 0; i < cities; i++) {
+            blackhole.consume(mForecastFormatter.formatForecast(mForecast));
+        }
+    }
+
+    @Benchmark
+    public void formatDate(Blackhole blackhole) {
+        for (int i = 0; i < cities; i++) {
+            for (int j = 0; j < mForecast.size(); j++) {
+                blackhole.consume(mForecastFormatter.formatDate(mForecast.getEpochDay(j)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void formatHighLows(Blackhole blackhole) {
+        for (int i = 0; i < cities; i++) {
+            for (int j = 0; j < mForecast.size(); j++) {
+                final double high = mForecast.getHigh(j);
+                final double low = mForecast.getLow(j);
+                blackhole.consume(mForecastFormatter.formatHighLows(high, low));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sleepydragon.sunshine.forecast.Fixtures;
+import org.sleepydragon.sunshine.forecast.ForecastJsonParser;
+import org.sleepydragon.sunshine.forecast.ForecastParseException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link ForecastJsonParser}.
+ * <p>
+ * Each invocation parses one forecast per city, so the score for 500 cities reflects the cost
+ * of refreshing 500 locations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"7", "16", "200"})
+    public int days;
+
+    @Param({"1", "500"})
+    public int cities;
+
+    private String mForecastJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        mForecastJson = Fixtures.forecastWithDays(days);
+    }
+
+    @Benchmark
+    public void parseStreaming(Blackhole blackhole) throws IOException, ForecastParseException {
+        for (int i = 0; i < cities; i++) {
+            blackhole.consume(ForecastJsonParser.parse(new StringReader(mForecastJson)));
+        }
+    }
+
+    @Benchmark
+    public void parseTree(Blackhole blackhole) throws ForecastParseException {
+        for (int i = 0; i < cities; i++) {
+            blackhole.consume(ForecastJsonParser.parse(mForecastJson));
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.sleepydragon.sunshine.forecast.benchmark;
+
+import org.sleepydragon.sunshine.forecast.FetchResult;
+import org.sleepydragon.sunshine.forecast.Fixtures;
+import org.sleepydragon.sunshine.forecast.ForecastDownloader;
+import org.sleepydragon.sunshine.forecast.ForecastJsonParser;
+import org.sleepydragon.sunshine.forecast.StandInHttpServer;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Reports the number of bytes on the wire, the number of connections opened and the wall time
+ * per download when downloading forecasts from a {@link StandInHttpServer}, both as the app
+ * originally did and with {@link ForecastDownloader}.
+ * <p>
+ * The original way disconnects after each download without first closing the response body,
+ * so that the connection is closed rather than returned to the pool, does not request
+ * compression, and decodes the response with an {@link InputStreamReader}.  JMH is not used
+ * because the bytes and connections are counted by the server rather than measured by timing.
+ */
+public class TransportReport {
+
+    private static final String[] FIXTURES = {Fixtures.DAILY_7, Fixtures.DAILY_16};
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 1000;
+
+    /**
+     * Used to prevent the JIT compiler from eliminating the code being measured.
+     */
+    private static int sSink;
+
+    private interface Download {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("fixture                  method     bytes/download  connections"
+                + "  us/download");
+        for (final String fixture : FIXTURES) {
+            final StandInHttpServer server = new StandInHttpServer();
+            try {
+                server.setResponseBody(Fixtures.load(fixture));
+                final String baseUrl = server.getUrl("/data/2.5/forecast/daily").toString();
+                final ForecastDownloader downloader = new ForecastDownloader(baseUrl);
+                final URL url = new URL(downloader.getUrl("Kitchener,on"));
+
+                final Download original = new Download() {
+                    @Override
+                    public void run() throws Exception {
+                        final HttpURLConnection con = (HttpURLConnection) url.openConnection();
+                        try {
+                            final InputStream in = con.getInputStream();
+                            sSink += ForecastJsonParser.parse(
+                                    new InputStreamReader(in, "utf8")).size();
+                        } finally {
+                            con.disconnect();
+                        }
+                    }
+                };
+                final Download transport = new Download() {
+                    @Override
+                    public void run() throws Exception {
+                        final FetchResult result = downloader.download("Kitchener,on", null);
+                        if (result.status != FetchResult.Status.OK) {
+                            throw new AssertionError("download failed: " + result.errorMessage);
+                        }
+                        sSink += result.forecast.size();
+                    }
+                };
+
+                report(server, fixture, "original", original);
+                report(server, fixture, "transport", transport);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static void report(StandInHttpServer server, String fixture, String name,
+            Download download) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            download.run();
+        }
+        final long startBytes = server.getBytesSent();
+        final int startConnections = server.getConnectionCount();
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            download.run();
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final long bytesPerDownload = (server.getBytesSent() - startBytes) / MEASURED_ITERATIONS;
+        final int connections = server.getConnectionCount() - startConnections;
+        final long microsPerDownload = elapsedNanos / (1000L * MEASURED_ITERATIONS);
+        System.out.println(String.format("%-24s %-10s %14d %12d %12d", fixture, name,
+                bytesPerDownload, connections, microsPerDownload));
+    }
+
+}
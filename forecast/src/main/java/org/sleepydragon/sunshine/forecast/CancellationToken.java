@@ -0,0 +1,155 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A flag, shared by the steps of a piece of background work, that is set to cancel the work.
+ * <p>
+ * Tokens form a tree: cancelling a token also cancels every token created from it by
+ * {@link #newChild}, so that, for example, a fragment can cancel all of its work at once while
+ * each download within it can be cancelled individually.  A child that outlives its work would
+ * otherwise be held by its parent until the parent is cancelled, so the work must
+ * {@link #detach} its token once it completes.  Cancellation is cooperative: the steps
+ * check {@link #isCancelled} between units of work, and blocking operations that cannot check it,
+ * such as reading from a socket, can be aborted by a listener added with {@link #addListener}.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public final class CancellationToken {
+
+    private final Object mLock = new Object();
+
+    private volatile boolean mCancelled;
+    private List<Runnable> mListeners;
+    private CancellationToken mParent;
+    private Runnable mParentListener;
+
+    /**
+     * Cancels this token, its children and their children, and runs the listeners of each on the
+     * calling thread; does nothing if this token is already cancelled.
+     * <p>
+     * A cancelled token is detached from its parent, which no longer needs to hold on to it.
+     */
+    public void cancel() {
+        final List<Runnable> listeners;
+        synchronized (mLock) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            listeners = mListeners;
+            mListeners = null;
+        }
+        if (listeners != null) {
+            for (final Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+        detach();
+    }
+
+    /**
+     * Returns whether this token, or any of its ancestors, has been cancelled.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Throws {@link CancellationException} if this token has been cancelled.
+     */
+    public void throwIfCancelled() {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Adds a listener to be run when this token is cancelled.
+     * <p>
+     * If this token is already cancelled then the listener is run immediately, on the calling
+     * thread; otherwise, it is run on the thread that cancels this token.
+     * @param listener the listener to add; must not be null.
+     */
+    public void addListener(Runnable listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener==null");
+        }
+        synchronized (mLock) {
+            if (!mCancelled) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<>(2);
+                }
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Removes a listener added by {@link #addListener}, such as once the blocking operation that
+     * it aborts has completed; does nothing if the listener is not registered.
+     */
+    public void removeListener(Runnable listener) {
+        synchronized (mLock) {
+            if (mListeners != null) {
+                mListeners.remove(listener);
+            }
+        }
+    }
+
+    /**
+     * Creates and returns a token that is cancelled when this token is cancelled, but that can
+     * also be cancelled by itself.
+     * @return the new token, which is already cancelled if this token is; never returns null.
+     */
+    public CancellationToken newChild() {
+        final CancellationToken child = new CancellationToken();
+        final Runnable cancelChild = new Runnable() {
+            @Override
+            public void run() {
+                child.cancel();
+            }
+        };
+        synchronized (child.mLock) {
+            child.mParent = this;
+            child.mParentListener = cancelChild;
+        }
+        addListener(cancelChild);
+        return child;
+    }
+
+    /**
+     * Detaches this token from the token from which it was created by {@link #newChild}, such as
+     * once the work that it controls has completed, so that the parent no longer holds on to it;
+     * this token is then no longer cancelled when its parent is.  Does nothing if this token has
+     * no parent or is already detached.
+     */
+    public void detach() {
+        final CancellationToken parent;
+        final Runnable parentListener;
+        synchronized (mLock) {
+            parent = mParent;
+            parentListener = mParentListener;
+            mParent = null;
+            mParentListener = null;
+        }
+        if (parent != null) {
+            parent.removeListener(parentListener);
+        }
+    }
+
+    /**
+     * Returns the number of listeners that will be run when this token is cancelled, including
+     * those by which its children are cancelled; for tests.
+     */
+    int getListenerCount() {
+        synchronized (mLock) {
+            return (mListeners == null) ? 0 : mListeners.size();
+        }
+    }
+
+}
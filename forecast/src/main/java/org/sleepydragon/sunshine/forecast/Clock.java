@@ -0,0 +1,24 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * A source of the current time, so that code that makes decisions based on the time, such as
+ * when to next sync, can be tested with a clock that the test advances itself.
+ */
+public interface Clock {
+
+    /**
+     * The clock of the system, as returned by {@link System#currentTimeMillis}.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Returns the current time, in milliseconds since the epoch.
+     */
+    long currentTimeMillis();
+
+}
@@ -0,0 +1,122 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats dates as short, human-readable day labels, such as "Sat, Jul 19".
+ * <p>
+ * Constructing and using a {@link SimpleDateFormat} is expensive, and the same handful of days
+ * are formatted over and over again (once per location, on every refresh).  This class therefore
+ * caches the most recently formatted labels, keyed by the day; formatting a day whose label is
+ * cached performs no allocations.
+ * <p>
+ * Instances of this class are thread-safe.  The cache consists of immutable entries that are
+ * published with a single reference write, so lookups never lock; only cache misses, which
+ * need the (non-thread-safe) {@link SimpleDateFormat}, are synchronized.
+ */
+public class DayLabelFormatter {
+
+    private static final String PATTERN = "E, MMM d";
+    private static final int CACHE_SIZE = 64;
+
+    private static volatile DayLabelFormatter sInstance;
+
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+    private final SimpleDateFormat mDateFormat;
+    private final Date mDate;
+    private final CacheEntry[] mCache;
+
+    public DayLabelFormatter(Locale locale, TimeZone timeZone) {
+        if (locale == null) {
+            throw new NullPointerException("locale==null");
+        } else if (timeZone == null) {
+            throw new NullPointerException("timeZone==null");
+        }
+        mLocale = locale;
+        mTimeZone = (TimeZone) timeZone.clone();
+        mDateFormat = new SimpleDateFormat(PATTERN, locale);
+        mDateFormat.setTimeZone(mTimeZone);
+        mDate = new Date();
+        mCache = new CacheEntry[CACHE_SIZE];
+    }
+
+    /**
+     * Returns an instance that uses the default locale and time zone.
+     * <p>
+     * The same instance is returned on each invocation, unless the default locale or time zone
+     * has changed since the instance was created, in which case a new instance is created.
+     * @return an instance that uses the default locale and time zone; never returns null.
+     */
+    public static DayLabelFormatter getInstance() {
+        final Locale locale = Locale.getDefault();
+        final TimeZone timeZone = TimeZone.getDefault();
+        DayLabelFormatter instance = sInstance;
+        if (instance == null || !instance.mLocale.equals(locale)
+                || !instance.mTimeZone.hasSameRules(timeZone)
+                || !instance.mTimeZone.getID().equals(timeZone.getID())) {
+            instance = new DayLabelFormatter(locale, timeZone);
+            sInstance = instance;
+        }
+        return instance;
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Returns the label for the day containing the given time.
+     * @param timeMillis the time, in milliseconds since the epoch.
+     * @return the label for the day containing the given time, such as "Sat, Jul 19";
+     * never returns null.
+     */
+    public String format(long timeMillis) {
+        final long epochDay = toEpochDay(timeMillis);
+        final int cacheIndex = (int) (epochDay & (CACHE_SIZE - 1));
+        final CacheEntry cacheEntry = mCache[cacheIndex];
+        if (cacheEntry != null && cacheEntry.epochDay == epochDay) {
+            return cacheEntry.label;
+        }
+
+        final String label;
+        synchronized (mDateFormat) {
+            mDate.setTime(timeMillis);
+            label = mDateFormat.format(mDate);
+        }
+        mCache[cacheIndex] = new CacheEntry(epochDay, label);
+        return label;
+    }
+
+    /**
+     * Returns the label for the given day.
+     * @param epochDay the day, as the number of days since 1970-01-01.
+     * @return the label for the given day, such as "Sat, Jul 19"; never returns null.
+     * @see EpochDays
+     */
+    public String formatEpochDay(long epochDay) {
+        return format(EpochDays.toMiddayMillis(epochDay, mTimeZone));
+    }
+
+    /**
+     * Returns the number of days between the epoch and the day, in this object's time zone,
+     * containing the given time.
+     */
+    public long toEpochDay(long timeMillis) {
+        return EpochDays.fromTimeMillis(timeMillis, mTimeZone);
+    }
+
+    private static final class CacheEntry {
+        public final long epochDay;
+        public final String label;
+
+        public CacheEntry(long epochDay, String label) {
+            this.epochDay = epochDay;
+            this.label = label;
+        }
+    }
+
+}
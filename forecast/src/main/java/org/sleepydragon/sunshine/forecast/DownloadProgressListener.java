@@ -0,0 +1,21 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * Receives the progress of a download.
+ * <p>
+ * Progress is reported on the thread performing the download, and is rate-limited by
+ * {@link ProgressInputStream} so that implementations may forward each report to another thread,
+ * such as the main thread, without flooding it.
+ */
+public interface DownloadProgressListener {
+
+    /**
+     * Called as a download progresses, and once more when it completes.
+     * @param byteCount the number of bytes downloaded so far, as transferred; that is, before
+     * decompression if the response is compressed.
+     * @param fractionComplete the fraction of the download that is complete, from 0 to 1, if the
+     * length of the response is known from its Content-Length header; otherwise, NaN.
+     */
+    void onDownloadProgress(long byteCount, float fractionComplete);
+
+}
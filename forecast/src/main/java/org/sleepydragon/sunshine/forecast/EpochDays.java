@@ -0,0 +1,61 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.TimeZone;
+
+/**
+ * Converts times into epoch days, the number of days between 1970-01-01 and a date, which is the
+ * key by which daily forecasts are stored and queried.
+ * <p>
+ * An epoch day identifies a calendar date rather than an instant, so consecutive days are
+ * consecutive integers regardless of time zones and daylight saving time, and a range of days is
+ * a simple numeric range.
+ */
+public final class EpochDays {
+
+    public static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    public static final long MILLIS_PER_DAY = SECONDS_PER_DAY * 1000;
+
+    private EpochDays() {
+    }
+
+    /**
+     * Returns the epoch day of the daily forecast with the given date/time, as specified by the
+     * weather service.
+     * <p>
+     * The weather service specifies each day's date/time as a time around midday, local time, at
+     * the location, so the date in UTC is the location's date everywhere except in the few time
+     * zones more than 12 hours ahead of UTC.
+     * @param unixTime the date/time of the forecast, as a unix timestamp (in seconds).
+     */
+    public static long fromUnixTime(long unixTime) {
+        return floorDiv(unixTime, SECONDS_PER_DAY);
+    }
+
+    /**
+     * Returns the epoch day of the date, in the given time zone, containing the given time.
+     * @param timeMillis the time, in milliseconds since the epoch.
+     * @param timeZone the time zone in which to determine the date; must not be null.
+     */
+    public static long fromTimeMillis(long timeMillis, TimeZone timeZone) {
+        final long localTimeMillis = timeMillis + timeZone.getOffset(timeMillis);
+        return floorDiv(localTimeMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the time, in milliseconds since the epoch, of midday, in the given time zone, on the
+     * given epoch day; midday is used since it is never skipped or repeated by a daylight saving
+     * transition.
+     * @param epochDay the epoch day.
+     * @param timeZone the time zone in which to determine the time; must not be null.
+     */
+    public static long toMiddayMillis(long epochDay, TimeZone timeZone) {
+        final long localMiddayMillis = epochDay * MILLIS_PER_DAY + MILLIS_PER_DAY / 2;
+        return localMiddayMillis - timeZone.getOffset(localMiddayMillis);
+    }
+
+    private static long floorDiv(long x, long y) {
+        final long quotient = x / y;
+        return (x % y < 0) ? quotient - 1 : quotient;
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * The result of fetching the forecast for a single city.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public final class FetchResult {
+
+    /**
+     * The ID of the city whose forecast was fetched, as sent to OpenWeatherMap; never null.
+     */
+    public final String cityId;
+
+    /**
+     * The outcome of the fetch; never null.
+     */
+    public final Status status;
+
+    /**
+     * The downloaded forecast; non-null if, and only if, {@link #status} is {@link Status#OK}.
+     */
+    public final ForecastBatch forecast;
+
+    /**
+     * The information about the response from which the forecast was downloaded or revalidated;
+     * null if the fetch failed.
+     */
+    public final HttpCacheInfo cacheInfo;
+
+    /**
+     * The message of the error that caused the fetch to fail; null if it did not fail.  The
+     * message is suitable for logging, not for displaying to the user.
+     */
+    public final String errorMessage;
+
+    private FetchResult(String cityId, Status status, ForecastBatch forecast,
+            HttpCacheInfo cacheInfo, String errorMessage) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        } else if (status == null) {
+            throw new NullPointerException("status==null");
+        }
+        this.cityId = cityId;
+        this.status = status;
+        this.forecast = forecast;
+        this.cacheInfo = cacheInfo;
+        this.errorMessage = errorMessage;
+    }
+
+    public static FetchResult ok(String cityId, ForecastBatch forecast, HttpCacheInfo cacheInfo) {
+        if (forecast == null) {
+            throw new NullPointerException("forecast==null");
+        }
+        return new FetchResult(cityId, Status.OK, forecast, cacheInfo, null);
+    }
+
+    public static FetchResult fresh(String cityId, HttpCacheInfo cacheInfo) {
+        return new FetchResult(cityId, Status.FRESH, null, cacheInfo, null);
+    }
+
+    public static FetchResult notModified(String cityId, HttpCacheInfo cacheInfo) {
+        return new FetchResult(cityId, Status.NOT_MODIFIED, null, cacheInfo, null);
+    }
+
+    public static FetchResult failed(String cityId, Status status, String errorMessage) {
+        if (status.isSuccess()) {
+            throw new IllegalArgumentException("not a failure status: " + status);
+        }
+        return new FetchResult(cityId, status, null, null, errorMessage);
+    }
+
+    @Override
+    public String toString() {
+        return "FetchResult{cityId=" + cityId + ", status=" + status
+                + ((errorMessage == null) ? "" : ", errorMessage=" + errorMessage) + "}";
+    }
+
+    public enum Status {
+
+        /**
+         * The forecast was downloaded.
+         */
+        OK,
+
+        /**
+         * The previously-downloaded forecast is still fresh, and so no request was made.
+         */
+        FRESH,
+
+        /**
+         * The server reported that the previously-downloaded forecast has not been modified.
+         */
+        NOT_MODIFIED,
+
+        INVALID_URL,
+        CONNECT_FAILED,
+        DOWNLOAD_FAILED,
+        INVALID_DATA,
+        ;
+
+        /**
+         * Returns whether this status indicates that the forecast is now up to date.
+         */
+        public boolean isSuccess() {
+            return this == OK || this == FRESH || this == NOT_MODIFIED;
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A weather forecast for a location, as parsed from the weather service.
+ * <p>
+ * The daily forecasts are stored in columns, one primitive array per value, rather than as one
+ * object per day; the descriptions and icon codes, of which there are only a handful of distinct
+ * values, are interned so that every day with the same weather shares the same string.  As a
+ * result a forecast occupies roughly the same, small, number of objects no matter how many days
+ * it covers.
+ * <p>
+ * All values are exactly as specified by the weather service in metric units: temperatures are
+ * in degrees Celsius, humidity is a percentage, pressure is in hectopascals, wind speed is in
+ * metres per second and wind direction is in degrees clockwise from north.  Values that the
+ * weather service did not specify are {@link Float#NaN} or, for strings, null.
+ * <p>
+ * Instances of this class are not thread-safe; however, an instance that is no longer modified
+ * after being safely published may be read concurrently.
+ */
+public final class ForecastBatch {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The descriptions and icon codes used by the weather service; values not in this map are
+     * stored as-is.
+     */
+    private static final Map<String, String> INTERNED_STRINGS = createInternedStrings(
+            "Clear", "Clouds", "Rain", "Drizzle", "Thunderstorm", "Snow", "Mist", "Smoke", "Haze",
+            "Dust", "Fog", "Sand", "Ash", "Squall", "Tornado", "Extreme", "Additional",
+            "01d", "01n", "02d", "02n", "03d", "03n", "04d", "04n", "09d", "09n", "10d", "10n",
+            "11d", "11n", "13d", "13n", "50d", "50n");
+
+    private String mLatitude;
+    private String mLongitude;
+    private int mSize;
+    private long[] mDateTimes;
+    private String[] mDescriptions;
+    private String[] mIconCodes;
+    private float[] mHighs;
+    private float[] mLows;
+    private float[] mHumidities;
+    private float[] mPressures;
+    private float[] mWindSpeeds;
+    private float[] mWindDirections;
+
+    public ForecastBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of days for which to initially allocate space; more space is
+     * allocated as needed.
+     */
+    public ForecastBatch(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        mDateTimes = new long[capacity];
+        mDescriptions = new String[capacity];
+        mIconCodes = new String[capacity];
+        mHighs = new float[capacity];
+        mLows = new float[capacity];
+        mHumidities = new float[capacity];
+        mPressures = new float[capacity];
+        mWindSpeeds = new float[capacity];
+        mWindDirections = new float[capacity];
+    }
+
+    /**
+     * Returns the latitude of the location, exactly as specified by the weather service.
+     * @return the latitude of the location; may be null if the weather service did not specify it.
+     */
+    public String getLatitude() {
+        return mLatitude;
+    }
+
+    /**
+     * Returns the longitude of the location, exactly as specified by the weather service.
+     * @return the longitude of the location; may be null if the weather service did not specify
+     * it.
+     */
+    public String getLongitude() {
+        return mLongitude;
+    }
+
+    public void setCoordinates(String latitude, String longitude) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+    }
+
+    /**
+     * Returns the number of daily forecasts in this batch.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds a daily forecast to the end of this batch.
+     * @param dateTime the date/time of the forecast, as a unix timestamp (in seconds).
+     * @param description a very short description of the weather for the day (e.g. "Clouds");
+     * must not be null.
+     * @param iconCode the code of the icon for the weather for the day (e.g. "10d"); may be null.
+     * @return the index of the added daily forecast.
+     */
+    public int add(long dateTime, String description, String iconCode, float high, float low,
+            float humidity, float pressure, float windSpeed, float windDirection) {
+        if (description == null) {
+            throw new NullPointerException("description==null");
+        }
+        if (mSize == mDateTimes.length) {
+            grow();
+        }
+        final int index = mSize;
+        mDateTimes[index] = dateTime;
+        mDescriptions[index] = intern(description);
+        mIconCodes[index] = (iconCode == null) ? null : intern(iconCode);
+        mHighs[index] = high;
+        mLows[index] = low;
+        mHumidities[index] = humidity;
+        mPressures[index] = pressure;
+        mWindSpeeds[index] = windSpeed;
+        mWindDirections[index] = windDirection;
+        mSize++;
+        return index;
+    }
+
+    /**
+     * Returns the date/time of the daily forecast with the given index, as a unix timestamp
+     * (in seconds).
+     */
+    public long getDateTime(int index) {
+        checkIndex(index);
+        return mDateTimes[index];
+    }
+
+    /**
+     * Returns the day of the daily forecast with the given index, as the number of days since
+     * 1970-01-01.
+     * @see EpochDays#fromUnixTime
+     */
+    public long getEpochDay(int index) {
+        checkIndex(index);
+        return EpochDays.fromUnixTime(mDateTimes[index]);
+    }
+
+    /**
+     * Returns the very short description of the weather of the daily forecast with the given
+     * index (e.g. "Clouds"); never returns null.
+     */
+    public String getDescription(int index) {
+        checkIndex(index);
+        return mDescriptions[index];
+    }
+
+    /**
+     * Returns the code of the icon for the weather of the daily forecast with the given index
+     * (e.g. "10d"), or null if it was not specified.
+     */
+    public String getIconCode(int index) {
+        checkIndex(index);
+        return mIconCodes[index];
+    }
+
+    /**
+     * Returns the high temperature of the daily forecast with the given index, in degrees Celsius.
+     */
+    public float getHigh(int index) {
+        checkIndex(index);
+        return mHighs[index];
+    }
+
+    /**
+     * Returns the low temperature of the daily forecast with the given index, in degrees Celsius.
+     */
+    public float getLow(int index) {
+        checkIndex(index);
+        return mLows[index];
+    }
+
+    /**
+     * Returns the humidity of the daily forecast with the given index, as a percentage, or
+     * {@link Float#NaN} if it was not specified.
+     */
+    public float getHumidity(int index) {
+        checkIndex(index);
+        return mHumidities[index];
+    }
+
+    /**
+     * Returns the barometric pressure of the daily forecast with the given index, in hectopascals,
+     * or {@link Float#NaN} if it was not specified.
+     */
+    public float getPressure(int index) {
+        checkIndex(index);
+        return mPressures[index];
+    }
+
+    /**
+     * Returns the wind speed of the daily forecast with the given index, in metres per second, or
+     * {@link Float#NaN} if it was not specified.
+     */
+    public float getWindSpeed(int index) {
+        checkIndex(index);
+        return mWindSpeeds[index];
+    }
+
+    /**
+     * Returns the wind direction of the daily forecast with the given index, in degrees clockwise
+     * from north, or {@link Float#NaN} if it was not specified.
+     */
+    public float getWindDirection(int index) {
+        checkIndex(index);
+        return mWindDirections[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+        }
+    }
+
+    private void grow() {
+        final int capacity = Math.max(DEFAULT_CAPACITY, mDateTimes.length * 2);
+        mDateTimes = Arrays.copyOf(mDateTimes, capacity);
+        mDescriptions = Arrays.copyOf(mDescriptions, capacity);
+        mIconCodes = Arrays.copyOf(mIconCodes, capacity);
+        mHighs = Arrays.copyOf(mHighs, capacity);
+        mLows = Arrays.copyOf(mLows, capacity);
+        mHumidities = Arrays.copyOf(mHumidities, capacity);
+        mPressures = Arrays.copyOf(mPressures, capacity);
+        mWindSpeeds = Arrays.copyOf(mWindSpeeds, capacity);
+        mWindDirections = Arrays.copyOf(mWindDirections, capacity);
+    }
+
+    private static String intern(String value) {
+        final String internedValue = INTERNED_STRINGS.get(value);
+        return (internedValue == null) ? value : internedValue;
+    }
+
+    private static Map<String, String> createInternedStrings(String... values) {
+        final HashMap<String, String> map = new HashMap<>();
+        for (final String value : values) {
+            map.put(value, value);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+}
@@ -0,0 +1,204 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Downloads forecasts from OpenWeatherMap.
+ * <p>
+ * Nothing is downloaded if the previously-downloaded forecast is still fresh; otherwise, the
+ * previously-downloaded forecast is revalidated with a conditional request so that it is only
+ * downloaded again if it has changed.
+ * <p>
+ * Connections are opened with {@link HttpTransport}, so that they are reused for subsequent
+ * downloads and the responses are compressed, and responses are decoded with {@link Utf8Reader}.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class ForecastDownloader {
+
+    public static final String DEFAULT_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily";
+
+    private final String mBaseUrl;
+
+    public ForecastDownloader() {
+        this(DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl the URL of the daily forecast endpoint, without a query string, such as
+     * {@link #DEFAULT_BASE_URL}; may be changed to download from a stand-in server.
+     */
+    public ForecastDownloader(String baseUrl) {
+        if (baseUrl == null) {
+            throw new NullPointerException("baseUrl==null");
+        }
+        mBaseUrl = baseUrl;
+    }
+
+    /**
+     * Assembles and returns the URL from which to download the forecast of the given city.
+     * @param cityId the ID of the city, as sent to OpenWeatherMap.
+     * @return the URL from which to download the forecast; never returns null.
+     */
+    public String getUrl(String cityId) {
+        final StringBuilder sb = new StringBuilder(mBaseUrl);
+        sb.append("?q=").append(encode(cityId));
+        sb.append("&mode=json");
+        sb.append("&units=metric");
+        sb.append("&cnt=7");
+        return sb.toString();
+    }
+
+    /**
+     * Downloads the forecast of the given city.
+     * <p>
+     * This method performs network I/O and blocks until the download completes.
+     * @param cityId the ID of the city, as sent to OpenWeatherMap.
+     * @param cacheInfo the information about the response from which the forecast was previously
+     * downloaded, used to avoid downloading it again; may be null.
+     * @return the result; never returns null.
+     */
+    public FetchResult download(String cityId, HttpCacheInfo cacheInfo) {
+        return download(cityId, cacheInfo, null);
+    }
+
+    /**
+     * Downloads the forecast of the given city, reporting the progress of the download to the
+     * given listener.
+     * <p>
+     * This method performs network I/O and blocks until the download completes.
+     * @param cityId the ID of the city, as sent to OpenWeatherMap.
+     * @param cacheInfo the information about the response from which the forecast was previously
+     * downloaded, used to avoid downloading it again; may be null.
+     * @param listener the listener to which to report the progress of downloading the response
+     * body, on the calling thread; may be null.
+     * @return the result; never returns null.
+     * @see #download(String, HttpCacheInfo)
+     */
+    public FetchResult download(String cityId, HttpCacheInfo cacheInfo,
+            DownloadProgressListener listener) {
+        return download(cityId, cacheInfo, listener, null);
+    }
+
+    /**
+     * Downloads the forecast of the given city, reporting the progress of the download to the
+     * given listener, and aborting the download if the given token is cancelled.
+     * <p>
+     * This method performs network I/O and blocks until the download completes or is aborted.
+     * @param cityId the ID of the city, as sent to OpenWeatherMap.
+     * @param cacheInfo the information about the response from which the forecast was previously
+     * downloaded, used to avoid downloading it again; may be null.
+     * @param listener the listener to which to report the progress of downloading the response
+     * body, on the calling thread; may be null.
+     * @param token the token whose cancellation aborts the download by disconnecting, which fails
+     * it with {@link FetchResult.Status#CONNECT_FAILED} or
+     * {@link FetchResult.Status#DOWNLOAD_FAILED}; may be null.
+     * @return the result; never returns null.
+     * @see #download(String, HttpCacheInfo, DownloadProgressListener)
+     */
+    public FetchResult download(String cityId, HttpCacheInfo cacheInfo,
+            DownloadProgressListener listener, CancellationToken token) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        }
+        if (cacheInfo != null && cacheInfo.isFresh(System.currentTimeMillis())) {
+            return FetchResult.fresh(cityId, cacheInfo);
+        }
+
+        final URL url;
+        try {
+            url = new URL(getUrl(cityId));
+        } catch (MalformedURLException e) {
+            return FetchResult.failed(cityId, FetchResult.Status.INVALID_URL, e.getMessage());
+        }
+
+        final HttpURLConnection con;
+        try {
+            con = HttpTransport.open(url);
+        } catch (IOException e) {
+            return FetchResult.failed(cityId, FetchResult.Status.CONNECT_FAILED, e.getMessage());
+        }
+
+        if (token == null) {
+            return downloadFrom(con, cityId, cacheInfo, listener);
+        }
+
+        // reads from the socket do not check the token, so abort them by disconnecting
+        final Runnable disconnect = new Runnable() {
+            @Override
+            public void run() {
+                con.disconnect();
+            }
+        };
+        token.addListener(disconnect);
+        try {
+            return downloadFrom(con, cityId, cacheInfo, listener);
+        } finally {
+            token.removeListener(disconnect);
+        }
+    }
+
+    private static FetchResult downloadFrom(HttpURLConnection con, String cityId,
+            HttpCacheInfo cacheInfo, DownloadProgressListener listener) {
+        if (cacheInfo != null) {
+            cacheInfo.addConditionalHeaders(con);
+        }
+
+        final int responseCode;
+        try {
+            responseCode = con.getResponseCode();
+        } catch (IOException e) {
+            con.disconnect();
+            return FetchResult.failed(cityId, FetchResult.Status.CONNECT_FAILED, e.getMessage());
+        }
+
+        final HttpCacheInfo newCacheInfo = HttpCacheInfo.fromResponse(con,
+                System.currentTimeMillis(), HttpCacheInfo.DEFAULT_TTL_MILLIS, cacheInfo);
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            HttpTransport.release(con);
+            return FetchResult.notModified(cityId, newCacheInfo);
+        }
+
+        final InputStream in;
+        try {
+            in = HttpTransport.getInputStream(con, listener);
+        } catch (IOException e) {
+            HttpTransport.release(con);
+            return FetchResult.failed(cityId, FetchResult.Status.CONNECT_FAILED, e.getMessage());
+        }
+
+        final ForecastBatch forecast;
+        try {
+            final Reader reader = new Utf8Reader(in);
+            try {
+                forecast = ForecastJsonParser.parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            con.disconnect();
+            return FetchResult.failed(cityId, FetchResult.Status.DOWNLOAD_FAILED, e.getMessage());
+        } catch (ForecastParseException e) {
+            return FetchResult.failed(cityId, FetchResult.Status.INVALID_DATA, e.getMessage());
+        }
+
+        return FetchResult.ok(cityId, forecast, newCacheInfo);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UTF-8 is not supported", e);
+        }
+    }
+
+}
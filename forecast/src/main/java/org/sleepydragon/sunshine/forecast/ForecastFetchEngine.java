@@ -0,0 +1,275 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the forecasts of many cities concurrently.
+ * <p>
+ * Downloads run on a pool of at most {@code maxConcurrency} threads, and at most
+ * {@code maxConcurrencyPerHost} of them connect to the same host at the same time.  Requesting
+ * the forecast of a city whose forecast is already being fetched does not start another
+ * download; instead, the requester shares the result of the download already in flight.
+ * <p>
+ * Instances of this class are thread-safe.  {@link #shutdown} must be invoked once an instance
+ * is no longer needed in order to stop its threads.
+ */
+public class ForecastFetchEngine {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ForecastDownloader mDownloader;
+    private final ForecastSink mSink;
+    private final int mMaxConcurrencyPerHost;
+    private final ThreadPoolExecutor mExecutor;
+    private final ConcurrentHashMap<String, Semaphore> mHostPermits;
+    private final ConcurrentHashMap<String, FetchTask> mInFlightTasks;
+
+    /**
+     * @param downloader the object to use to download the forecast of each city.
+     * @param sink the object to which to give the results of each {@link #fetchAll}; may be null.
+     * @param maxConcurrency the maximum number of downloads to run at the same time.
+     * @param maxConcurrencyPerHost the maximum number of downloads from the same host to run at
+     * the same time.
+     */
+    public ForecastFetchEngine(ForecastDownloader downloader, ForecastSink sink,
+            int maxConcurrency, int maxConcurrencyPerHost) {
+        if (downloader == null) {
+            throw new NullPointerException("downloader==null");
+        } else if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("invalid maxConcurrency: " + maxConcurrency);
+        } else if (maxConcurrencyPerHost < 1) {
+            throw new IllegalArgumentException("invalid maxConcurrencyPerHost: "
+                    + maxConcurrencyPerHost);
+        }
+        mDownloader = downloader;
+        mSink = sink;
+        mMaxConcurrencyPerHost = maxConcurrencyPerHost;
+        mExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new MyThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+        mHostPermits = new ConcurrentHashMap<>();
+        mInFlightTasks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts fetching the forecast of the given city, unless it is already being fetched.
+     * <p>
+     * The result is not given to the sink by this method; use {@link #fetchAll} for that.  If a
+     * {@link #fetchAll} of the same city joins the fetch while it is in flight, though, that
+     * invocation gives the result to the sink.
+     * @param cityId the ID of the city whose forecast to fetch, as sent to OpenWeatherMap.
+     * @param cacheInfo the information about the response from which the forecast was previously
+     * downloaded, used to avoid downloading it again; may be null.  It is ignored if the forecast
+     * is already being fetched.
+     * @return the future result of the fetch; never returns null.
+     */
+    public Future<FetchResult> fetch(String cityId, HttpCacheInfo cacheInfo) {
+        if (cityId == null) {
+            throw new NullPointerException("cityId==null");
+        }
+        return submit(new FetchTask(cityId, cacheInfo, false));
+    }
+
+    /**
+     * Fetches the forecasts of the given cities, waits for them all to complete, and then gives
+     * the results to the sink in one batch.
+     * <p>
+     * The results of fetches that were already in flight, having been started by another
+     * invocation of this method, are returned but are not given to the sink, since the
+     * invocation that started them gives them to the sink itself.  The results of fetches
+     * started by {@link #fetch}, which does not give them to the sink, are given to the sink by
+     * the first invocation of this method to join them.
+     * @param cities the cities whose forecasts to fetch, mapped to the information about the
+     * response from which each city's forecast was previously downloaded (or null).
+     * @return the results, in the iteration order of the given map; never returns null.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public List<FetchResult> fetchAll(Map<String, HttpCacheInfo> cities)
+            throws InterruptedException {
+        if (cities == null) {
+            throw new NullPointerException("cities==null");
+        }
+
+        final List<FetchTask> tasks = new ArrayList<>(cities.size());
+        // the tasks whose results this invocation gives to the sink
+        final Set<FetchTask> savedTasks = new HashSet<>();
+        for (final Map.Entry<String, HttpCacheInfo> entry : cities.entrySet()) {
+            final String cityId = entry.getKey();
+            if (cityId == null) {
+                throw new NullPointerException("cities contains a null city ID");
+            }
+            final FetchTask newTask = new FetchTask(cityId, entry.getValue(), true);
+            final FetchTask task = submit(newTask);
+            tasks.add(task);
+            if (task == newTask || task.claimSave()) {
+                savedTasks.add(task);
+            }
+        }
+
+        final List<FetchResult> results = new ArrayList<>(tasks.size());
+        final List<FetchResult> ownResults = new ArrayList<>(savedTasks.size());
+        for (final FetchTask task : tasks) {
+            final FetchResult result = task.getResult();
+            results.add(result);
+            if (savedTasks.contains(task)) {
+                ownResults.add(result);
+            }
+        }
+
+        if (mSink != null && !ownResults.isEmpty()) {
+            mSink.saveAll(ownResults);
+        }
+        return results;
+    }
+
+    /**
+     * Stops accepting new fetches, lets the fetches already submitted complete, and then stops
+     * the threads.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Starts the given task, unless a task for the same city is already in flight.
+     * @return the given task if it was started, or the task already in flight.
+     */
+    private FetchTask submit(FetchTask task) {
+        while (true) {
+            final FetchTask inFlightTask = mInFlightTasks.putIfAbsent(task.mCityId, task);
+            if (inFlightTask == null) {
+                break;
+            } else if (!inFlightTask.isDone()) {
+                return inFlightTask;
+            }
+            // the task has completed but has not yet removed itself from the map, which it does
+            // only after its waiters have been woken up; replace it rather than share its result
+            if (mInFlightTasks.replace(task.mCityId, inFlightTask, task)) {
+                break;
+            }
+        }
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mInFlightTasks.remove(task.mCityId, task);
+            throw e;
+        }
+        return task;
+    }
+
+    private FetchResult download(String cityId, HttpCacheInfo cacheInfo)
+            throws InterruptedException {
+        // don't tie up a connection permit for a forecast that doesn't need to be downloaded
+        if (cacheInfo != null && cacheInfo.isFresh(System.currentTimeMillis())) {
+            return FetchResult.fresh(cityId, cacheInfo);
+        }
+
+        final String host;
+        try {
+            host = new URL(mDownloader.getUrl(cityId)).getHost();
+        } catch (MalformedURLException e) {
+            return FetchResult.failed(cityId, FetchResult.Status.INVALID_URL, e.getMessage());
+        }
+
+        final Semaphore permits = getHostPermits(host);
+        permits.acquire();
+        try {
+            return mDownloader.download(cityId, cacheInfo);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Semaphore getHostPermits(String host) {
+        final Semaphore permits = mHostPermits.get(host);
+        if (permits != null) {
+            return permits;
+        }
+        final Semaphore newPermits = new Semaphore(mMaxConcurrencyPerHost);
+        final Semaphore existingPermits = mHostPermits.putIfAbsent(host, newPermits);
+        return (existingPermits == null) ? newPermits : existingPermits;
+    }
+
+    private class FetchTask extends FutureTask<FetchResult> {
+
+        public final String mCityId;
+
+        /**
+         * Whether some invocation of {@link #fetchAll} has taken on giving this task's result to
+         * the sink.
+         */
+        private final AtomicBoolean mSaveClaimed;
+
+        /**
+         * @param savedByStarter whether the invocation starting this task gives its result to
+         * the sink.
+         */
+        public FetchTask(final String cityId, final HttpCacheInfo cacheInfo,
+                boolean savedByStarter) {
+            super(new Callable<FetchResult>() {
+                @Override
+                public FetchResult call() throws InterruptedException {
+                    return download(cityId, cacheInfo);
+                }
+            });
+            mCityId = cityId;
+            mSaveClaimed = new AtomicBoolean(savedByStarter);
+        }
+
+        /**
+         * Takes on giving this task's result to the sink, unless another invocation already has.
+         * @return true if the caller must give the result to the sink.
+         */
+        public boolean claimSave() {
+            return mSaveClaimed.compareAndSet(false, true);
+        }
+
+        public FetchResult getResult() throws InterruptedException {
+            try {
+                return get();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                return FetchResult.failed(mCityId, FetchResult.Status.DOWNLOAD_FAILED,
+                        String.valueOf(cause));
+            }
+        }
+
+        @Override
+        protected void done() {
+            mInFlightTasks.remove(mCityId, this);
+        }
+    }
+
+    private static class MyThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final String name = "ForecastFetchEngine #" + mThreadCount.incrementAndGet();
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
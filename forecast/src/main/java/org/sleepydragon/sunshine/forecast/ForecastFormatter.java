@@ -0,0 +1,110 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.Locale;
+
+/**
+ * Formats forecasts for presentation to the user.
+ * <p>
+ * Forecasts are in metric units; temperatures are converted into the measurement units given to
+ * the constructor as they are formatted.
+ */
+public class ForecastFormatter {
+
+    private final MeasurementUnits mMeasurementUnits;
+    private final DayLabelFormatter mDayLabelFormatter;
+
+    public ForecastFormatter(MeasurementUnits measurementUnits) {
+        this(measurementUnits, DayLabelFormatter.getInstance());
+    }
+
+    public ForecastFormatter(MeasurementUnits measurementUnits,
+            DayLabelFormatter dayLabelFormatter) {
+        if (measurementUnits == null) {
+            throw new NullPointerException("measurementUnits==null");
+        } else if (dayLabelFormatter == null) {
+            throw new NullPointerException("dayLabelFormatter==null");
+        }
+        mMeasurementUnits = measurementUnits;
+        mDayLabelFormatter = dayLabelFormatter;
+    }
+
+    /**
+     * Returns the measurement units in which this object formats temperatures.
+     * @return the measurement units in which this object formats temperatures; never returns null.
+     */
+    public MeasurementUnits getMeasurementUnits() {
+        return mMeasurementUnits;
+    }
+
+    /**
+     * Returns the locale in which this object formats dates.
+     * @return the locale in which this object formats dates; never returns null.
+     */
+    public Locale getLocale() {
+        return mDayLabelFormatter.getLocale();
+    }
+
+    /**
+     * Formats a daily forecast as a single line of text, such as
+     * "Sat, Jul 19 - Clear - 25&deg;C/14&deg;C".
+     * @param epochDay the day of the forecast, as the number of days since 1970-01-01.
+     * @param description a very short description of the weather for the day.
+     * @param high the high temperature for the day, in degrees Celsius.
+     * @param low the low temperature for the day, in degrees Celsius.
+     */
+    public String formatDayForecast(long epochDay, String description, double high, double low) {
+        final String day = formatDate(epochDay);
+        final String highAndLow = formatHighLows(high, low);
+        return day + " - " + description + " - " + highAndLow;
+    }
+
+    /**
+     * Formats the daily forecast with the given index in the given batch using
+     * {@link #formatDayForecast(long, String, double, double)}.
+     */
+    public String formatDayForecast(ForecastBatch batch, int index) {
+        return formatDayForecast(batch.getEpochDay(index), batch.getDescription(index),
+                batch.getHigh(index), batch.getLow(index));
+    }
+
+    /**
+     * Formats each of the daily forecasts of the given batch using
+     * {@link #formatDayForecast(ForecastBatch, int)}.
+     */
+    public String[] formatForecast(ForecastBatch batch) {
+        final String[] resultStrs = new String[batch.size()];
+        for (int i = 0; i < resultStrs.length; i++) {
+            resultStrs[i] = formatDayForecast(batch, i);
+        }
+        return resultStrs;
+    }
+
+    /**
+     * Converts a day, as the number of days since 1970-01-01, into a human-readable date.
+     * @see EpochDays
+     */
+    public String formatDate(long epochDay) {
+        return mDayLabelFormatter.formatEpochDay(epochDay);
+    }
+
+    /**
+     * Prepare the weather high/lows for presentation.
+     * @param high the high temperature, in degrees Celsius.
+     * @param low the low temperature, in degrees Celsius.
+     */
+    public String formatHighLows(double high, double low) {
+        return formatTemperature(high) + "/" + formatTemperature(low);
+    }
+
+    /**
+     * Converts the given temperature into this object's measurement units and formats it.
+     * @param tempInCelsius the temperature, in degrees Celsius.
+     */
+    public String formatTemperature(double tempInCelsius) {
+        // Convert before rounding so that the rounding error is not amplified by the conversion.
+        // For presentation, assume the user doesn't care about tenths of a degree.
+        final long value = Math.round(mMeasurementUnits.fromCelsius(tempInCelsius));
+        return value + "\u00B0" + mMeasurementUnits.getTemperatureSymbol();
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.sleepydragon.sunshine.forecast;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parses the JSON-encoded daily forecast returned by the OpenWeatherMap API.
+ * <p>
+ * Two modes of parsing are supported: {@link #parse(Reader)} pulls the relevant values directly
+ * from a stream without ever holding the entire document in memory, and
+ * {@link #parse(String)} parses a fully-buffered document into a {@link JSONObject} tree and then
+ * extracts the values from it.  The former is preferred; the latter is retained as a fallback.
+ */
+public final class ForecastJsonParser {
+
+    private ForecastJsonParser() {
+    }
+
+    /**
+     * Parses a JSON-encoded forecast by pulling tokens from the given stream.
+     * <p>
+     * Only the values that are stored in the returned batch are materialized; all other values
+     * are skipped as they are encountered.
+     * @param in the stream from which to read the JSON-encoded forecast; must not be null.
+     * @return the forecast parsed from the given stream; never returns null.
+     * @throws IOException if reading from the given stream fails, including if the stream ends
+     * before the JSON document is complete.
+     * @throws ForecastParseException if the data read from the given stream is not a valid
+     * JSON-encoded forecast.
+     */
+    public static ForecastBatch parse(Reader in) throws IOException, ForecastParseException {
+        if (in == null) {
+            throw new NullPointerException("in==null");
+        }
+
+        final JsonReader reader = new JsonReader(in);
+        try {
+            return parseForecast(reader);
+        } catch (MalformedJsonException e) {
+            throw new ForecastParseException("malformed JSON: " + e.getMessage(), e);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new ForecastParseException("unexpected JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private static ForecastBatch parseForecast(JsonReader reader)
+            throws IOException, ForecastParseException {
+        String latitude = null;
+        String longitude = null;
+        ForecastBatch batch = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (name.equals("city") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("coord")
+                            && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            final String coordName = reader.nextName();
+                            if (coordName.equals("lat")) {
+                                latitude = reader.nextString();
+                            } else if (coordName.equals("lon")) {
+                                longitude = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("list")) {
+                batch = new ForecastBatch();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    parseDayForecast(reader, batch);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (batch == null) {
+            throw new ForecastParseException("no value for list");
+        }
+
+        batch.setCoordinates(latitude, longitude);
+        return batch;
+    }
+
+    private static void parseDayForecast(JsonReader reader, ForecastBatch batch)
+            throws IOException, ForecastParseException {
+        boolean dateTimeFound = false;
+        long dateTime = 0;
+        String description = null;
+        String iconCode = null;
+        float high = Float.NaN;
+        float low = Float.NaN;
+        float humidity = Float.NaN;
+        float pressure = Float.NaN;
+        float windSpeed = Float.NaN;
+        float windDirection = Float.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (name.equals("dt")) {
+                dateTime = reader.nextLong();
+                dateTimeFound = true;
+            } else if (name.equals("weather")) {
+                // description is in a child array called "weather"; only the first element is used
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        final String weatherName = reader.nextName();
+                        if (weatherName.equals("main")) {
+                            description = reader.nextString();
+                        } else if (weatherName.equals("icon")) {
+                            iconCode = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else if (name.equals("temp")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final String tempName = reader.nextName();
+                    if (tempName.equals("max")) {
+                        high = (float) reader.nextDouble();
+                    } else if (tempName.equals("min")) {
+                        low = (float) reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("humidity")) {
+                humidity = (float) reader.nextDouble();
+            } else if (name.equals("pressure")) {
+                pressure = (float) reader.nextDouble();
+            } else if (name.equals("speed")) {
+                windSpeed = (float) reader.nextDouble();
+            } else if (name.equals("deg")) {
+                windDirection = (float) reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!dateTimeFound) {
+            throw new ForecastParseException("no value for dt");
+        } else if (description == null) {
+            throw new ForecastParseException("no value for weather[0].main");
+        } else if (Float.isNaN(high)) {
+            throw new ForecastParseException("no value for temp.max");
+        } else if (Float.isNaN(low)) {
+            throw new ForecastParseException("no value for temp.min");
+        }
+
+        batch.add(dateTime, description, iconCode, high, low, humidity, pressure, windSpeed,
+                windDirection);
+    }
+
+    /**
+     * Parses a JSON-encoded forecast by first parsing it into a {@link JSONObject} tree.
+     * <p>
+     * This is the original parsing strategy, and is retained as a fallback in case the streaming
+     * parser implemented by {@link #parse(Reader)} encounters a problem.
+     * @param forecastJsonStr the JSON-encoded forecast; must not be null.
+     * @return the forecast parsed from the given string; never returns null.
+     * @throws ForecastParseException if the given string is not a valid JSON-encoded forecast.
+     */
+    public static ForecastBatch parse(String forecastJsonStr) throws ForecastParseException {
+        if (forecastJsonStr == null) {
+            throw new NullPointerException("forecastJsonStr==null");
+        }
+        try {
+            return parseForecast(forecastJsonStr);
+        } catch (JSONException e) {
+            throw new ForecastParseException(e.getMessage(), e);
+        }
+    }
+
+    private static ForecastBatch parseForecast(String forecastJsonStr) throws JSONException {
+        final JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        final JSONArray weatherArray = forecastJson.getJSONArray("list");
+
+        String latitude = null;
+        String longitude = null;
+        final JSONObject city = forecastJson.getJSONObject("city");
+        if (city != null) {
+            final JSONObject cityCoordinates = city.getJSONObject("coord");
+            if (cityCoordinates != null) {
+                latitude = cityCoordinates.get("lat").toString();
+                longitude = cityCoordinates.get("lon").toString();
+            }
+        }
+
+        final ForecastBatch batch = new ForecastBatch(weatherArray.length());
+        for(int i = 0; i < weatherArray.length(); i++) {
+            // Get the JSON object representing the day
+            final JSONObject dayForecast = weatherArray.getJSONObject(i);
+
+            // The date/time is returned as a long.
+            final long dateTime = dayForecast.getLong("dt");
+
+            // description is in a child array called "weather", which is 1 element long.
+            final JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            final String description = weatherObject.getString("main");
+            final String iconCode = weatherObject.has("icon")
+                    ? weatherObject.getString("icon") : null;
+
+            // Temperatures are in a child object called "temp".  Try not to name variables
+            // "temp" when working with temperature.  It confuses everybody.
+            final JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+            final double high = temperatureObject.getDouble("max");
+            final double low = temperatureObject.getDouble("min");
+
+            batch.add(dateTime, description, iconCode, (float) high, (float) low,
+                    optFloat(dayForecast, "humidity"),
+                    optFloat(dayForecast, "pressure"),
+                    optFloat(dayForecast, "speed"),
+                    optFloat(dayForecast, "deg"));
+        }
+
+        batch.setCoordinates(latitude, longitude);
+        return batch;
+    }
+
+    private static float optFloat(JSONObject object, String name) throws JSONException {
+        return object.has(name) ? (float) object.getDouble(name) : Float.NaN;
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * Exception thrown by {@link ForecastJsonParser} if the data being parsed is not a valid
+ * JSON-encoded forecast.
+ */
+public class ForecastParseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public ForecastParseException(String message) {
+        super(message);
+    }
+
+    public ForecastParseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
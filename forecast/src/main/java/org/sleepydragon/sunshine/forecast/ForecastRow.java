@@ -0,0 +1,127 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A row of the forecast list: the forecast of one day, and its text as displayed.
+ * <p>
+ * The text is formatted by {@link #getText} on first use and kept for as long as the same
+ * {@link ForecastFormatter} is used, that is, for as long as the measurement units and locale are
+ * the same; so once a row has been displayed, displaying it again, such as when the list is
+ * scrolled, performs no allocations.  {@link #merge} carries the rows, with their text, over from
+ * the previous contents of the list to the new contents, so that only the rows that changed are
+ * formatted again.
+ * <p>
+ * Instances of this class are not thread-safe; they are meant to be used on the main thread.
+ */
+public final class ForecastRow {
+
+    public final long id;
+    public final long epochDay;
+    public final String description;
+    public final double high;
+    public final double low;
+
+    private ForecastFormatter mTextFormatter;
+    private String mText;
+
+    /**
+     * @param id the ID of the row, which is unique within the list and stays the same when the
+     * forecast of the row is updated.
+     * @param epochDay the day of the forecast, as the number of days since 1970-01-01.
+     * @param description a very short description of the weather for the day; may be null.
+     * @param high the high temperature for the day, in degrees Celsius.
+     * @param low the low temperature for the day, in degrees Celsius.
+     */
+    public ForecastRow(long id, long epochDay, String description, double high, double low) {
+        this.id = id;
+        this.epochDay = epochDay;
+        this.description = description;
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Returns the text of this row, as formatted by the given formatter.
+     * @param formatter the formatter; must not be null.  The text is formatted again only if it
+     * is not the formatter with which it was last formatted.
+     * @return the text; never returns null.
+     */
+    public String getText(ForecastFormatter formatter) {
+        if (formatter == null) {
+            throw new NullPointerException("formatter==null");
+        }
+        if (formatter != mTextFormatter) {
+            mText = formatter.formatDayForecast(epochDay, (description == null) ? ""
+                    : description, high, low);
+            mTextFormatter = formatter;
+        }
+        return mText;
+    }
+
+    /**
+     * Returns whether the given row has the same ID and forecast as this row, in which case it is
+     * displayed the same.
+     */
+    public boolean hasSameContents(ForecastRow other) {
+        return id == other.id && epochDay == other.epochDay
+                && Double.compare(high, other.high) == 0 && Double.compare(low, other.low) == 0
+                && (description == null ? other.description == null
+                        : description.equals(other.description));
+    }
+
+    /**
+     * Merges the new contents of a list into its previous contents: each new row that has the
+     * same contents as the previous row with the same ID is replaced by that previous row, along
+     * with its formatted text.
+     * @param oldRows the previous contents of the list; must not be null.
+     * @param newRows the new contents of the list; must not be null.
+     * @return the given list of previous rows, if the new rows have the same contents in the same
+     * order, such that nothing needs to be displayed again; otherwise, a new list of the new rows,
+     * some of which may be previous rows.
+     */
+    public static List<ForecastRow> merge(List<ForecastRow> oldRows, List<ForecastRow> newRows) {
+        if (oldRows == null) {
+            throw new NullPointerException("oldRows==null");
+        } else if (newRows == null) {
+            throw new NullPointerException("newRows==null");
+        }
+
+        boolean changed = (oldRows.size() != newRows.size());
+        final List<ForecastRow> mergedRows = new ArrayList<>(newRows.size());
+        // the rows are usually in the same order, so look for each row at the same position
+        // first, and only index the previous rows by ID if one is not there
+        Map<Long, ForecastRow> oldRowsById = null;
+        for (int i = 0; i < newRows.size(); i++) {
+            final ForecastRow newRow = newRows.get(i);
+            ForecastRow oldRow = (i < oldRows.size()) ? oldRows.get(i) : null;
+            if (oldRow == null || oldRow.id != newRow.id) {
+                if (oldRowsById == null) {
+                    oldRowsById = new HashMap<>(oldRows.size());
+                    for (final ForecastRow row : oldRows) {
+                        oldRowsById.put(row.id, row);
+                    }
+                }
+                oldRow = oldRowsById.get(newRow.id);
+                changed = true;
+            }
+            if (oldRow != null && oldRow.hasSameContents(newRow)) {
+                mergedRows.add(oldRow);
+            } else {
+                mergedRows.add(newRow);
+                changed = true;
+            }
+        }
+        return changed ? mergedRows : oldRows;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastRow{id=" + id + ", epochDay=" + epochDay + ", description=" + description
+                + ", high=" + high + ", low=" + low + "}";
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.List;
+
+/**
+ * Receives the results of fetching the forecasts of many cities at once, such as to save them.
+ */
+public interface ForecastSink {
+
+    /**
+     * Saves the given results.
+     * <p>
+     * This method is invoked once per {@link ForecastFetchEngine#fetchAll} with all of its
+     * results, so that they can be saved in a single batch; it is invoked on the thread that
+     * invoked {@link ForecastFetchEngine#fetchAll}.  Implementations should ignore failed
+     * results and results whose status is {@link FetchResult.Status#FRESH}, for which there is
+     * nothing new to save.
+     * @param results the results to save; never null.
+     */
+    void saveAll(List<FetchResult> results);
+
+}
@@ -0,0 +1,140 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs the background syncs of the forecasts of all cities, as decided by a
+ * {@link SyncPolicy}, and determines when the next sync is due.
+ * <p>
+ * Each sync fetches the cities selected by {@link SyncPolicy#selectCities} with a
+ * {@link ForecastFetchEngine}, whose sink saves the results in one batch; if no city is selected
+ * then nothing is fetched.  The number of consecutive failed syncs, which determines the backoff,
+ * is passed in to and returned from each sync, so that the caller can persist it between syncs,
+ * which typically run in different processes.
+ * <p>
+ * Instances of this class are thread-safe, but syncs should not overlap.
+ */
+public class ForecastSyncer {
+
+    private final ForecastFetchEngine mEngine;
+    private final SyncPolicy mPolicy;
+    private final Clock mClock;
+
+    /**
+     * @param engine the engine with which to fetch the forecasts, whose sink saves them; must not
+     * be null.
+     * @param policy the policy that decides which cities to sync and when; must not be null.
+     * @param clock the clock by which to decide which forecasts are fresh and when the next sync
+     * is due; must not be null.
+     */
+    public ForecastSyncer(ForecastFetchEngine engine, SyncPolicy policy, Clock clock) {
+        if (engine == null) {
+            throw new NullPointerException("engine==null");
+        } else if (policy == null) {
+            throw new NullPointerException("policy==null");
+        } else if (clock == null) {
+            throw new NullPointerException("clock==null");
+        }
+        mEngine = engine;
+        mPolicy = policy;
+        mClock = clock;
+    }
+
+    /**
+     * Syncs the forecasts of the given cities that need refreshing.
+     * @param cities the cities to sync, mapped to the information about the response from which
+     * each city's forecast was previously downloaded (or null).
+     * @param consecutiveFailures the number of consecutive failed syncs before this one, as
+     * returned by the previous sync; 0 if there were none.
+     * @return the outcome of the sync; never returns null.
+     * @throws InterruptedException if the calling thread is interrupted while fetching.
+     */
+    public Outcome sync(Map<String, HttpCacheInfo> cities, int consecutiveFailures)
+            throws InterruptedException {
+        if (consecutiveFailures < 0) {
+            throw new IllegalArgumentException("invalid consecutiveFailures: "
+                    + consecutiveFailures);
+        }
+        final Map<String, HttpCacheInfo> selectedCities =
+                mPolicy.selectCities(cities, mClock.currentTimeMillis());
+        if (selectedCities.isEmpty()) {
+            return createOutcome(Collections.<FetchResult>emptyList(), 0);
+        }
+
+        final List<FetchResult> results = mEngine.fetchAll(selectedCities);
+        boolean retryable = false;
+        for (final FetchResult result : results) {
+            if (SyncPolicy.isRetryable(result.status)) {
+                retryable = true;
+                break;
+            }
+        }
+        return createOutcome(results, retryable ? consecutiveFailures + 1 : 0);
+    }
+
+    /**
+     * Returns the outcome of a sync that failed, such as because its results could not be saved,
+     * so that the next sync is retried with a backoff.
+     * @param consecutiveFailures the number of consecutive failed syncs before this one.
+     */
+    public Outcome failed(int consecutiveFailures) {
+        if (consecutiveFailures < 0) {
+            throw new IllegalArgumentException("invalid consecutiveFailures: "
+                    + consecutiveFailures);
+        }
+        return createOutcome(Collections.<FetchResult>emptyList(), consecutiveFailures + 1);
+    }
+
+    private Outcome createOutcome(List<FetchResult> results, int consecutiveFailures) {
+        final long nextSyncTimeMillis = mClock.currentTimeMillis()
+                + mPolicy.getDelayMillis(consecutiveFailures);
+        return new Outcome(results, consecutiveFailures, nextSyncTimeMillis);
+    }
+
+    /**
+     * The outcome of a sync.
+     * <p>
+     * Instances of this class are immutable.
+     */
+    public static final class Outcome {
+
+        /**
+         * The results of the cities that were fetched; empty if no city needed refreshing.
+         */
+        public final List<FetchResult> results;
+
+        /**
+         * The number of consecutive failed syncs, up to and including this one; 0 if this sync
+         * succeeded.  This is to be passed to the next sync.
+         */
+        public final int consecutiveFailures;
+
+        /**
+         * The time at which the next sync is due, in milliseconds since the epoch.
+         */
+        public final long nextSyncTimeMillis;
+
+        private Outcome(List<FetchResult> results, int consecutiveFailures,
+                long nextSyncTimeMillis) {
+            this.results = Collections.unmodifiableList(results);
+            this.consecutiveFailures = consecutiveFailures;
+            this.nextSyncTimeMillis = nextSyncTimeMillis;
+        }
+
+        /**
+         * Returns whether the sync was skipped because no city needed refreshing.
+         */
+        public boolean isSkipped() {
+            return results.isEmpty() && consecutiveFailures == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Outcome{results=" + results.size() + ", consecutiveFailures="
+                    + consecutiveFailures + ", nextSyncTimeMillis=" + nextSyncTimeMillis + "}";
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.net.HttpURLConnection;
+import java.util.Locale;
+
+/**
+ * The information required to decide whether a previously-downloaded forecast is still fresh
+ * and, if it is not, to revalidate it with a conditional HTTP request.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public final class HttpCacheInfo {
+
+    /**
+     * The time-to-live of a downloaded forecast if the server does not specify one.
+     */
+    public static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * The value of the ETag header of the response; null if the response had none.
+     */
+    public final String etag;
+
+    /**
+     * The value of the Last-Modified header of the response; null if the response had none.
+     */
+    public final String lastModified;
+
+    /**
+     * The time, in milliseconds since the epoch, at which the response was received.
+     */
+    public final long fetchTimeMillis;
+
+    /**
+     * The number of milliseconds after {@link #fetchTimeMillis} during which the downloaded
+     * forecast is considered to be fresh.
+     */
+    public final long ttlMillis;
+
+    public HttpCacheInfo(String etag, String lastModified, long fetchTimeMillis, long ttlMillis) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fetchTimeMillis = fetchTimeMillis;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Creates an instance from the headers of the given response.
+     * @param con the connection whose response to use; the response code must have already been
+     * retrieved.
+     * @param nowMillis the current time, in milliseconds since the epoch.
+     * @param defaultTtlMillis the time-to-live to use if the response does not specify a max-age.
+     * @param previous the information for the previous response, whose validators are used if the
+     * response does not specify its own, as is permitted for a "304 Not Modified" response;
+     * may be null.
+     * @return the new instance; never returns null.
+     */
+    public static HttpCacheInfo fromResponse(HttpURLConnection con, long nowMillis,
+            long defaultTtlMillis, HttpCacheInfo previous) {
+        String etag = con.getHeaderField("ETag");
+        String lastModified = con.getHeaderField("Last-Modified");
+        if (previous != null) {
+            if (etag == null) {
+                etag = previous.etag;
+            }
+            if (lastModified == null) {
+                lastModified = previous.lastModified;
+            }
+        }
+
+        final long maxAgeSeconds = parseMaxAge(con.getHeaderField("Cache-Control"));
+        final long ttlMillis = (maxAgeSeconds < 0) ? defaultTtlMillis : maxAgeSeconds * 1000;
+
+        return new HttpCacheInfo(etag, lastModified, nowMillis, ttlMillis);
+    }
+
+    /**
+     * Returns whether the downloaded forecast is fresh, meaning that it need not be downloaded
+     * again nor revalidated.
+     * @param nowMillis the current time, in milliseconds since the epoch.
+     */
+    public boolean isFresh(long nowMillis) {
+        final long ageMillis = nowMillis - fetchTimeMillis;
+        return ageMillis >= 0 && ageMillis < ttlMillis;
+    }
+
+    /**
+     * Adds the headers to the given connection that make its request conditional on the
+     * forecast having changed since it was downloaded.
+     * @param con the connection to which to add the headers; it must not yet be connected.
+     */
+    public void addConditionalHeaders(HttpURLConnection con) {
+        if (etag != null) {
+            con.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            con.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Returns the max-age directive of the given Cache-Control header value.
+     * @return the max-age, in seconds; 0 if caching is prohibited; or -1 if there is no max-age
+     * directive.
+     */
+    private static long parseMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        long maxAgeSeconds = -1;
+        for (final String directive : cacheControl.split(",")) {
+            final String trimmed = directive.trim().toLowerCase(Locale.US);
+            if (trimmed.equals("no-cache") || trimmed.equals("no-store")) {
+                return 0;
+            } else if (trimmed.startsWith("max-age=")) {
+                try {
+                    maxAgeSeconds = Math.max(0, Long.parseLong(trimmed.substring(8).trim()));
+                } catch (NumberFormatException e) {
+                    // ignore malformed max-age directives
+                }
+            }
+        }
+        return maxAgeSeconds;
+    }
+
+}
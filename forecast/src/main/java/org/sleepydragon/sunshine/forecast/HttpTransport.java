@@ -0,0 +1,144 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens HTTP connections and reads their responses in a way that allows the underlying
+ * connections to be reused and the responses to be compressed.
+ * <p>
+ * {@link HttpURLConnection} keeps a pool of persistent connections, but a connection is only
+ * returned to the pool once its response body has been read completely and closed;
+ * {@link HttpURLConnection#disconnect()} instead closes the connection, so that the next request
+ * to the same server must open a new one.  Connections opened by this class should therefore be
+ * finished by closing the stream returned from {@link #getInputStream} or by calling
+ * {@link #release}, and only disconnected if reading the response fails.  The size of the pool is
+ * limited by the system property {@code http.maxConnections}, which defaults to 5 connections
+ * per server.
+ * <p>
+ * Responses are requested with gzip compression.  Setting the Accept-Encoding header explicitly
+ * disables the transparent decompression performed by some implementations of
+ * {@link HttpURLConnection}, such as Android's, so compressed responses are always decompressed
+ * by {@link #getInputStream}.
+ */
+public final class HttpTransport {
+
+    /**
+     * The maximum number of bytes that {@link #release} will read to drain a response; larger
+     * responses are cheaper to abandon by closing the connection.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Opens a connection to the given URL that requests a compressed response.
+     * <p>
+     * This method does not perform any network I/O; the request is sent when the response is
+     * first requested, such as by {@link HttpURLConnection#getResponseCode()}.
+     * @param url the URL to which to open a connection; must be an HTTP or HTTPS URL.
+     * @return the connection; never returns null.
+     * @throws IOException if opening the connection fails.
+     */
+    public static HttpURLConnection open(URL url) throws IOException {
+        final HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestProperty("Accept-Encoding", "gzip");
+        return con;
+    }
+
+    /**
+     * Returns the body of the response of the given connection, decompressed if necessary.
+     * <p>
+     * Closing the returned stream after reading it completely returns the connection to the pool.
+     * @param con the connection whose response body to return, which must have been opened by
+     * {@link #open}.
+     * @return the response body; never returns null.
+     * @throws IOException if getting the response body fails, including if the response has an
+     * error status.
+     */
+    public static InputStream getInputStream(HttpURLConnection con) throws IOException {
+        return getInputStream(con, null);
+    }
+
+    /**
+     * Returns the body of the response of the given connection, decompressed if necessary, and
+     * reports the progress of reading it to the given listener.
+     * <p>
+     * Progress is measured in the bytes transferred, before decompression, so that it can be
+     * compared with the response's Content-Length; it is rate-limited by
+     * {@link ProgressInputStream}.
+     * @param con the connection whose response body to return, which must have been opened by
+     * {@link #open}.
+     * @param listener the listener to which to report progress; may be null.
+     * @return the response body; never returns null.
+     * @throws IOException if getting the response body fails, including if the response has an
+     * error status.
+     * @see #getInputStream(HttpURLConnection)
+     */
+    public static InputStream getInputStream(HttpURLConnection con,
+            DownloadProgressListener listener) throws IOException {
+        InputStream in = con.getInputStream();
+        if (listener != null) {
+            in = new ProgressInputStream(in, con.getContentLength(), listener);
+        }
+        if (!"gzip".equalsIgnoreCase(con.getContentEncoding())) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in, Utf8Reader.BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes with a connection whose response body, if any, will not be read, such as a
+     * response with the status "304 Not Modified" or an error status.
+     * <p>
+     * The unread response body is read and discarded so that the connection can be returned to
+     * the pool; if the response body is too large to be worth draining, or if draining it fails,
+     * then the connection is disconnected instead.
+     * @param con the connection to release.
+     */
+    public static void release(HttpURLConnection con) {
+        try {
+            InputStream in = con.getErrorStream();
+            if (in == null) {
+                in = con.getInputStream();
+            }
+            try {
+                if (!drain(in)) {
+                    con.disconnect();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Reads and discards the bytes of the given stream.
+     * @return true if the end of the stream was reached, or false if the stream had more than
+     * {@link #MAX_DRAIN_BYTES} bytes.
+     */
+    private static boolean drain(InputStream in) throws IOException {
+        final byte[] buf = new byte[1024];
+        int totalReadCount = 0;
+        while (totalReadCount <= MAX_DRAIN_BYTES) {
+            final int readCount = in.read(buf);
+            if (readCount < 0) {
+                return true;
+            }
+            totalReadCount += readCount;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * The measurement units in which to present forecasts to the user.
+ * <p>
+ * Forecasts are always downloaded and stored in metric units; they are only converted into the
+ * user's preferred units when they are presented, so that changing the preferred units does not
+ * require downloading the forecast again.
+ */
+public enum MeasurementUnits {
+    METRIC,
+    IMPERIAL,
+    ;
+
+    /**
+     * Converts the given temperature, in degrees Celsius, into these measurement units.
+     */
+    public double fromCelsius(double tempInCelsius) {
+        switch (this) {
+            case METRIC:
+                return tempInCelsius;
+            case IMPERIAL:
+                return (tempInCelsius * 9 / 5) + 32;
+            default:
+                throw new RuntimeException("unsupported measurement units: " + this);
+        }
+    }
+
+    /**
+     * Returns the symbol of the temperature scale of these measurement units, such as "C".
+     */
+    public String getTemperatureSymbol() {
+        switch (this) {
+            case METRIC:
+                return "C";
+            case IMPERIAL:
+                return "F";
+            default:
+                throw new RuntimeException("unsupported measurement units: " + this);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream that counts the bytes read from another stream and reports the count to a
+ * {@link DownloadProgressListener}.
+ * <p>
+ * To avoid flooding the listener, and whatever thread it forwards the reports to, progress is only
+ * reported once both a minimum number of bytes have been read and a minimum time has elapsed since
+ * the previous report; the clock is only consulted once the byte threshold is reached.  The final
+ * count is always reported when the end of the stream is reached or the stream is closed.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public final class ProgressInputStream extends FilterInputStream {
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 100;
+    public static final long DEFAULT_MIN_BYTES = 4096;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final DownloadProgressListener mListener;
+    private final long mContentLength;
+    private final long mMinIntervalNanos;
+    private final long mMinBytes;
+
+    private long mByteCount;
+    private long mReportedByteCount;
+    private long mLastReportNanos;
+    private boolean mFinalReported;
+
+    /**
+     * Creates an instance that reports progress at most every
+     * {@value #DEFAULT_MIN_INTERVAL_MILLIS} milliseconds and {@value #DEFAULT_MIN_BYTES} bytes.
+     * @see #ProgressInputStream(InputStream, long, DownloadProgressListener, long, long)
+     */
+    public ProgressInputStream(InputStream in, long contentLength,
+            DownloadProgressListener listener) {
+        this(in, contentLength, listener, DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_MIN_BYTES);
+    }
+
+    /**
+     * @param in the stream whose bytes to count; must not be null.
+     * @param contentLength the total number of bytes that will be read, or -1 if unknown.
+     * @param listener the listener to which to report progress; must not be null.
+     * @param minIntervalMillis the minimum number of milliseconds between reports.
+     * @param minBytes the minimum number of bytes to read between reports.
+     */
+    public ProgressInputStream(InputStream in, long contentLength,
+            DownloadProgressListener listener, long minIntervalMillis, long minBytes) {
+        super(in);
+        if (in == null) {
+            throw new NullPointerException("in==null");
+        } else if (listener == null) {
+            throw new NullPointerException("listener==null");
+        } else if (minIntervalMillis < 0) {
+            throw new IllegalArgumentException("invalid minIntervalMillis: " + minIntervalMillis);
+        } else if (minBytes < 1) {
+            throw new IllegalArgumentException("invalid minBytes: " + minBytes);
+        }
+        mListener = listener;
+        mContentLength = contentLength;
+        mMinIntervalNanos = minIntervalMillis * NANOS_PER_MILLI;
+        mMinBytes = minBytes;
+        // allow the first report as soon as the byte threshold is reached
+        mLastReportNanos = System.nanoTime() - mMinIntervalNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        onRead((b < 0) ? -1 : 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int count) throws IOException {
+        final int readCount = super.read(buf, offset, count);
+        onRead(readCount);
+        return readCount;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        final long skipCount = super.skip(count);
+        if (skipCount > 0) {
+            mByteCount += skipCount;
+        }
+        return skipCount;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // re-reading bytes would count them twice
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            reportFinal();
+        }
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     */
+    public long getByteCount() {
+        return mByteCount;
+    }
+
+    private void onRead(int readCount) {
+        if (readCount < 0) {
+            reportFinal();
+            return;
+        }
+        mByteCount += readCount;
+        if (mByteCount - mReportedByteCount >= mMinBytes) {
+            final long nowNanos = System.nanoTime();
+            if (nowNanos - mLastReportNanos >= mMinIntervalNanos) {
+                mLastReportNanos = nowNanos;
+                report();
+            }
+        }
+    }
+
+    private void reportFinal() {
+        if (!mFinalReported) {
+            mFinalReported = true;
+            if (mByteCount != mReportedByteCount || mByteCount == 0) {
+                report();
+            }
+        }
+    }
+
+    private void report() {
+        mReportedByteCount = mByteCount;
+        final float fractionComplete;
+        if (mContentLength < 0) {
+            fractionComplete = Float.NaN;
+        } else if (mContentLength == 0 || mByteCount >= mContentLength) {
+            fractionComplete = 1.0f;
+        } else {
+            fractionComplete = (float) mByteCount / mContentLength;
+        }
+        mListener.onDownloadProgress(mByteCount, fractionComplete);
+    }
+
+}
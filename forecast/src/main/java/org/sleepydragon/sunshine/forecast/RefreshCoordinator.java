@@ -0,0 +1,181 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * Coordinates the refreshes of a forecast, so that a burst of requests, such as from a series of
+ * preference changes, starts a single refresh for the final parameters.
+ * <p>
+ * Each request made with {@link #request} is debounced: the refresh is only started once no
+ * further request has been made for the debounce delay, with the parameters of the last request.
+ * When a refresh is to be started, if a refresh with equal parameters is still in flight then it
+ * is reused rather than restarted; otherwise the refresh in flight, if any, is cancelled first.
+ * <p>
+ * Instances of this class are not thread-safe: they must only be used on a single thread, such
+ * as the main thread, on which the {@link Timer} must also run its tasks.
+ * @param <P> the type of the parameters of a refresh, such as the location; they are compared
+ * with {@link Object#equals}.
+ */
+public class RefreshCoordinator<P> {
+
+    private final Timer mTimer;
+    private final Refresher<P> mRefresher;
+    private final long mDebounceMillis;
+    private final Runnable mFlushRunnable;
+
+    private P mPendingParams;
+    private boolean mPending;
+    private P mInFlightParams;
+    private boolean mInFlight;
+
+    /**
+     * @param timer the timer with which to delay the debounced refreshes; must not be null.
+     * @param refresher the object that starts and cancels the refreshes; must not be null.
+     * @param debounceMillis the time for which no further request must be made before a
+     * debounced refresh is started; must not be negative.
+     */
+    public RefreshCoordinator(Timer timer, Refresher<P> refresher, long debounceMillis) {
+        if (timer == null) {
+            throw new NullPointerException("timer==null");
+        } else if (refresher == null) {
+            throw new NullPointerException("refresher==null");
+        } else if (debounceMillis < 0) {
+            throw new IllegalArgumentException("invalid debounceMillis: " + debounceMillis);
+        }
+        mTimer = timer;
+        mRefresher = refresher;
+        mDebounceMillis = debounceMillis;
+        mFlushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Requests a refresh with the given parameters once the debounce delay has passed without
+     * another request, replacing the parameters of any request still waiting.
+     */
+    public void request(P params) {
+        mTimer.cancel(mFlushRunnable);
+        mPendingParams = params;
+        mPending = true;
+        mTimer.schedule(mFlushRunnable, mDebounceMillis);
+    }
+
+    /**
+     * Requests a refresh with the given parameters immediately, such as when the user explicitly
+     * asks for one, replacing the parameters of any request still waiting.
+     */
+    public void requestNow(P params) {
+        mTimer.cancel(mFlushRunnable);
+        mPendingParams = params;
+        mPending = true;
+        flush();
+    }
+
+    /**
+     * Starts the refresh of the request still waiting, if any, unless a refresh with the same
+     * parameters is already in flight.
+     */
+    private void flush() {
+        if (!mPending) {
+            return;
+        }
+        final P params = mPendingParams;
+        mPending = false;
+        mPendingParams = null;
+        if (mInFlight) {
+            if (equal(mInFlightParams, params)) {
+                return;
+            }
+            final P inFlightParams = mInFlightParams;
+            mInFlight = false;
+            mInFlightParams = null;
+            mRefresher.cancelRefresh(inFlightParams);
+        }
+        mInFlight = true;
+        mInFlightParams = params;
+        mRefresher.startRefresh(params);
+    }
+
+    /**
+     * Notifies this object that the refresh with the given parameters has finished, so that a
+     * later request with the same parameters starts a new refresh; does nothing if no refresh
+     * with equal parameters is in flight, such as if it was cancelled.
+     */
+    public void onRefreshFinished(P params) {
+        if (mInFlight && equal(mInFlightParams, params)) {
+            mInFlight = false;
+            mInFlightParams = null;
+        }
+    }
+
+    /**
+     * Discards the request still waiting, if any, and cancels the refresh in flight, if any.
+     */
+    public void cancel() {
+        mTimer.cancel(mFlushRunnable);
+        mPending = false;
+        mPendingParams = null;
+        if (mInFlight) {
+            final P inFlightParams = mInFlightParams;
+            mInFlight = false;
+            mInFlightParams = null;
+            mRefresher.cancelRefresh(inFlightParams);
+        }
+    }
+
+    /**
+     * Returns whether a request is waiting for the debounce delay to pass.
+     */
+    public boolean isPending() {
+        return mPending;
+    }
+
+    /**
+     * Returns whether a refresh is in flight.
+     */
+    public boolean isInFlight() {
+        return mInFlight;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+
+    /**
+     * Runs tasks after a delay, such as with {@code android.os.Handler}.
+     */
+    public interface Timer {
+
+        /**
+         * Runs the given task once the given delay has passed.
+         */
+        void schedule(Runnable task, long delayMillis);
+
+        /**
+         * Cancels the given task if it has been scheduled and not yet run.
+         */
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Starts and cancels refreshes on behalf of a {@link RefreshCoordinator}.
+     * @param <P> the type of the parameters of a refresh.
+     */
+    public interface Refresher<P> {
+
+        /**
+         * Starts a refresh with the given parameters.  When the refresh finishes, other than by
+         * being cancelled, {@link RefreshCoordinator#onRefreshFinished} must be invoked.
+         */
+        void startRefresh(P params);
+
+        /**
+         * Cancels the refresh with the given parameters, which was started by
+         * {@link #startRefresh} and has not yet finished.
+         */
+        void cancelRefresh(P params);
+    }
+
+}
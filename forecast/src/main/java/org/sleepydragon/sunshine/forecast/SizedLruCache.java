@@ -0,0 +1,229 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache that holds values up to a maximum total size, evicting the least-recently-used values
+ * once the total size exceeds the maximum, and that counts its hits, misses and evictions so that
+ * its effectiveness can be monitored.
+ * <p>
+ * The size of each value is determined by {@link #sizeOf}, which subclasses override to size the
+ * values in whatever unit suits them, such as an estimate of the bytes of memory that they use.
+ * <p>
+ * Values are removed by {@link #removeAll} when the data from which they were computed changes.
+ * A value computed by another thread, from the data as it was before such a change, could then be
+ * added just after the removal and would never be removed; so {@link #put} only adds a value if
+ * nothing has been removed since the caller obtained the {@link #getGeneration generation}, which
+ * it must do before reading the data from which it computes the value.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class SizedLruCache<K, V> {
+
+    /**
+     * Selects entries of a {@link SizedLruCache}.
+     */
+    public interface Filter<K, V> {
+        boolean matches(K key, V value);
+    }
+
+    // in access order, so that the iterator returns the least-recently-used entry first
+    private final LinkedHashMap<K, V> mMap = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSize;
+
+    private long mSize;
+    private long mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    /**
+     * @param maxSize the maximum total size of the values, in the unit of {@link #sizeOf}; must be
+     * greater than zero.
+     */
+    public SizedLruCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid maxSize: " + maxSize);
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the size of the given value.  The default implementation returns 1, so that the
+     * maximum size is a number of entries.
+     */
+    protected long sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Returns the value of the given key, and makes it the most-recently-used value.
+     * @return the value, or null if the cache does not contain the given key.
+     */
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key==null");
+        }
+        final V value = mMap.get(key);
+        if (value == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Returns a value of an entry that matches the given filter, such as a value that contains
+     * the requested data although it is not stored under the requested key, and makes it the
+     * most-recently-used value.
+     * <p>
+     * The filter is invoked for each entry, from the least-recently-used, while holding this
+     * cache's lock, so it must be quick.
+     * @return the value, or null if no entry matches the given filter.
+     */
+    public synchronized V find(Filter<? super K, ? super V> filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter==null");
+        }
+        for (final Map.Entry<K, V> entry : mMap.entrySet()) {
+            if (filter.matches(entry.getKey(), entry.getValue())) {
+                mHitCount++;
+                // moves the entry to the most-recently-used end
+                return mMap.get(entry.getKey());
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Adds the given value, replacing any value of the same key, and evicts the
+     * least-recently-used values if the maximum total size is exceeded.
+     * @param generation the value of {@link #getGeneration} obtained before reading the data from
+     * which the value was computed.
+     * @return true if the value was added, or false if it was not because values have since been
+     * removed or because it is larger than the maximum total size.
+     */
+    public synchronized boolean put(K key, V value, long generation) {
+        if (key == null) {
+            throw new NullPointerException("key==null");
+        } else if (value == null) {
+            throw new NullPointerException("value==null");
+        }
+        if (generation != mGeneration) {
+            return false;
+        }
+        final long size = sizeOf(key, value);
+        if (size > mMaxSize) {
+            return false;
+        }
+        final V oldValue = mMap.put(key, value);
+        if (oldValue != null) {
+            mSize -= sizeOf(key, oldValue);
+        }
+        mSize += size;
+
+        final Iterator<Map.Entry<K, V>> it = mMap.entrySet().iterator();
+        while (mSize > mMaxSize) {
+            final Map.Entry<K, V> entry = it.next();
+            mSize -= sizeOf(entry.getKey(), entry.getValue());
+            it.remove();
+            mEvictionCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of times that values have been removed by {@link #removeAll} or
+     * {@link #clear}, to be passed to {@link #put}.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Removes the entries that match the given filter, such as those computed from data that has
+     * changed, and prevents values computed before the removal from being added by {@link #put}.
+     * <p>
+     * The filter is invoked for each entry while holding this cache's lock, so it must be quick.
+     * @return the number of entries removed.
+     */
+    public synchronized int removeAll(Filter<? super K, ? super V> filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter==null");
+        }
+        mGeneration++;
+        int removeCount = 0;
+        final Iterator<Map.Entry<K, V>> it = mMap.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<K, V> entry = it.next();
+            if (filter.matches(entry.getKey(), entry.getValue())) {
+                mSize -= sizeOf(entry.getKey(), entry.getValue());
+                it.remove();
+                removeCount++;
+            }
+        }
+        return removeCount;
+    }
+
+    /**
+     * Removes all entries, and prevents values computed before the removal from being added by
+     * {@link #put}.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        mMap.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return mMap.size();
+    }
+
+    /**
+     * Returns the total size of the values, in the unit of {@link #sizeOf}.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of lookups, by {@link #get} or {@link #find}, that found a value.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of lookups, by {@link #get} or {@link #find}, that did not find a value.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of values evicted to keep the total size within the maximum; values
+     * removed by {@link #removeAll} or {@link #clear} are not counted.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SizedLruCache{size=" + mSize + "/" + mMaxSize + ", entries=" + mMap.size()
+                + ", hits=" + mHitCount + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount + "}";
+    }
+
+}
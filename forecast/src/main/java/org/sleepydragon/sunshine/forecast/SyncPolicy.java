@@ -0,0 +1,158 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Decides when the forecasts of all cities are next synced in the background, and which cities
+ * each sync refreshes.
+ * <p>
+ * Syncs normally occur once per interval.  If a sync fails for a reason that may be temporary,
+ * such as no network connection, then the next sync is retried after a backoff that doubles with
+ * each consecutive failure, from the minimum backoff up to the maximum backoff.  Every delay is
+ * lengthened by a random jitter of up to the jitter fraction of the delay, so that devices that
+ * were scheduled at the same moment, such as when a network outage ends, do not all sync at the
+ * same moment.
+ * <p>
+ * Each sync refreshes the cities whose forecasts are no longer fresh, and also those that would
+ * no longer be fresh by the next sync, so that the cities' forecasts expire at different times
+ * but are refreshed together, with a single wake-up of the radio, rather than each in its own
+ * sync.  If no city needs refreshing then the sync is skipped without using the network.
+ * <p>
+ * Instances of this class are immutable and thread-safe.
+ */
+public final class SyncPolicy {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 3 * 60 * 60 * 1000;
+    public static final long DEFAULT_MIN_BACKOFF_MILLIS = 5 * 60 * 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = DEFAULT_INTERVAL_MILLIS;
+    public static final double DEFAULT_JITTER_FRACTION = 0.25;
+
+    private final long mIntervalMillis;
+    private final long mMinBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final double mJitterFraction;
+    private final Random mRandom;
+
+    /**
+     * Creates an instance with the default interval, backoffs and jitter.
+     */
+    public SyncPolicy() {
+        this(DEFAULT_INTERVAL_MILLIS, DEFAULT_MIN_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS,
+                DEFAULT_JITTER_FRACTION, new Random());
+    }
+
+    /**
+     * @param intervalMillis the delay between successful syncs, before jitter; must be positive.
+     * @param minBackoffMillis the delay after the first of consecutive failed syncs, before
+     * jitter; must be positive.
+     * @param maxBackoffMillis the maximum delay after a failed sync, before jitter; must not be
+     * less than the minimum backoff.
+     * @param jitterFraction the maximum jitter, as a fraction of the delay, from 0 to 1.
+     * @param random the source of the jitter, which tests may seed; must not be null.
+     */
+    public SyncPolicy(long intervalMillis, long minBackoffMillis, long maxBackoffMillis,
+            double jitterFraction, Random random) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("invalid intervalMillis: " + intervalMillis);
+        } else if (minBackoffMillis <= 0) {
+            throw new IllegalArgumentException("invalid minBackoffMillis: " + minBackoffMillis);
+        } else if (maxBackoffMillis < minBackoffMillis) {
+            throw new IllegalArgumentException("invalid maxBackoffMillis: " + maxBackoffMillis);
+        } else if (!(jitterFraction >= 0 && jitterFraction <= 1)) {
+            throw new IllegalArgumentException("invalid jitterFraction: " + jitterFraction);
+        } else if (random == null) {
+            throw new NullPointerException("random==null");
+        }
+        mIntervalMillis = intervalMillis;
+        mMinBackoffMillis = minBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mJitterFraction = jitterFraction;
+        mRandom = random;
+    }
+
+    public long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    /**
+     * Returns the delay until the next sync, before jitter.
+     * @param consecutiveFailures the number of consecutive syncs, up to and including the last
+     * one, that failed for a reason that may be temporary; 0 if the last sync succeeded.
+     */
+    public long getBaseDelayMillis(int consecutiveFailures) {
+        if (consecutiveFailures < 0) {
+            throw new IllegalArgumentException("invalid consecutiveFailures: "
+                    + consecutiveFailures);
+        } else if (consecutiveFailures == 0) {
+            return mIntervalMillis;
+        }
+        final int doublings = consecutiveFailures - 1;
+        if (doublings >= Long.numberOfLeadingZeros(mMinBackoffMillis) - 1) {
+            // doubling that many times would overflow, let alone exceed the maximum
+            return mMaxBackoffMillis;
+        }
+        return Math.min(mMinBackoffMillis << doublings, mMaxBackoffMillis);
+    }
+
+    /**
+     * Returns the delay until the next sync, including a random jitter.
+     * @see #getBaseDelayMillis
+     */
+    public long getDelayMillis(int consecutiveFailures) {
+        final long baseDelayMillis = getBaseDelayMillis(consecutiveFailures);
+        return baseDelayMillis + (long) (baseDelayMillis * mJitterFraction * mRandom.nextDouble());
+    }
+
+    /**
+     * Selects the cities that a sync at the given time refreshes: those whose forecasts have
+     * never been downloaded, or will no longer be fresh by the time of the next sync.
+     * <p>
+     * The information of each selected city is replaced by information that is no longer fresh,
+     * with the same validators, so that {@link ForecastFetchEngine#fetchAll} revalidates the
+     * city's forecast with a conditional request rather than skipping it as still fresh.
+     * @param cities the cities, mapped to the information about the response from which each
+     * city's forecast was previously downloaded (or null).
+     * @param nowMillis the current time, in milliseconds since the epoch.
+     * @return the selected cities, in the iteration order of the given map, to be passed to
+     * {@link ForecastFetchEngine#fetchAll}; empty if no city needs refreshing, in which case the
+     * sync can be skipped.
+     */
+    public Map<String, HttpCacheInfo> selectCities(Map<String, HttpCacheInfo> cities,
+            long nowMillis) {
+        if (cities == null) {
+            throw new NullPointerException("cities==null");
+        }
+        final long nextSyncMillis = nowMillis + mIntervalMillis;
+        Map<String, HttpCacheInfo> selected = null;
+        for (final Map.Entry<String, HttpCacheInfo> entry : cities.entrySet()) {
+            final HttpCacheInfo cacheInfo = entry.getValue();
+            if (cacheInfo != null && cacheInfo.isFresh(nowMillis)
+                    && cacheInfo.isFresh(nextSyncMillis)) {
+                continue;
+            }
+            if (selected == null) {
+                selected = new LinkedHashMap<>();
+            }
+            selected.put(entry.getKey(), (cacheInfo == null) ? null : new HttpCacheInfo(
+                    cacheInfo.etag, cacheInfo.lastModified, cacheInfo.fetchTimeMillis, 0));
+        }
+        if (selected == null) {
+            return Collections.emptyMap();
+        }
+        return selected;
+    }
+
+    /**
+     * Returns whether a fetch that failed with the given status may succeed if retried later, in
+     * which case the sync is retried with a backoff; other failures, such as invalid data, are
+     * not expected to be resolved by retrying sooner than the next regular sync.
+     */
+    public static boolean isRetryable(FetchResult.Status status) {
+        return status == FetchResult.Status.CONNECT_FAILED
+                || status == FetchResult.Status.DOWNLOAD_FAILED;
+    }
+
+}
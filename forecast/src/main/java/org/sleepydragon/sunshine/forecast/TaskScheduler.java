@@ -0,0 +1,146 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs background work on a small set of thread pools, or "lanes", each dedicated to one kind of
+ * work so that work of one kind never waits behind work of another.
+ * <p>
+ * A single instance is meant to be shared by the whole app, so that components do not each
+ * create their own threads.  Each task is submitted with a {@link CancellationToken}; a task whose
+ * token is cancelled before the task starts is skipped, and a running task is expected to check
+ * the token between units of work.  Work made up of several steps, such as downloading and saving
+ * a forecast, submits each step to the appropriate lane with the same token, so that
+ * cancelling the token stops the work at whichever step it has reached.
+ * <p>
+ * Idle threads time out, so an idle scheduler holds no threads.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public final class TaskScheduler {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * The kinds of background work, each of which runs on its own pool of threads.
+     */
+    public enum Lane {
+
+        /**
+         * Network and file I/O, which spends most of its time blocked and so is given several
+         * threads.
+         */
+        IO,
+
+        /**
+         * Database queries and writes, which are run one at a time since SQLite serializes writes
+         * anyway and concurrent transactions would only contend for its lock.
+         */
+        DB,
+    }
+
+    private final ThreadPoolExecutor[] mExecutors;
+
+    /**
+     * @param ioThreads the number of threads in the {@link Lane#IO} lane.
+     */
+    public TaskScheduler(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("invalid ioThreads: " + ioThreads);
+        }
+        mExecutors = new ThreadPoolExecutor[Lane.values().length];
+        mExecutors[Lane.IO.ordinal()] = createExecutor("IO", ioThreads);
+        mExecutors[Lane.DB.ordinal()] = createExecutor("DB", 1);
+    }
+
+    private static ThreadPoolExecutor createExecutor(String laneName, int numThreads) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new MyThreadFactory(laneName));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs the given task on the given lane, unless the given token is cancelled before the task
+     * starts.
+     * <p>
+     * Unlike {@link java.util.concurrent.ExecutorService#submit}, an exception thrown by the task
+     * is not only captured by the returned future, which the caller may never check, but is also
+     * reported to the uncaught exception handler of the thread that ran the task, just as if the
+     * task had been run by {@link Executor#execute}.
+     * @param lane the lane on which to run the task; must not be null.
+     * @param token the token whose cancellation skips the task; must not be null.
+     * @param task the task to run; must not be null.
+     * @return a future that completes when the task completes or is skipped; never returns null.
+     */
+    public Future<?> submit(Lane lane, final CancellationToken token, final Runnable task) {
+        if (lane == null) {
+            throw new NullPointerException("lane==null");
+        } else if (token == null) {
+            throw new NullPointerException("token==null");
+        } else if (task == null) {
+            throw new NullPointerException("task==null");
+        }
+        final FutureTask<Void> future = new ReportingFutureTask(new Runnable() {
+            @Override
+            public void run() {
+                if (!token.isCancelled()) {
+                    task.run();
+                }
+            }
+        });
+        mExecutors[lane.ordinal()].execute(future);
+        return future;
+    }
+
+    /**
+     * Stops accepting tasks; tasks already submitted still run.
+     */
+    public void shutdown() {
+        for (final ThreadPoolExecutor executor : mExecutors) {
+            executor.shutdown();
+        }
+    }
+
+    private static class ReportingFutureTask extends FutureTask<Void> {
+
+        public ReportingFutureTask(Runnable runnable) {
+            super(runnable, null);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    private static class MyThreadFactory implements ThreadFactory {
+
+        private final String mLaneName;
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        public MyThreadFactory(String laneName) {
+            mLaneName = laneName;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final String name = "TaskScheduler " + mLaneName + " #"
+                    + mThreadCount.incrementAndGet();
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
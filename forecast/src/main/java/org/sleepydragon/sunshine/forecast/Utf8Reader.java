@@ -0,0 +1,237 @@
+package org.sleepydragon.sunshine.forecast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A reader that decodes UTF-8 bytes read from a stream.
+ * <p>
+ * Unlike {@link java.io.InputStreamReader}, which decodes into an internal character buffer from
+ * which the caller's buffer is then filled, this class decodes straight from its byte buffer into
+ * the caller's character buffer, such as that of the JSON parser; and the byte buffer itself is
+ * taken from a pool when the reader is created and returned to the pool when it is closed, so
+ * that downloading a forecast allocates no buffers once the pool is warm.
+ * <p>
+ * Malformed input is decoded as U+FFFD, as {@link java.io.InputStreamReader} does.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public final class Utf8Reader extends Reader {
+
+    public static final int BUFFER_SIZE = 8192;
+
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private static final char REPLACEMENT_CHAR = '\ufffd';
+    private static final int MALFORMED = -1;
+    private static final int UNMAPPABLE = -2;
+
+    private static final Queue<byte[]> sBufferPool = new ConcurrentLinkedQueue<>();
+
+    private final InputStream mIn;
+    private byte[] mBuf;
+    private int mPos;
+    private int mLimit;
+
+    /**
+     * The low surrogate of a supplementary character whose high surrogate was the last character
+     * returned by the previous read, or -1 if there is no such character.
+     */
+    private int mPendingLowSurrogate;
+
+    /**
+     * @param in the stream from which to read the UTF-8 bytes; must not be null.
+     */
+    public Utf8Reader(InputStream in) {
+        if (in == null) {
+            throw new NullPointerException("in==null");
+        }
+        mIn = in;
+        final byte[] buf = sBufferPool.poll();
+        mBuf = (buf == null) ? new byte[BUFFER_SIZE] : buf;
+        mPendingLowSurrogate = -1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final char[] buf = new char[1];
+        final int readCount = read(buf, 0, 1);
+        return (readCount < 0) ? -1 : buf[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int offset, int count) throws IOException {
+        final byte[] buf = mBuf;
+        if (buf == null) {
+            throw new IOException("reader closed");
+        } else if (offset < 0 || count < 0 || offset + count > cbuf.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " count=" + count
+                    + " length=" + cbuf.length);
+        } else if (count == 0) {
+            return 0;
+        }
+
+        final int end = offset + count;
+        int i = offset;
+        if (mPendingLowSurrogate >= 0) {
+            cbuf[i++] = (char) mPendingLowSurrogate;
+            mPendingLowSurrogate = -1;
+        }
+
+        while (i < end) {
+            if (mPos == mLimit) {
+                // only block if nothing has been read, as the contract of Reader requires
+                if (i > offset || !fill()) {
+                    break;
+                }
+            }
+
+            // the forecasts are almost entirely ASCII, so decode runs of it without further checks
+            int pos = mPos;
+            final int asciiEnd = Math.min(mLimit, pos + (end - i));
+            while (pos < asciiEnd && buf[pos] >= 0) {
+                cbuf[i++] = (char) buf[pos++];
+            }
+            mPos = pos;
+            if (i == end || pos == mLimit) {
+                continue;
+            }
+
+            final int b0 = buf[pos] & 0xff;
+            final int length;
+            if (b0 >= 0xc2 && b0 <= 0xdf) {
+                length = 2;
+            } else if (b0 >= 0xe0 && b0 <= 0xef) {
+                length = 3;
+            } else if (b0 >= 0xf0 && b0 <= 0xf4) {
+                length = 4;
+            } else {
+                // a stray continuation byte or an invalid lead byte
+                cbuf[i++] = REPLACEMENT_CHAR;
+                mPos++;
+                continue;
+            }
+
+            if (mLimit - pos < length) {
+                if (i > offset) {
+                    break;
+                } else if (!fill()) {
+                    // the stream ended in the middle of a character
+                    cbuf[i++] = REPLACEMENT_CHAR;
+                    mPos = mLimit;
+                    break;
+                }
+                continue;
+            }
+
+            final int codePoint = decode(buf, pos, length);
+            if (codePoint == MALFORMED) {
+                cbuf[i++] = REPLACEMENT_CHAR;
+                mPos++;
+            } else if (codePoint == UNMAPPABLE) {
+                cbuf[i++] = REPLACEMENT_CHAR;
+                mPos += length;
+            } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                cbuf[i++] = (char) codePoint;
+                mPos += length;
+            } else {
+                // Character.highSurrogate() and lowSurrogate() are not available on older Androids
+                final int offsetCodePoint = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                cbuf[i++] = (char) (Character.MIN_HIGH_SURROGATE + (offsetCodePoint >>> 10));
+                final char lowSurrogate =
+                        (char) (Character.MIN_LOW_SURROGATE + (offsetCodePoint & 0x3ff));
+                if (i < end) {
+                    cbuf[i++] = lowSurrogate;
+                } else {
+                    mPendingLowSurrogate = lowSurrogate;
+                }
+                mPos += length;
+            }
+        }
+
+        final int readCount = i - offset;
+        return (readCount == 0) ? -1 : readCount;
+    }
+
+    /**
+     * Decodes the multi-byte character of the given length at the given position.
+     * @return the code point of the character; {@link #MALFORMED} if the lead byte is not followed
+     * by enough continuation bytes; or {@link #UNMAPPABLE} if the bytes are well-formed but encode
+     * a surrogate or an overlong or out-of-range code point.
+     */
+    private static int decode(byte[] buf, int pos, int length) {
+        int codePoint = buf[pos] & (0xff >> (length + 1));
+        for (int i = 1; i < length; i++) {
+            final int b = buf[pos + i];
+            if ((b & 0xc0) != 0x80) {
+                return MALFORMED;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3f);
+        }
+
+        if (length == 3) {
+            if (codePoint < 0x800 || (codePoint >= Character.MIN_SURROGATE
+                    && codePoint <= Character.MAX_SURROGATE)) {
+                return UNMAPPABLE;
+            }
+        } else if (length == 4) {
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT
+                    || codePoint > Character.MAX_CODE_POINT) {
+                return UNMAPPABLE;
+            }
+        }
+        return codePoint;
+    }
+
+    /**
+     * Moves any unread bytes to the start of the buffer and then reads more bytes after them,
+     * blocking until at least one byte is read.
+     * @return true if at least one byte was read, or false if the end of the stream was reached.
+     */
+    private boolean fill() throws IOException {
+        final int remaining = mLimit - mPos;
+        if (remaining > 0 && mPos > 0) {
+            System.arraycopy(mBuf, mPos, mBuf, 0, remaining);
+        }
+        mPos = 0;
+        mLimit = remaining;
+
+        while (true) {
+            final int readCount = mIn.read(mBuf, mLimit, mBuf.length - mLimit);
+            if (readCount < 0) {
+                return false;
+            } else if (readCount > 0) {
+                mLimit += readCount;
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return mPos < mLimit || mPendingLowSurrogate >= 0 || mIn.available() > 0;
+    }
+
+    /**
+     * Closes the underlying stream and returns this reader's buffer to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        final byte[] buf = mBuf;
+        if (buf == null) {
+            return;
+        }
+        mBuf = null;
+        try {
+            mIn.close();
+        } finally {
+            // the size check is racy, but the pool only needs to be roughly bounded
+            if (sBufferPool.size() < MAX_POOLED_BUFFERS) {
+                sBufferPool.offer(buf);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CancellationTokenTest {
+
+    @Test
+    public void testCancel_RunsListenersOnce() {
+        final CancellationToken token = new CancellationToken();
+        final AtomicInteger runCount = new AtomicInteger();
+        token.addListener(new CountingRunnable(runCount));
+        assertFalse(token.isCancelled());
+
+        token.cancel();
+        token.cancel();
+
+        assertTrue(token.isCancelled());
+        assertEquals(1, runCount.get());
+    }
+
+    @Test
+    public void testAddListener_AlreadyCancelled() {
+        final CancellationToken token = new CancellationToken();
+        token.cancel();
+        final AtomicInteger runCount = new AtomicInteger();
+
+        token.addListener(new CountingRunnable(runCount));
+
+        assertEquals(1, runCount.get());
+    }
+
+    @Test
+    public void testRemoveListener() {
+        final CancellationToken token = new CancellationToken();
+        final AtomicInteger runCount = new AtomicInteger();
+        final Runnable listener = new CountingRunnable(runCount);
+        token.addListener(listener);
+
+        token.removeListener(listener);
+        token.cancel();
+
+        assertEquals(0, runCount.get());
+    }
+
+    @Test
+    public void testThrowIfCancelled() {
+        final CancellationToken token = new CancellationToken();
+        token.throwIfCancelled();
+        token.cancel();
+        try {
+            token.throwIfCancelled();
+            fail("CancellationException should have been thrown");
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void testNewChild_ParentCancelsChild() {
+        final CancellationToken parent = new CancellationToken();
+        final CancellationToken child = parent.newChild();
+        final CancellationToken grandchild = child.newChild();
+
+        parent.cancel();
+
+        assertTrue(child.isCancelled());
+        assertTrue(grandchild.isCancelled());
+    }
+
+    @Test
+    public void testNewChild_ChildDoesNotCancelParent() {
+        final CancellationToken parent = new CancellationToken();
+        final CancellationToken child = parent.newChild();
+        final CancellationToken sibling = parent.newChild();
+
+        child.cancel();
+
+        assertTrue(child.isCancelled());
+        assertFalse(parent.isCancelled());
+        assertFalse(sibling.isCancelled());
+    }
+
+    @Test
+    public void testNewChild_ParentAlreadyCancelled() {
+        final CancellationToken parent = new CancellationToken();
+        parent.cancel();
+
+        assertTrue(parent.newChild().isCancelled());
+    }
+
+    @Test
+    public void testNewChild_CancelledChildReleased() {
+        final CancellationToken parent = new CancellationToken();
+        parent.newChild().cancel();
+
+        assertEquals(0, parent.getListenerCount());
+    }
+
+    @Test
+    public void testDetach() {
+        final CancellationToken parent = new CancellationToken();
+        final CancellationToken child = parent.newChild();
+        assertEquals(1, parent.getListenerCount());
+
+        child.detach();
+
+        assertEquals(0, parent.getListenerCount());
+        parent.cancel();
+        assertFalse(child.isCancelled());
+    }
+
+    private static class CountingRunnable implements Runnable {
+
+        private final AtomicInteger mRunCount;
+
+        public CountingRunnable(AtomicInteger runCount) {
+            mRunCount = runCount;
+        }
+
+        @Override
+        public void run() {
+            mRunCount.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DayLabelFormatterTest {
+
+    private static final TimeZone TORONTO = TimeZone.getTimeZone("America/Toronto");
+
+    // Sat Jul 19 2014 12:00:00 EDT
+    private static final long JUL_19_NOON = 1405785600000L;
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void testFormat() {
+        final DayLabelFormatter formatter = new DayLabelFormatter(Locale.US, TORONTO);
+        assertEquals("Sat, Jul 19", formatter.format(JUL_19_NOON));
+        assertEquals("Sun, Jul 20", formatter.format(JUL_19_NOON + 24 * MILLIS_PER_HOUR));
+    }
+
+    @Test
+    public void testFormat_UsesTimeZone() {
+        final DayLabelFormatter formatter = new DayLabelFormatter(Locale.US, TORONTO);
+        // 23:00 EDT is already the next day in UTC
+        assertEquals("Sat, Jul 19", formatter.format(JUL_19_NOON + 11 * MILLIS_PER_HOUR));
+        assertEquals("Sun, Jul 20", formatter.format(JUL_19_NOON + 12 * MILLIS_PER_HOUR));
+    }
+
+    @Test
+    public void testFormat_CachedPerDay() {
+        final DayLabelFormatter formatter = new DayLabelFormatter(Locale.US, TORONTO);
+        final String label = formatter.format(JUL_19_NOON);
+        assertSame(label, formatter.format(JUL_19_NOON - 11 * MILLIS_PER_HOUR));
+        assertSame(label, formatter.format(JUL_19_NOON + 11 * MILLIS_PER_HOUR));
+    }
+
+    @Test
+    public void testFormat_CacheCollision() {
+        final DayLabelFormatter formatter = new DayLabelFormatter(Locale.US, TORONTO);
+        // 64 days apart map to the same cache slot
+        final long later = JUL_19_NOON + 64 * 24 * MILLIS_PER_HOUR;
+        assertEquals("Sat, Jul 19", formatter.format(JUL_19_NOON));
+        assertEquals("Sun, Sep 21", formatter.format(later));
+        assertEquals("Sat, Jul 19", formatter.format(JUL_19_NOON));
+    }
+
+    @Test
+    public void testFormatEpochDay() {
+        final DayLabelFormatter formatter = new DayLabelFormatter(Locale.US, TORONTO);
+        assertEquals("Sat, Jul 19", formatter.formatEpochDay(16270));
+        assertSame(formatter.format(JUL_19_NOON), formatter.formatEpochDay(16270));
+    }
+
+    @Test
+    public void testToEpochDay() {
+        final DayLabelFormatter formatter =
+                new DayLabelFormatter(Locale.US, TimeZone.getTimeZone("UTC"));
+        assertEquals(0, formatter.toEpochDay(0));
+        assertEquals(-1, formatter.toEpochDay(-1));
+        assertEquals(16270, formatter.toEpochDay(JUL_19_NOON));
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class EpochDaysTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone TORONTO = TimeZone.getTimeZone("America/Toronto");
+
+    @Test
+    public void testFromUnixTime() {
+        assertEquals(0, EpochDays.fromUnixTime(0));
+        assertEquals(0, EpochDays.fromUnixTime(EpochDays.SECONDS_PER_DAY - 1));
+        assertEquals(1, EpochDays.fromUnixTime(EpochDays.SECONDS_PER_DAY));
+        assertEquals(-1, EpochDays.fromUnixTime(-1));
+        // Sat Jul 19 2014 17:00 UTC, as specified by the weather service for Kitchener
+        assertEquals(16270, EpochDays.fromUnixTime(1405789200L));
+    }
+
+    @Test
+    public void testFromTimeMillis() {
+        // Sun Jul 20 2014 02:00 UTC is still Sat Jul 19 in Toronto
+        final long timeMillis = 1405821600000L;
+        assertEquals(16271, EpochDays.fromTimeMillis(timeMillis, UTC));
+        assertEquals(16270, EpochDays.fromTimeMillis(timeMillis, TORONTO));
+        assertEquals(-1, EpochDays.fromTimeMillis(-1, UTC));
+    }
+
+    @Test
+    public void testToMiddayMillis() {
+        // Sat Jul 19 2014 12:00 EDT
+        assertEquals(1405785600000L, EpochDays.toMiddayMillis(16270, TORONTO));
+        for (long epochDay = 16000; epochDay < 16400; epochDay++) {
+            final long middayMillis = EpochDays.toMiddayMillis(epochDay, TORONTO);
+            assertEquals(epochDay, EpochDays.fromTimeMillis(middayMillis, TORONTO));
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.sleepydragon.sunshine.forecast;
+
+/**
+ * A {@link Clock} whose time is set and advanced by the test.
+ */
+public class FakeClock implements Clock {
+
+    private volatile long mTimeMillis;
+
+    public FakeClock(long timeMillis) {
+        mTimeMillis = timeMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return mTimeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        mTimeMillis = timeMillis;
+    }
+
+    public void advance(long millis) {
+        mTimeMillis += millis;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Provides JSON-encoded forecasts, in the format returned by the OpenWeatherMap API, for use by
+ * the tests and benchmarks.
+ */
+public final class Fixtures {
+
+    /**
+     * The name of the fixture containing a 7-day forecast.
+     */
+    public static final String DAILY_7 = "forecast_daily_7.json";
+
+    /**
+     * The name of the fixture containing a 16-day forecast, the maximum supported by the API.
+     */
+    public static final String DAILY_16 = "forecast_daily_16.json";
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Loads the fixture with the given name.
+     * @param name the name of the fixture to load, such as {@link #DAILY_7}.
+     * @return the contents of the fixture; never returns null.
+     * @throws IOException if loading the fixture fails.
+     */
+    public static String load(String name) throws IOException {
+        final InputStream in = Fixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("fixture not found: " + name);
+        }
+        try {
+            final Reader reader = new InputStreamReader(in, "utf8");
+            final StringBuilder sb = new StringBuilder();
+            final char[] buf = new char[4096];
+            while (true) {
+                final int readCount = reader.read(buf);
+                if (readCount < 0) {
+                    break;
+                }
+                sb.append(buf, 0, readCount);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns a forecast with the given number of days.
+     * <p>
+     * If the number of days is no greater than 16 then the days are taken from the 16-day
+     * fixture; otherwise, the days of the 16-day fixture are repeated, with consecutive dates,
+     * until the requested number of days is reached.  This allows benchmarking payloads larger
+     * than the API itself will return.
+     * @param numDays the number of days in the forecast to return.
+     * @return the JSON-encoded forecast; never returns null.
+     * @throws IOException if loading the 16-day fixture fails.
+     */
+    public static String forecastWithDays(int numDays) throws IOException {
+        final String template = load(DAILY_16);
+        try {
+            final JSONObject forecast = new JSONObject(template);
+            final JSONArray templateDays = forecast.getJSONArray("list");
+            final long firstDateTime = templateDays.getJSONObject(0).getLong("dt");
+            final JSONArray days = new JSONArray();
+            for (int i = 0; i < numDays; i++) {
+                final JSONObject templateDay = templateDays.getJSONObject(i % templateDays.length());
+                final JSONObject day = new JSONObject(templateDay.toString());
+                day.put("dt", firstDateTime + (i * SECONDS_PER_DAY));
+                days.put(day);
+            }
+            forecast.put("cnt", numDays);
+            forecast.put("list", days);
+            return forecast.toString();
+        } catch (JSONException e) {
+            throw new IOException("invalid fixture: " + DAILY_16, e);
+        }
+    }
+
+}
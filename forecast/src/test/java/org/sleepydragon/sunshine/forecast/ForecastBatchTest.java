@@ -0,0 +1,65 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ForecastBatchTest {
+
+    @Test
+    public void testAdd_GrowsBeyondCapacity() {
+        final ForecastBatch batch = new ForecastBatch(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, batch.add(i, "Clear", null, i, -i, 50, 1000, 2, 180));
+        }
+        assertEquals(100, batch.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, batch.getDateTime(i));
+            assertEquals(i, batch.getHigh(i), 0.0f);
+            assertEquals(-i, batch.getLow(i), 0.0f);
+            assertNull(batch.getIconCode(i));
+        }
+    }
+
+    @Test
+    public void testGetEpochDay() {
+        final ForecastBatch batch = new ForecastBatch();
+        batch.add(1405789200L, "Clear", null, 0, 0, 0, 0, 0, 0);
+        batch.add(1405789200L + 24 * 60 * 60, "Clear", null, 0, 0, 0, 0, 0, 0);
+        assertEquals(16270, batch.getEpochDay(0));
+        assertEquals(16271, batch.getEpochDay(1));
+    }
+
+    @Test
+    public void testAdd_InternsKnownStrings() {
+        final ForecastBatch batch = new ForecastBatch();
+        batch.add(1, new String("Rain"), new String("10d"), 0, 0, 0, 0, 0, 0);
+        batch.add(2, new String("Rain"), new String("10d"), 0, 0, 0, 0, 0, 0);
+        assertSame(batch.getDescription(0), batch.getDescription(1));
+        assertSame(batch.getIconCode(0), batch.getIconCode(1));
+        assertSame("Rain", batch.getDescription(0));
+    }
+
+    @Test
+    public void testAdd_KeepsUnknownStrings() {
+        final ForecastBatch batch = new ForecastBatch();
+        batch.add(1, "Meteors", "99x", 0, 0, 0, 0, 0, 0);
+        assertEquals("Meteors", batch.getDescription(0));
+        assertEquals("99x", batch.getIconCode(0));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testAdd_NullDescription() {
+        new ForecastBatch().add(1, null, null, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_IndexOutOfBounds() {
+        final ForecastBatch batch = new ForecastBatch();
+        batch.add(1, "Clear", null, 0, 0, 0, 0, 0, 0);
+        batch.getDateTime(1);
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastFetchEngineTest {
+
+    private StandInHttpServer mServer;
+    private RecordingSink mSink;
+    private ForecastFetchEngine mEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInHttpServer();
+        mServer.setResponseBody(Fixtures.load(Fixtures.DAILY_7));
+        mSink = new RecordingSink();
+    }
+
+    @After
+    public void tearDown() {
+        if (mEngine != null) {
+            mEngine.shutdown();
+        }
+        mServer.stop();
+    }
+
+    private ForecastFetchEngine createEngine(int maxConcurrency, int maxConcurrencyPerHost)
+            throws Exception {
+        final String baseUrl = mServer.getUrl("/data/2.5/forecast/daily").toString();
+        final ForecastDownloader downloader = new ForecastDownloader(baseUrl);
+        mEngine = new ForecastFetchEngine(downloader, mSink, maxConcurrency,
+                maxConcurrencyPerHost);
+        return mEngine;
+    }
+
+    private static Map<String, HttpCacheInfo> createCities(int numCities) {
+        final Map<String, HttpCacheInfo> cities = new LinkedHashMap<>();
+        for (int i = 0; i < numCities; i++) {
+            cities.put("City" + i, null);
+        }
+        return cities;
+    }
+
+    @Test
+    public void testFetchAll_SavesAllResultsInOneBatch() throws Exception {
+        final ForecastFetchEngine engine = createEngine(4, 4);
+        final List<FetchResult> results = engine.fetchAll(createCities(10));
+
+        assertEquals(10, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            final FetchResult result = results.get(i);
+            assertEquals("City" + i, result.cityId);
+            assertEquals(FetchResult.Status.OK, result.status);
+            assertEquals(7, result.forecast.size());
+        }
+        assertEquals(10, mServer.getRequestCount());
+        assertEquals(1, mSink.mBatches.size());
+        assertEquals(results, mSink.mBatches.get(0));
+    }
+
+    @Test
+    public void testFetchAll_LimitsConcurrencyPerHost() throws Exception {
+        mServer.setResponseDelayMillis(50);
+        final ForecastFetchEngine engine = createEngine(8, 3);
+        engine.fetchAll(createCities(20));
+        assertEquals(20, mServer.getRequestCount());
+        assertTrue(mServer.getMaxConcurrentRequestCount() <= 3);
+    }
+
+    @Test
+    public void testFetchAll_SkipsFreshForecasts() throws Exception {
+        final ForecastFetchEngine engine = createEngine(4, 4);
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo(null, null, System.currentTimeMillis(),
+                HttpCacheInfo.DEFAULT_TTL_MILLIS);
+        final Map<String, HttpCacheInfo> cities = createCities(2);
+        cities.put("City0", cacheInfo);
+
+        final List<FetchResult> results = engine.fetchAll(cities);
+        assertEquals(FetchResult.Status.FRESH, results.get(0).status);
+        assertEquals(FetchResult.Status.OK, results.get(1).status);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testFetchAll_InvalidData() throws Exception {
+        mServer.setResponseBody("{\"cod\":\"404\"}");
+        final ForecastFetchEngine engine = createEngine(4, 4);
+        final List<FetchResult> results = engine.fetchAll(createCities(1));
+        assertEquals(FetchResult.Status.INVALID_DATA, results.get(0).status);
+        assertEquals(1, mSink.mBatches.size());
+    }
+
+    @Test
+    public void testFetch_CoalescesInFlightRequests() throws Exception {
+        mServer.setResponseDelayMillis(200);
+        final ForecastFetchEngine engine = createEngine(4, 4);
+        final Future<FetchResult> future1 = engine.fetch("City0", null);
+        final Future<FetchResult> future2 = engine.fetch("City0", null);
+        assertSame(future1, future2);
+        assertEquals(FetchResult.Status.OK, future1.get().status);
+        assertEquals(1, mServer.getRequestCount());
+
+        // once complete, the city is fetched again
+        engine.fetch("City0", null).get();
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testFetchAll_SavesResultsOfJoinedFetches() throws Exception {
+        mServer.setResponseDelayMillis(200);
+        final ForecastFetchEngine engine = createEngine(4, 4);
+        final Future<FetchResult> future = engine.fetch("City0", null);
+
+        // fetch() does not save its result, so the fetchAll() that joins it must
+        final List<FetchResult> results = engine.fetchAll(createCities(2));
+        assertEquals(2, results.size());
+        assertSame(future.get(), results.get(0));
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, mSink.mBatches.size());
+        assertEquals(results, mSink.mBatches.get(0));
+    }
+
+    private static class RecordingSink implements ForecastSink {
+
+        public final List<List<FetchResult>> mBatches = new ArrayList<>();
+
+        @Override
+        public void saveAll(List<FetchResult> results) {
+            mBatches.add(new ArrayList<>(results));
+        }
+    }
+
+}
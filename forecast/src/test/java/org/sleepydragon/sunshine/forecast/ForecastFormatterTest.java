@@ -0,0 +1,54 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForecastFormatterTest {
+
+    @Test
+    public void testFormatTemperature_Metric() {
+        final ForecastFormatter formatter = new ForecastFormatter(MeasurementUnits.METRIC);
+        assertEquals("25\u00B0C", formatter.formatTemperature(25));
+        assertEquals("-5\u00B0C", formatter.formatTemperature(-5));
+    }
+
+    @Test
+    public void testFormatTemperature_Imperial() {
+        final ForecastFormatter formatter = new ForecastFormatter(MeasurementUnits.IMPERIAL);
+        assertEquals("77\u00B0F", formatter.formatTemperature(25));
+        assertEquals("-40\u00B0F", formatter.formatTemperature(-40));
+    }
+
+    @Test
+    public void testFormatHighLows() {
+        final ForecastFormatter formatter = new ForecastFormatter(MeasurementUnits.METRIC);
+        assertEquals("26\u00B0C/15\u00B0C", formatter.formatHighLows(25.55, 15.06));
+    }
+
+    @Test
+    public void testFormatHighLows_Imperial() {
+        final ForecastFormatter formatter = new ForecastFormatter(MeasurementUnits.IMPERIAL);
+        // -0.3C is 31.46F; rounding to 0C before converting would give 32F
+        assertEquals("78\u00B0F/31\u00B0F", formatter.formatHighLows(25.55, -0.3));
+    }
+
+    @Test
+    public void testFormatDayForecast_SameForecastInBothUnits() {
+        final DayLabelFormatter dayLabelFormatter = new DayLabelFormatter(Locale.US,
+                TimeZone.getTimeZone("UTC"));
+        final ForecastBatch batch = new ForecastBatch();
+        batch.add(1405771200L, "Clear", "01d", 30.0f, 10.0f, Float.NaN, Float.NaN, Float.NaN,
+                Float.NaN);
+        final ForecastFormatter metric = new ForecastFormatter(MeasurementUnits.METRIC,
+                dayLabelFormatter);
+        final ForecastFormatter imperial = new ForecastFormatter(MeasurementUnits.IMPERIAL,
+                dayLabelFormatter);
+        assertEquals("Sat, Jul 19 - Clear - 30\u00B0C/10\u00B0C", metric.formatDayForecast(batch, 0));
+        assertEquals("Sat, Jul 19 - Clear - 86\u00B0F/50\u00B0F", imperial.formatDayForecast(batch, 0));
+    }
+
+}
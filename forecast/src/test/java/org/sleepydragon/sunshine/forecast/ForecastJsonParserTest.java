@@ -0,0 +1,134 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastJsonParserTest {
+
+    @Test
+    public void testParse_Streaming() throws Exception {
+        final String json = Fixtures.load(Fixtures.DAILY_7);
+        final ForecastBatch forecast = ForecastJsonParser.parse(new StringReader(json));
+        assertFixtureForecast(forecast);
+    }
+
+    @Test
+    public void testParse_Tree() throws Exception {
+        final String json = Fixtures.load(Fixtures.DAILY_7);
+        final ForecastBatch forecast = ForecastJsonParser.parse(json);
+        assertFixtureForecast(forecast);
+    }
+
+    @Test
+    public void testParse_StreamingMatchesTree() throws Exception {
+        final String json = Fixtures.forecastWithDays(200);
+        final ForecastBatch expected = ForecastJsonParser.parse(json);
+        final ForecastBatch actual = ForecastJsonParser.parse(new StringReader(json));
+        assertEquals(200, actual.size());
+        assertEquals(expected.getLatitude(), actual.getLatitude());
+        assertEquals(expected.getLongitude(), actual.getLongitude());
+        for (int i = 0; i < expected.size(); i++) {
+            assertDayForecast(actual, i, expected, i);
+        }
+    }
+
+    @Test
+    public void testParse_Streaming_NoCity() throws Exception {
+        final String json = "{\"list\":[{\"dt\":1,\"weather\":[{\"main\":\"Rain\"}],"
+                + "\"temp\":{\"min\":1.5,\"max\":2.5}}]}";
+        final ForecastBatch forecast = ForecastJsonParser.parse(new StringReader(json));
+        assertNull(forecast.getLatitude());
+        assertNull(forecast.getLongitude());
+        assertEquals(1, forecast.size());
+        assertEquals(1, forecast.getDateTime(0));
+        assertEquals("Rain", forecast.getDescription(0));
+        assertEquals(2.5f, forecast.getHigh(0), 0.0f);
+        assertEquals(1.5f, forecast.getLow(0), 0.0f);
+    }
+
+    @Test
+    public void testParse_Streaming_OptionalValuesMissing() throws Exception {
+        final String json = "{\"list\":[{\"dt\":1,\"weather\":[{\"main\":\"Rain\"}],"
+                + "\"temp\":{\"min\":1.5,\"max\":2.5}}]}";
+        final ForecastBatch forecast = ForecastJsonParser.parse(new StringReader(json));
+        assertNull(forecast.getIconCode(0));
+        assertTrue(Float.isNaN(forecast.getHumidity(0)));
+        assertTrue(Float.isNaN(forecast.getPressure(0)));
+        assertTrue(Float.isNaN(forecast.getWindSpeed(0)));
+        assertTrue(Float.isNaN(forecast.getWindDirection(0)));
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void testParse_Streaming_NoList() throws Exception {
+        ForecastJsonParser.parse(new StringReader("{\"cod\":\"200\"}"));
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void testParse_Streaming_MissingTemperature() throws Exception {
+        final String json = "{\"list\":[{\"dt\":1,\"weather\":[{\"main\":\"Rain\"}]}]}";
+        ForecastJsonParser.parse(new StringReader(json));
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void testParse_Streaming_Malformed() throws Exception {
+        ForecastJsonParser.parse(new StringReader("{\"list\":[{\"dt\":}]}"));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testParse_Streaming_Truncated() throws Exception {
+        ForecastJsonParser.parse(new StringReader("{\"list\":[{\"dt\":"));
+    }
+
+    @Test(expected = ForecastParseException.class)
+    public void testParse_Tree_Malformed() throws Exception {
+        ForecastJsonParser.parse("{\"list\":[{\"dt\":");
+    }
+
+    private static void assertFixtureForecast(ForecastBatch forecast) {
+        assertEquals("43.450069", forecast.getLatitude());
+        assertEquals("-80.482986", forecast.getLongitude());
+        assertEquals(7, forecast.size());
+
+        assertEquals(1405789200, forecast.getDateTime(0));
+        assertEquals("Rain", forecast.getDescription(0));
+        assertEquals("10d", forecast.getIconCode(0));
+        assertEquals(25.55f, forecast.getHigh(0), 0.0f);
+        assertEquals(15.06f, forecast.getLow(0), 0.0f);
+        assertEquals(67f, forecast.getHumidity(0), 0.0f);
+        assertEquals(986.81f, forecast.getPressure(0), 0.0f);
+        assertEquals(2.97f, forecast.getWindSpeed(0), 0.0f);
+        assertEquals(270f, forecast.getWindDirection(0), 0.0f);
+
+        assertEquals(1406307600, forecast.getDateTime(6));
+        assertEquals("Rain", forecast.getDescription(6));
+        assertEquals("10d", forecast.getIconCode(6));
+        assertEquals(23.2f, forecast.getHigh(6), 0.0f);
+        assertEquals(14.56f, forecast.getLow(6), 0.0f);
+        assertEquals(82f, forecast.getHumidity(6), 0.0f);
+        assertEquals(992.41f, forecast.getPressure(6), 0.0f);
+        assertEquals(5.48f, forecast.getWindSpeed(6), 0.0f);
+        assertEquals(93f, forecast.getWindDirection(6), 0.0f);
+    }
+
+    private static void assertDayForecast(ForecastBatch actual, int actualIndex,
+            ForecastBatch expected, int expectedIndex) {
+        assertEquals(expected.getDateTime(expectedIndex), actual.getDateTime(actualIndex));
+        assertEquals(expected.getDescription(expectedIndex), actual.getDescription(actualIndex));
+        assertEquals(expected.getIconCode(expectedIndex), actual.getIconCode(actualIndex));
+        assertEquals(expected.getHigh(expectedIndex), actual.getHigh(actualIndex), 0.0f);
+        assertEquals(expected.getLow(expectedIndex), actual.getLow(actualIndex), 0.0f);
+        assertEquals(expected.getHumidity(expectedIndex), actual.getHumidity(actualIndex), 0.0f);
+        assertEquals(expected.getPressure(expectedIndex), actual.getPressure(actualIndex), 0.0f);
+        assertEquals(expected.getWindSpeed(expectedIndex), actual.getWindSpeed(actualIndex),
+                0.0f);
+        assertEquals(expected.getWindDirection(expectedIndex),
+                actual.getWindDirection(actualIndex), 0.0f);
+    }
+
+}
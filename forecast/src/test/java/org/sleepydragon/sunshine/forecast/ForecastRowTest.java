@@ -0,0 +1,121 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastRowTest {
+
+    private static final long EPOCH_DAY = 16270;
+
+    private static ForecastFormatter createFormatter(MeasurementUnits measurementUnits) {
+        final DayLabelFormatter dayLabelFormatter = new DayLabelFormatter(Locale.US,
+                TimeZone.getTimeZone("UTC"));
+        return new ForecastFormatter(measurementUnits, dayLabelFormatter);
+    }
+
+    private static ForecastRow createRow(long id, double high) {
+        return new ForecastRow(id, EPOCH_DAY + id, "Clear", high, 10.0);
+    }
+
+    @Test
+    public void testGetText_CachedPerFormatter() {
+        final ForecastFormatter metric = createFormatter(MeasurementUnits.METRIC);
+        final ForecastFormatter imperial = createFormatter(MeasurementUnits.IMPERIAL);
+        final ForecastRow row = new ForecastRow(1, EPOCH_DAY, "Clear", 25.0, 10.0);
+
+        final String metricText = row.getText(metric);
+        assertEquals(metric.formatDayForecast(EPOCH_DAY, "Clear", 25.0, 10.0), metricText);
+        assertSame(metricText, row.getText(metric));
+
+        final String imperialText = row.getText(imperial);
+        assertEquals(imperial.formatDayForecast(EPOCH_DAY, "Clear", 25.0, 10.0), imperialText);
+        assertSame(imperialText, row.getText(imperial));
+    }
+
+    @Test
+    public void testGetText_NullDescription() {
+        final ForecastFormatter formatter = createFormatter(MeasurementUnits.METRIC);
+        final ForecastRow row = new ForecastRow(1, EPOCH_DAY, null, 25.0, 10.0);
+        assertEquals(formatter.formatDayForecast(EPOCH_DAY, "", 25.0, 10.0),
+                row.getText(formatter));
+    }
+
+    @Test
+    public void testHasSameContents() {
+        final ForecastRow row = createRow(1, 25.0);
+        assertTrue(row.hasSameContents(createRow(1, 25.0)));
+        assertFalse(row.hasSameContents(createRow(1, 26.0)));
+        assertFalse(row.hasSameContents(new ForecastRow(1, EPOCH_DAY + 1, "Rain", 25.0, 10.0)));
+        assertFalse(row.hasSameContents(new ForecastRow(2, EPOCH_DAY + 1, "Clear", 25.0, 10.0)));
+        assertTrue(new ForecastRow(1, EPOCH_DAY, null, 25.0, 10.0).hasSameContents(
+                new ForecastRow(1, EPOCH_DAY, null, 25.0, 10.0)));
+    }
+
+    @Test
+    public void testMerge_Unchanged() {
+        final List<ForecastRow> oldRows = Arrays.asList(createRow(1, 25.0), createRow(2, 26.0));
+        final List<ForecastRow> newRows = Arrays.asList(createRow(1, 25.0), createRow(2, 26.0));
+        assertSame(oldRows, ForecastRow.merge(oldRows, newRows));
+    }
+
+    @Test
+    public void testMerge_ReusesUnchangedRows() {
+        final ForecastFormatter formatter = createFormatter(MeasurementUnits.METRIC);
+        final List<ForecastRow> oldRows = Arrays.asList(createRow(1, 25.0), createRow(2, 26.0),
+                createRow(3, 27.0));
+        final String text1 = oldRows.get(0).getText(formatter);
+        final List<ForecastRow> newRows = Arrays.asList(createRow(1, 25.0), createRow(2, 30.0),
+                createRow(3, 27.0));
+
+        final List<ForecastRow> merged = ForecastRow.merge(oldRows, newRows);
+
+        assertNotSame(oldRows, merged);
+        assertSame(oldRows.get(0), merged.get(0));
+        assertSame(newRows.get(1), merged.get(1));
+        assertSame(oldRows.get(2), merged.get(2));
+        assertSame(text1, merged.get(0).getText(formatter));
+    }
+
+    @Test
+    public void testMerge_Reordered() {
+        final List<ForecastRow> oldRows = Arrays.asList(createRow(1, 25.0), createRow(2, 26.0));
+        final List<ForecastRow> newRows = Arrays.asList(createRow(3, 20.0), createRow(2, 26.0),
+                createRow(1, 25.0));
+
+        final List<ForecastRow> merged = ForecastRow.merge(oldRows, newRows);
+
+        assertEquals(3, merged.size());
+        assertSame(newRows.get(0), merged.get(0));
+        assertSame(oldRows.get(1), merged.get(1));
+        assertSame(oldRows.get(0), merged.get(2));
+    }
+
+    @Test
+    public void testMerge_Removed() {
+        final List<ForecastRow> oldRows = Arrays.asList(createRow(1, 25.0), createRow(2, 26.0));
+        final List<ForecastRow> newRows = Collections.singletonList(createRow(2, 26.0));
+
+        final List<ForecastRow> merged = ForecastRow.merge(oldRows, newRows);
+
+        assertEquals(1, merged.size());
+        assertSame(oldRows.get(1), merged.get(0));
+    }
+
+    @Test
+    public void testMerge_Empty() {
+        final List<ForecastRow> oldRows = Collections.emptyList();
+        assertSame(oldRows, ForecastRow.merge(oldRows, Collections.<ForecastRow>emptyList()));
+    }
+
+}
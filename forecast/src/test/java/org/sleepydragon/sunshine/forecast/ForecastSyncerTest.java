@@ -0,0 +1,201 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForecastSyncerTest {
+
+    private static final String DAILY_PATH = "/data/2.5/forecast/daily";
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long INTERVAL_MILLIS = 3 * HOUR_MILLIS;
+    private static final long MIN_BACKOFF_MILLIS = 5 * MINUTE_MILLIS;
+
+    private StandInHttpServer mServer;
+    private RecordingSink mSink;
+    private FakeClock mClock;
+    private ForecastFetchEngine mEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInHttpServer();
+        mServer.setResponseBody(Fixtures.load(Fixtures.DAILY_7));
+        mSink = new RecordingSink();
+        // the downloader records the fetch times by the system clock, so start from it
+        mClock = new FakeClock(System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() {
+        if (mEngine != null) {
+            mEngine.shutdown();
+        }
+        mServer.stop();
+    }
+
+    private ForecastSyncer createSyncer(String baseUrl) throws Exception {
+        final ForecastDownloader downloader = new ForecastDownloader(baseUrl);
+        mEngine = new ForecastFetchEngine(downloader, mSink, 4, 4);
+        // no jitter, so that the times of the next syncs are exact
+        final SyncPolicy policy = new SyncPolicy(INTERVAL_MILLIS, MIN_BACKOFF_MILLIS,
+                2 * HOUR_MILLIS, 0, new Random());
+        return new ForecastSyncer(mEngine, policy, mClock);
+    }
+
+    private ForecastSyncer createSyncer() throws Exception {
+        return createSyncer(mServer.getUrl(DAILY_PATH).toString());
+    }
+
+    private static Map<String, HttpCacheInfo> createCities(int numCities) {
+        final Map<String, HttpCacheInfo> cities = new LinkedHashMap<>();
+        for (int i = 0; i < numCities; i++) {
+            cities.put("City" + i, null);
+        }
+        return cities;
+    }
+
+    /**
+     * Returns the cities of the given results, mapped to their new information, as they would be
+     * loaded from the database for the next sync.
+     */
+    private static Map<String, HttpCacheInfo> toCities(List<FetchResult> results) {
+        final Map<String, HttpCacheInfo> cities = new LinkedHashMap<>();
+        for (final FetchResult result : results) {
+            cities.put(result.cityId, result.cacheInfo);
+        }
+        return cities;
+    }
+
+    @Test
+    public void testSync_FetchesCitiesInOneBatch() throws Exception {
+        final ForecastSyncer syncer = createSyncer();
+
+        final ForecastSyncer.Outcome outcome = syncer.sync(createCities(5), 0);
+
+        assertEquals(5, outcome.results.size());
+        assertEquals(5, mServer.getRequestCount());
+        assertEquals(1, mSink.mBatches.size());
+        assertEquals(0, outcome.consecutiveFailures);
+        assertFalse(outcome.isSkipped());
+        assertEquals(mClock.currentTimeMillis() + INTERVAL_MILLIS, outcome.nextSyncTimeMillis);
+    }
+
+    @Test
+    public void testSync_SkipsWhenAllFresh() throws Exception {
+        final ForecastSyncer syncer = createSyncer();
+        final List<FetchResult> results = syncer.sync(createCities(3), 0).results;
+        mServer.setCacheControl("max-age=" + (4 * HOUR_MILLIS / 1000));
+
+        // the forecasts are fresh for an hour, until after a sync due in half an hour's time
+        mClock.advance(30 * MINUTE_MILLIS);
+        final Map<String, HttpCacheInfo> cities = toCities(results);
+        for (final Map.Entry<String, HttpCacheInfo> entry : cities.entrySet()) {
+            final HttpCacheInfo cacheInfo = entry.getValue();
+            entry.setValue(new HttpCacheInfo(cacheInfo.etag, cacheInfo.lastModified,
+                    cacheInfo.fetchTimeMillis, 4 * HOUR_MILLIS));
+        }
+        final ForecastSyncer.Outcome outcome = syncer.sync(cities, 0);
+
+        assertTrue(outcome.isSkipped());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(1, mSink.mBatches.size());
+        assertEquals(mClock.currentTimeMillis() + INTERVAL_MILLIS, outcome.nextSyncTimeMillis);
+    }
+
+    @Test
+    public void testSync_RevalidatesExpiringCitiesTogether() throws Exception {
+        mServer.setEtag("\"abc\"");
+        final ForecastSyncer syncer = createSyncer();
+        final Map<String, HttpCacheInfo> cities = toCities(syncer.sync(createCities(2), 0).results);
+        // one forecast is stale, and the other would be stale before the next sync
+        final HttpCacheInfo cacheInfo = cities.get("City1");
+        cities.put("City1", new HttpCacheInfo(cacheInfo.etag, cacheInfo.lastModified,
+                cacheInfo.fetchTimeMillis, 3 * HOUR_MILLIS));
+        mClock.advance(2 * HOUR_MILLIS);
+
+        final ForecastSyncer.Outcome outcome = syncer.sync(cities, 0);
+
+        assertEquals(2, outcome.results.size());
+        for (final FetchResult result : outcome.results) {
+            assertEquals(FetchResult.Status.NOT_MODIFIED, result.status);
+        }
+        assertEquals(2, mServer.getNotModifiedCount());
+        assertEquals(2, mSink.mBatches.size());
+    }
+
+    @Test
+    public void testSync_ConnectFailedBacksOff() throws Exception {
+        final ForecastSyncer syncer = createSyncer(getUnusedUrl());
+
+        ForecastSyncer.Outcome outcome = syncer.sync(createCities(2), 0);
+        assertEquals(FetchResult.Status.CONNECT_FAILED, outcome.results.get(0).status);
+        assertEquals(1, outcome.consecutiveFailures);
+        assertEquals(mClock.currentTimeMillis() + MIN_BACKOFF_MILLIS, outcome.nextSyncTimeMillis);
+
+        mClock.setTimeMillis(outcome.nextSyncTimeMillis);
+        outcome = syncer.sync(createCities(2), outcome.consecutiveFailures);
+        assertEquals(2, outcome.consecutiveFailures);
+        assertEquals(mClock.currentTimeMillis() + 2 * MIN_BACKOFF_MILLIS,
+                outcome.nextSyncTimeMillis);
+    }
+
+    @Test
+    public void testSync_SuccessResetsBackoff() throws Exception {
+        final ForecastSyncer syncer = createSyncer();
+        final ForecastSyncer.Outcome outcome = syncer.sync(createCities(1), 3);
+        assertEquals(0, outcome.consecutiveFailures);
+        assertEquals(mClock.currentTimeMillis() + INTERVAL_MILLIS, outcome.nextSyncTimeMillis);
+    }
+
+    @Test
+    public void testSync_InvalidDataDoesNotBackOff() throws Exception {
+        mServer.setResponseBody("{\"cod\":\"404\"}");
+        final ForecastSyncer syncer = createSyncer();
+        final ForecastSyncer.Outcome outcome = syncer.sync(createCities(1), 0);
+        assertEquals(FetchResult.Status.INVALID_DATA, outcome.results.get(0).status);
+        assertEquals(0, outcome.consecutiveFailures);
+    }
+
+    @Test
+    public void testFailed() throws Exception {
+        final ForecastSyncer syncer = createSyncer();
+        final ForecastSyncer.Outcome outcome = syncer.failed(1);
+        assertEquals(2, outcome.consecutiveFailures);
+        assertEquals(mClock.currentTimeMillis() + 2 * MIN_BACKOFF_MILLIS,
+                outcome.nextSyncTimeMillis);
+    }
+
+    /**
+     * Returns the URL of a port on which nothing is listening, so that connecting to it fails.
+     */
+    private static String getUnusedUrl() throws Exception {
+        final ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final int port = socket.getLocalPort();
+        socket.close();
+        return "http://127.0.0.1:" + port + DAILY_PATH;
+    }
+
+    private static class RecordingSink implements ForecastSink {
+
+        public final List<List<FetchResult>> mBatches = new ArrayList<>();
+
+        @Override
+        public synchronized void saveAll(List<FetchResult> results) {
+            mBatches.add(new ArrayList<>(results));
+        }
+    }
+
+}
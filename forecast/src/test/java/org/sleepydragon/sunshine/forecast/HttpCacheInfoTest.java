@@ -0,0 +1,125 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCacheInfoTest {
+
+    private static final String LAST_MODIFIED = "Sat, 19 Jul 2014 16:00:00 GMT";
+
+    private StandInHttpServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new StandInHttpServer();
+        mServer.setResponseBody(Fixtures.load(Fixtures.DAILY_7));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void testIsFresh() {
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo(null, null, 1000, 500);
+        assertFalse(cacheInfo.isFresh(999));
+        assertTrue(cacheInfo.isFresh(1000));
+        assertTrue(cacheInfo.isFresh(1499));
+        assertFalse(cacheInfo.isFresh(1500));
+    }
+
+    @Test
+    public void testFromResponse() throws IOException {
+        mServer.setEtag("\"abc\"");
+        mServer.setLastModified(LAST_MODIFIED);
+        mServer.setCacheControl("public, max-age=600");
+
+        final HttpURLConnection con = request(null);
+        assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+        final HttpCacheInfo cacheInfo = HttpCacheInfo.fromResponse(con, 1234, 99, null);
+        con.getInputStream().close();
+
+        assertEquals("\"abc\"", cacheInfo.etag);
+        assertEquals(LAST_MODIFIED, cacheInfo.lastModified);
+        assertEquals(1234, cacheInfo.fetchTimeMillis);
+        assertEquals(600000, cacheInfo.ttlMillis);
+    }
+
+    @Test
+    public void testFromResponse_DefaultTtl() throws IOException {
+        final HttpURLConnection con = request(null);
+        assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+        final HttpCacheInfo cacheInfo = HttpCacheInfo.fromResponse(con, 1234, 99, null);
+        con.getInputStream().close();
+
+        assertNull(cacheInfo.etag);
+        assertNull(cacheInfo.lastModified);
+        assertEquals(99, cacheInfo.ttlMillis);
+    }
+
+    @Test
+    public void testFromResponse_NoCache() throws IOException {
+        mServer.setCacheControl("max-age=600, no-cache");
+        final HttpURLConnection con = request(null);
+        assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+        final HttpCacheInfo cacheInfo = HttpCacheInfo.fromResponse(con, 1234, 99, null);
+        con.getInputStream().close();
+        assertEquals(0, cacheInfo.ttlMillis);
+    }
+
+    @Test
+    public void testRevalidate_Etag() throws IOException {
+        mServer.setEtag("\"abc\"");
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo("\"abc\"", null, 0, 0);
+        final HttpURLConnection con = request(cacheInfo);
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, con.getResponseCode());
+        assertEquals("\"abc\"", mServer.getLastRequestHeader("If-None-Match"));
+        assertEquals(1, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void testRevalidate_EtagChanged() throws IOException {
+        mServer.setEtag("\"def\"");
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo("\"abc\"", null, 0, 0);
+        final HttpURLConnection con = request(cacheInfo);
+        assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+        final HttpCacheInfo newCacheInfo = HttpCacheInfo.fromResponse(con, 0, 0, cacheInfo);
+        con.getInputStream().close();
+        assertEquals("\"def\"", newCacheInfo.etag);
+        assertEquals(0, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void testRevalidate_LastModified() throws IOException {
+        mServer.setLastModified(LAST_MODIFIED);
+        final HttpCacheInfo cacheInfo = new HttpCacheInfo(null, LAST_MODIFIED, 0, 0);
+        final HttpURLConnection con = request(cacheInfo);
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, con.getResponseCode());
+        assertEquals(LAST_MODIFIED, mServer.getLastRequestHeader("If-Modified-Since"));
+
+        // the validators are carried over to the revalidated cache info
+        final HttpCacheInfo newCacheInfo = HttpCacheInfo.fromResponse(con, 5, 7, cacheInfo);
+        assertEquals(LAST_MODIFIED, newCacheInfo.lastModified);
+        assertEquals(5, newCacheInfo.fetchTimeMillis);
+    }
+
+    private HttpURLConnection request(HttpCacheInfo cacheInfo) throws IOException {
+        final HttpURLConnection con =
+                (HttpURLConnection) mServer.getUrl("/data/2.5/forecast/daily").openConnection();
+        if (cacheInfo != null) {
+            cacheInfo.addConditionalHeaders(con);
+        }
+        return con;
+    }
+
+}
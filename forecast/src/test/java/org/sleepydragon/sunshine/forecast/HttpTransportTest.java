@@ -0,0 +1,61 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpTransportTest {
+
+    private StandInHttpServer mServer;
+    private ForecastDownloader mDownloader;
+    private int mUncompressedSize;
+
+    @Before
+    public void setUp() throws Exception {
+        final String json = Fixtures.load(Fixtures.DAILY_7);
+        mUncompressedSize = json.getBytes(StandardCharsets.UTF_8).length;
+        mServer = new StandInHttpServer();
+        mServer.setResponseBody(json);
+        mDownloader = new ForecastDownloader(
+                mServer.getUrl("/data/2.5/forecast/daily").toString());
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void testDownload_ReusesConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            final FetchResult result = mDownloader.download("Kitchener,on", null);
+            assertEquals(FetchResult.Status.OK, result.status);
+        }
+        assertEquals(5, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void testDownload_Gzip() throws Exception {
+        final FetchResult result = mDownloader.download("Kitchener,on", null);
+        assertEquals(FetchResult.Status.OK, result.status);
+        assertEquals(7, result.forecast.size());
+        assertTrue("bytes sent: " + mServer.getBytesSent(),
+                mServer.getBytesSent() < mUncompressedSize / 2);
+    }
+
+    @Test
+    public void testDownload_Uncompressed() throws Exception {
+        mServer.setGzipEnabled(false);
+        final FetchResult result = mDownloader.download("Kitchener,on", null);
+        assertEquals(FetchResult.Status.OK, result.status);
+        assertEquals(7, result.forecast.size());
+        assertEquals(mUncompressedSize, mServer.getBytesSent());
+    }
+
+}
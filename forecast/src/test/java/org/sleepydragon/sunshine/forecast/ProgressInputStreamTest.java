@@ -0,0 +1,112 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressInputStreamTest {
+
+    @Test
+    public void testRead_ByteThreshold() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[10000]),
+                10000, listener, 0, 1000);
+        readFully(in, 100);
+        in.close();
+
+        assertEquals(10, listener.mByteCounts.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1000L * (i + 1), (long) listener.mByteCounts.get(i));
+            assertEquals((i + 1) / 10.0f, listener.mFractions.get(i), 0.0001f);
+        }
+    }
+
+    @Test
+    public void testRead_TimeThreshold() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[10000]),
+                10000, listener, 60 * 60 * 1000, 1);
+        readFully(in, 100);
+
+        // the first report is not delayed, but the next is not due for an hour
+        assertEquals(2, listener.mByteCounts.size());
+        assertEquals(100L, (long) listener.mByteCounts.get(0));
+        assertEquals(10000L, (long) listener.mByteCounts.get(1));
+        assertEquals(1.0f, listener.mFractions.get(1), 0.0f);
+    }
+
+    @Test
+    public void testRead_UnknownLength() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[9000]),
+                -1, listener, 0, 4096);
+        readFully(in, 1000);
+
+        assertEquals(2, listener.mByteCounts.size());
+        assertEquals(5000L, (long) listener.mByteCounts.get(0));
+        assertEquals(9000L, (long) listener.mByteCounts.get(1));
+        for (final float fraction : listener.mFractions) {
+            assertTrue(Float.isNaN(fraction));
+        }
+    }
+
+    @Test
+    public void testClose_ReportsUnreportedBytes() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[5000]),
+                5000, listener, 0, 4096);
+        in.read(new byte[100]);
+        in.close();
+        in.close();
+
+        assertEquals(1, listener.mByteCounts.size());
+        assertEquals(100L, (long) listener.mByteCounts.get(0));
+        assertEquals(0.02f, listener.mFractions.get(0), 0.0001f);
+    }
+
+    @Test
+    public void testDownload_ReportsBytesOnWire() throws Exception {
+        final StandInHttpServer server = new StandInHttpServer();
+        try {
+            server.setResponseBody(Fixtures.forecastWithDays(200));
+            final ForecastDownloader downloader = new ForecastDownloader(
+                    server.getUrl("/data/2.5/forecast/daily").toString());
+            final RecordingListener listener = new RecordingListener();
+            final FetchResult result = downloader.download("Kitchener,on", null, listener);
+
+            assertEquals(FetchResult.Status.OK, result.status);
+            assertEquals(200, result.forecast.size());
+            final int reportCount = listener.mByteCounts.size();
+            assertTrue(reportCount >= 1);
+            assertEquals(server.getBytesSent(), (long) listener.mByteCounts.get(reportCount - 1));
+            assertEquals(1.0f, listener.mFractions.get(reportCount - 1), 0.0f);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void readFully(InputStream in, int bufferSize) throws Exception {
+        final byte[] buf = new byte[bufferSize];
+        while (in.read(buf) >= 0) {
+        }
+    }
+
+    private static class RecordingListener implements DownloadProgressListener {
+
+        public final List<Long> mByteCounts = new ArrayList<>();
+        public final List<Float> mFractions = new ArrayList<>();
+
+        @Override
+        public void onDownloadProgress(long byteCount, float fractionComplete) {
+            mByteCounts.add(byteCount);
+            mFractions.add(fractionComplete);
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshCoordinatorTest {
+
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private FakeTimer mTimer;
+    private RecordingRefresher mRefresher;
+    private RefreshCoordinator<String> mCoordinator;
+
+    @Before
+    public void setUp() {
+        mTimer = new FakeTimer();
+        mRefresher = new RecordingRefresher();
+        mCoordinator = new RefreshCoordinator<>(mTimer, mRefresher, DEBOUNCE_MILLIS);
+    }
+
+    @Test
+    public void testRequest_StartsAfterDebounceDelay() {
+        mCoordinator.request("City1");
+        mTimer.advance(DEBOUNCE_MILLIS - 1);
+        assertEquals(Collections.emptyList(), mRefresher.mStarted);
+        assertTrue(mCoordinator.isPending());
+
+        mTimer.advance(1);
+        assertEquals(Arrays.asList("City1"), mRefresher.mStarted);
+        assertFalse(mCoordinator.isPending());
+        assertTrue(mCoordinator.isInFlight());
+    }
+
+    @Test
+    public void testRequest_BurstStartsOnceForFinalParams() {
+        for (final String params : new String[] {"C", "Ci", "Cit", "City", "City2"}) {
+            mCoordinator.request(params);
+            mTimer.advance(DEBOUNCE_MILLIS / 2);
+        }
+        mTimer.advance(DEBOUNCE_MILLIS);
+
+        assertEquals(Arrays.asList("City2"), mRefresher.mStarted);
+        assertEquals(Collections.emptyList(), mRefresher.mCancelled);
+    }
+
+    @Test
+    public void testRequest_ReusesInFlightWithEqualParams() {
+        mCoordinator.requestNow("City1");
+        mCoordinator.request("City2");
+        mCoordinator.request("City1");
+        mTimer.advance(DEBOUNCE_MILLIS);
+
+        assertEquals(Arrays.asList("City1"), mRefresher.mStarted);
+        assertEquals(Collections.emptyList(), mRefresher.mCancelled);
+        assertTrue(mCoordinator.isInFlight());
+    }
+
+    @Test
+    public void testRequest_CancelsInFlightWithOtherParams() {
+        mCoordinator.requestNow("City1");
+        mCoordinator.request("City2");
+        mTimer.advance(DEBOUNCE_MILLIS);
+
+        assertEquals(Arrays.asList("City1", "City2"), mRefresher.mStarted);
+        assertEquals(Arrays.asList("City1"), mRefresher.mCancelled);
+    }
+
+    @Test
+    public void testRequestNow_CancelsPendingRequest() {
+        mCoordinator.request("City1");
+        mCoordinator.requestNow("City2");
+        mTimer.advance(DEBOUNCE_MILLIS);
+
+        assertEquals(Arrays.asList("City2"), mRefresher.mStarted);
+        assertFalse(mCoordinator.isPending());
+    }
+
+    @Test
+    public void testOnRefreshFinished_NextRequestStartsNewRefresh() {
+        mCoordinator.requestNow("City1");
+        mCoordinator.onRefreshFinished("City1");
+        assertFalse(mCoordinator.isInFlight());
+
+        mCoordinator.requestNow("City1");
+
+        assertEquals(Arrays.asList("City1", "City1"), mRefresher.mStarted);
+    }
+
+    @Test
+    public void testOnRefreshFinished_IgnoresOtherParams() {
+        mCoordinator.requestNow("City1");
+        mCoordinator.onRefreshFinished("City2");
+        assertTrue(mCoordinator.isInFlight());
+    }
+
+    @Test
+    public void testCancel() {
+        mCoordinator.requestNow("City1");
+        mCoordinator.request("City2");
+
+        mCoordinator.cancel();
+        mTimer.advance(DEBOUNCE_MILLIS);
+
+        assertEquals(Arrays.asList("City1"), mRefresher.mStarted);
+        assertEquals(Arrays.asList("City1"), mRefresher.mCancelled);
+        assertFalse(mCoordinator.isPending());
+        assertFalse(mCoordinator.isInFlight());
+    }
+
+    @Test
+    public void testNullParams() {
+        mCoordinator.requestNow(null);
+        mCoordinator.requestNow(null);
+        mCoordinator.onRefreshFinished(null);
+
+        assertEquals(Collections.singletonList((String) null), mRefresher.mStarted);
+        assertFalse(mCoordinator.isInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_NegativeDebounce() {
+        new RefreshCoordinator<>(mTimer, mRefresher, -1);
+    }
+
+    /**
+     * A timer that runs its tasks when the test advances its time.
+     */
+    private static class FakeTimer implements RefreshCoordinator.Timer {
+
+        private final List<ScheduledTask> mTasks = new ArrayList<>();
+        private long mTimeMillis;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            mTasks.add(new ScheduledTask(task, mTimeMillis + delayMillis));
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            final Iterator<ScheduledTask> it = mTasks.iterator();
+            while (it.hasNext()) {
+                if (it.next().task == task) {
+                    it.remove();
+                }
+            }
+        }
+
+        public void advance(long millis) {
+            mTimeMillis += millis;
+            final List<ScheduledTask> dueTasks = new ArrayList<>();
+            final Iterator<ScheduledTask> it = mTasks.iterator();
+            while (it.hasNext()) {
+                final ScheduledTask scheduledTask = it.next();
+                if (scheduledTask.timeMillis <= mTimeMillis) {
+                    dueTasks.add(scheduledTask);
+                    it.remove();
+                }
+            }
+            for (final ScheduledTask scheduledTask : dueTasks) {
+                scheduledTask.task.run();
+            }
+        }
+    }
+
+    private static class ScheduledTask {
+        public final Runnable task;
+        public final long timeMillis;
+
+        public ScheduledTask(Runnable task, long timeMillis) {
+            this.task = task;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    private static class RecordingRefresher implements RefreshCoordinator.Refresher<String> {
+
+        public final List<String> mStarted = new ArrayList<>();
+        public final List<String> mCancelled = new ArrayList<>();
+
+        @Override
+        public void startRefresh(String params) {
+            mStarted.add(params);
+        }
+
+        @Override
+        public void cancelRefresh(String params) {
+            mCancelled.add(params);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SizedLruCacheTest {
+
+    /**
+     * A cache whose values are sized by their length.
+     */
+    private static class StringCache extends SizedLruCache<String, String> {
+
+        StringCache(long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long sizeOf(String key, String value) {
+            return value.length();
+        }
+    }
+
+    private static final SizedLruCache.Filter<String, String> STARTS_WITH_A =
+            new SizedLruCache.Filter<String, String>() {
+                @Override
+                public boolean matches(String key, String value) {
+                    return key.startsWith("a");
+                }
+            };
+
+    @Test
+    public void testGet_CountsHitsAndMisses() {
+        final StringCache cache = new StringCache(10);
+        assertTrue(cache.put("a", "1", cache.getGeneration()));
+
+        assertEquals("1", cache.get("a"));
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed() {
+        final StringCache cache = new StringCache(6);
+        cache.put("a", "11", cache.getGeneration());
+        cache.put("b", "22", cache.getGeneration());
+        cache.put("c", "33", cache.getGeneration());
+        // makes "a" more recently used than "b"
+        cache.get("a");
+
+        cache.put("d", "4444", cache.getGeneration());
+
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals("11", cache.get("a"));
+        assertEquals("4444", cache.get("d"));
+        assertEquals(6, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testPut_ReplacesValue() {
+        final StringCache cache = new StringCache(10);
+        cache.put("a", "1", cache.getGeneration());
+        cache.put("a", "222", cache.getGeneration());
+
+        assertEquals("222", cache.get("a"));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(3, cache.getSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testPut_TooLarge() {
+        final StringCache cache = new StringCache(3);
+        cache.put("a", "1", cache.getGeneration());
+
+        assertFalse(cache.put("b", "2222", cache.getGeneration()));
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testPut_StaleGeneration() {
+        final StringCache cache = new StringCache(10);
+        // the value is computed from data that changes before it is added
+        final long generation = cache.getGeneration();
+        cache.removeAll(STARTS_WITH_A);
+
+        assertFalse(cache.put("a", "1", generation));
+
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", "1", cache.getGeneration()));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        final StringCache cache = new StringCache(10);
+        cache.put("a1", "1", cache.getGeneration());
+        cache.put("a2", "22", cache.getGeneration());
+        cache.put("b", "333", cache.getGeneration());
+
+        assertEquals(2, cache.removeAll(STARTS_WITH_A));
+
+        assertNull(cache.get("a1"));
+        assertNull(cache.get("a2"));
+        assertEquals("333", cache.get("b"));
+        assertEquals(3, cache.getSize());
+        // removals are not evictions
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFind() {
+        final StringCache cache = new StringCache(10);
+        cache.put("a", "1", cache.getGeneration());
+        cache.put("b", "2", cache.getGeneration());
+
+        assertEquals("1", cache.find(STARTS_WITH_A));
+        cache.removeAll(STARTS_WITH_A);
+        assertNull(cache.find(STARTS_WITH_A));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testFind_MakesMostRecentlyUsed() {
+        final StringCache cache = new StringCache(2);
+        cache.put("a", "1", cache.getGeneration());
+        cache.put("b", "2", cache.getGeneration());
+        cache.find(STARTS_WITH_A);
+
+        cache.put("c", "3", cache.getGeneration());
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testClear() {
+        final StringCache cache = new StringCache(10);
+        cache.put("a", "1", cache.getGeneration());
+        final long generation = cache.getGeneration();
+
+        cache.clear();
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+        assertFalse(cache.put("b", "2", generation));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_InvalidMaxSize() {
+        new SizedLruCache<String, String>(0);
+    }
+
+}
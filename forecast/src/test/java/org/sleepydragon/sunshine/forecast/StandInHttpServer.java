@@ -0,0 +1,290 @@
+package org.sleepydragon.sunshine.forecast;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local HTTP server that stands in for the OpenWeatherMap API in tests and benchmarks.
+ * <p>
+ * Every request is answered with the same body, which is configured with
+ * {@link #setResponseBody}.  If an ETag or Last-Modified value is configured then requests
+ * whose validators match are answered with "304 Not Modified".
+ * <p>
+ * Like the real API, the body is compressed with gzip if the request accepts it, unless that is
+ * disabled with {@link #setGzipEnabled}; the number of body bytes sent and the number of
+ * connections opened are counted so that the efficiency of the client can be measured.
+ * <p>
+ * Requests are handled concurrently, each after the delay configured with
+ * {@link #setResponseDelayMillis}, which simulates the latency of a real network.
+ */
+public class StandInHttpServer {
+
+    static {
+        // without TCP_NODELAY, the server's separate writes of the headers and body of each
+        // response interact with the client's delayed acknowledgements to add about 40 ms to
+        // every response on a persistent connection, swamping the latency being simulated
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final AtomicInteger mRequestCount;
+    private final AtomicInteger mNotModifiedCount;
+    private final AtomicInteger mConcurrentRequestCount;
+    private final AtomicInteger mMaxConcurrentRequestCount;
+    private final AtomicLong mBytesSent;
+    private final Set<InetSocketAddress> mClientAddresses;
+
+    private volatile ResponseBody mResponseBody;
+    private volatile boolean mGzipEnabled;
+    private volatile String mEtag;
+    private volatile String mLastModified;
+    private volatile String mCacheControl;
+    private volatile Headers mLastRequestHeaders;
+    private volatile long mResponseDelayMillis;
+
+    public StandInHttpServer() throws IOException {
+        mRequestCount = new AtomicInteger();
+        mNotModifiedCount = new AtomicInteger();
+        mConcurrentRequestCount = new AtomicInteger();
+        mMaxConcurrentRequestCount = new AtomicInteger();
+        mResponseBody = new ResponseBody("");
+        mBytesSent = new AtomicLong();
+        mClientAddresses =
+                Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+        mGzipEnabled = true;
+        mExecutor = Executors.newCachedThreadPool();
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        mServer = HttpServer.create(address, 0);
+        mServer.createContext("/", new MyHttpHandler());
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    public URL getUrl(String pathAndQuery) throws IOException {
+        final InetSocketAddress address = mServer.getAddress();
+        return new URL("http", address.getHostString(), address.getPort(), pathAndQuery);
+    }
+
+    public void setResponseBody(String responseBody) {
+        mResponseBody = new ResponseBody(responseBody);
+    }
+
+    /**
+     * Sets whether to compress the body of responses to requests that accept gzip; the default is
+     * true.
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        mGzipEnabled = gzipEnabled;
+    }
+
+    public void setEtag(String etag) {
+        mEtag = etag;
+    }
+
+    public void setLastModified(String lastModified) {
+        mLastModified = lastModified;
+    }
+
+    public void setCacheControl(String cacheControl) {
+        mCacheControl = cacheControl;
+    }
+
+    public void setResponseDelayMillis(long responseDelayMillis) {
+        mResponseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Returns the number of requests received, including those answered with "304 Not Modified".
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with "304 Not Modified".
+     */
+    public int getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    /**
+     * Returns the total number of response body bytes sent, as compressed if compressed; the
+     * headers are not included.
+     */
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    /**
+     * Returns the number of connections over which requests have been received, which is less than
+     * the number of requests if connections were reused.
+     */
+    public int getConnectionCount() {
+        return mClientAddresses.size();
+    }
+
+    /**
+     * Returns the greatest number of requests that were being handled at the same time.
+     */
+    public int getMaxConcurrentRequestCount() {
+        return mMaxConcurrentRequestCount.get();
+    }
+
+    /**
+     * Returns the value of the given header in the most recently received request; returns null
+     * if no request has been received or if the request did not have the given header.
+     */
+    public String getLastRequestHeader(String name) {
+        final Headers headers = mLastRequestHeaders;
+        return (headers == null) ? null : headers.getFirst(name);
+    }
+
+    private boolean isNotModified(Headers requestHeaders) {
+        final String etag = mEtag;
+        final String lastModified = mLastModified;
+        final String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        final String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals(etag);
+        }
+        return ifModifiedSince != null && ifModifiedSince.equals(lastModified);
+    }
+
+    private class MyHttpHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mRequestCount.incrementAndGet();
+            final int concurrentRequestCount = mConcurrentRequestCount.incrementAndGet();
+            final boolean processed;
+            try {
+                updateMaxConcurrentRequestCount(concurrentRequestCount);
+                processed = processRequest(exchange);
+            } finally {
+                // stop counting the request before sending its response, since the client may
+                // send its next request, such as on the same connection, as soon as it has
+                // received the response, which may be before this thread is scheduled again
+                mConcurrentRequestCount.decrementAndGet();
+            }
+            if (processed) {
+                sendResponse(exchange);
+            }
+        }
+
+        private void updateMaxConcurrentRequestCount(int concurrentRequestCount) {
+            while (true) {
+                final int max = mMaxConcurrentRequestCount.get();
+                if (concurrentRequestCount <= max || mMaxConcurrentRequestCount.compareAndSet(max,
+                        concurrentRequestCount)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Records the given request and waits for the response delay.
+         * @return true if the response should be sent, or false if the exchange was closed
+         * instead.
+         */
+        private boolean processRequest(HttpExchange exchange) {
+            mLastRequestHeaders = exchange.getRequestHeaders();
+            mClientAddresses.add(exchange.getRemoteAddress());
+
+            final long responseDelayMillis = mResponseDelayMillis;
+            if (responseDelayMillis > 0) {
+                try {
+                    Thread.sleep(responseDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void sendResponse(HttpExchange exchange) throws IOException {
+            final Headers responseHeaders = exchange.getResponseHeaders();
+            if (mEtag != null) {
+                responseHeaders.set("ETag", mEtag);
+            }
+            if (mLastModified != null) {
+                responseHeaders.set("Last-Modified", mLastModified);
+            }
+            if (mCacheControl != null) {
+                responseHeaders.set("Cache-Control", mCacheControl);
+            }
+
+            if (isNotModified(exchange.getRequestHeaders())) {
+                mNotModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            } else {
+                final ResponseBody responseBody = mResponseBody;
+                final String acceptEncoding = exchange.getRequestHeaders().getFirst(
+                        "Accept-Encoding");
+                final byte[] body;
+                if (mGzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    body = responseBody.mGzipped;
+                    responseHeaders.set("Content-Encoding", "gzip");
+                } else {
+                    body = responseBody.mPlain;
+                }
+                responseHeaders.set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                mBytesSent.addAndGet(body.length);
+                final OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+    /**
+     * A response body, along with its gzip-compressed form, which is computed in advance so that
+     * compression does not add to the measured response times.
+     */
+    private static class ResponseBody {
+
+        public final byte[] mPlain;
+        public final byte[] mGzipped;
+
+        public ResponseBody(String body) {
+            mPlain = body.getBytes(StandardCharsets.UTF_8);
+            final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+            try {
+                final GZIPOutputStream out = new GZIPOutputStream(gzipped);
+                out.write(mPlain);
+                out.close();
+            } catch (IOException e) {
+                throw new RuntimeException("compressing to memory failed", e);
+            }
+            mGzipped = gzipped.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyncPolicyTest {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long NOW_MILLIS = 1405789200000L;
+
+    private static SyncPolicy createPolicy(double jitterFraction) {
+        return new SyncPolicy(3 * HOUR_MILLIS, 5 * MINUTE_MILLIS, 2 * HOUR_MILLIS,
+                jitterFraction, new Random(1234));
+    }
+
+    @Test
+    public void testGetBaseDelayMillis_Success() {
+        assertEquals(3 * HOUR_MILLIS, createPolicy(0).getBaseDelayMillis(0));
+    }
+
+    @Test
+    public void testGetBaseDelayMillis_DoublesWithEachFailure() {
+        final SyncPolicy policy = createPolicy(0);
+        assertEquals(5 * MINUTE_MILLIS, policy.getBaseDelayMillis(1));
+        assertEquals(10 * MINUTE_MILLIS, policy.getBaseDelayMillis(2));
+        assertEquals(20 * MINUTE_MILLIS, policy.getBaseDelayMillis(3));
+        assertEquals(80 * MINUTE_MILLIS, policy.getBaseDelayMillis(5));
+        assertEquals(2 * HOUR_MILLIS, policy.getBaseDelayMillis(6));
+        // without overflowing
+        assertEquals(2 * HOUR_MILLIS, policy.getBaseDelayMillis(100));
+        assertEquals(2 * HOUR_MILLIS, policy.getBaseDelayMillis(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testGetDelayMillis_Jitter() {
+        final SyncPolicy policy = createPolicy(0.25);
+        final ArrayList<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final long delay = policy.getDelayMillis(0);
+            assertTrue(delay >= 3 * HOUR_MILLIS);
+            assertTrue(delay <= 3 * HOUR_MILLIS + 45 * MINUTE_MILLIS);
+            delays.add(delay);
+        }
+        // the delays are spread out rather than all the same
+        assertTrue(new HashSet<>(delays).size() > 90);
+    }
+
+    @Test
+    public void testGetDelayMillis_NoJitter() {
+        assertEquals(10 * MINUTE_MILLIS, createPolicy(0).getDelayMillis(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBaseDelayMillis_NegativeFailures() {
+        createPolicy(0).getBaseDelayMillis(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_MaxBackoffLessThanMin() {
+        new SyncPolicy(HOUR_MILLIS, 10 * MINUTE_MILLIS, 5 * MINUTE_MILLIS, 0, new Random());
+    }
+
+    @Test
+    public void testSelectCities() {
+        final SyncPolicy policy = createPolicy(0);
+        final Map<String, HttpCacheInfo> cities = new LinkedHashMap<>();
+        // fresh until well after the next sync
+        cities.put("Fresh", new HttpCacheInfo("\"a\"", null, NOW_MILLIS, 4 * HOUR_MILLIS));
+        // fresh now, but not at the next sync
+        cities.put("Expiring", new HttpCacheInfo("\"b\"", "Mon", NOW_MILLIS - HOUR_MILLIS,
+                2 * HOUR_MILLIS));
+        cities.put("Stale", new HttpCacheInfo(null, "Tue", NOW_MILLIS - 2 * HOUR_MILLIS,
+                HOUR_MILLIS));
+        cities.put("New", null);
+
+        final Map<String, HttpCacheInfo> selected = policy.selectCities(cities, NOW_MILLIS);
+
+        assertEquals(Arrays.asList("Expiring", "Stale", "New"),
+                new ArrayList<>(selected.keySet()));
+        // the validators are kept, so that the forecasts are revalidated, but not the freshness
+        final HttpCacheInfo expiring = selected.get("Expiring");
+        assertEquals("\"b\"", expiring.etag);
+        assertEquals("Mon", expiring.lastModified);
+        assertFalse(expiring.isFresh(NOW_MILLIS));
+        assertEquals("Tue", selected.get("Stale").lastModified);
+        assertNull(selected.get("New"));
+    }
+
+    @Test
+    public void testSelectCities_AllFresh() {
+        final SyncPolicy policy = createPolicy(0);
+        final Map<String, HttpCacheInfo> cities = new LinkedHashMap<>();
+        cities.put("City1", new HttpCacheInfo(null, null, NOW_MILLIS, 4 * HOUR_MILLIS));
+        cities.put("City2", new HttpCacheInfo(null, null, NOW_MILLIS - HOUR_MILLIS,
+                5 * HOUR_MILLIS));
+        assertTrue(policy.selectCities(cities, NOW_MILLIS).isEmpty());
+    }
+
+    @Test
+    public void testIsRetryable() {
+        assertTrue(SyncPolicy.isRetryable(FetchResult.Status.CONNECT_FAILED));
+        assertTrue(SyncPolicy.isRetryable(FetchResult.Status.DOWNLOAD_FAILED));
+        assertFalse(SyncPolicy.isRetryable(FetchResult.Status.INVALID_DATA));
+        assertFalse(SyncPolicy.isRetryable(FetchResult.Status.INVALID_URL));
+        assertFalse(SyncPolicy.isRetryable(FetchResult.Status.OK));
+    }
+
+}
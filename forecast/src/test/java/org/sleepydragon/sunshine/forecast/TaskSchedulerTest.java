@@ -0,0 +1,176 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TaskSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private TaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new TaskScheduler(2);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void testSubmit_Runs() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Future<?> future = mScheduler.submit(TaskScheduler.Lane.IO,
+                new CancellationToken(), new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.set(true);
+                    }
+                });
+        future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void testSubmit_ReportsException() throws Exception {
+        final RuntimeException exception = new RuntimeException("expected");
+        final AtomicReference<Throwable> reported = new AtomicReference<>();
+        final CountDownLatch reportedLatch = new CountDownLatch(1);
+        final Thread.UncaughtExceptionHandler oldHandler =
+                Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable t) {
+                reported.set(t);
+                reportedLatch.countDown();
+            }
+        });
+        try {
+            final Future<?> future = mScheduler.submit(TaskScheduler.Lane.IO,
+                    new CancellationToken(), new Runnable() {
+                        @Override
+                        public void run() {
+                            throw exception;
+                        }
+                    });
+            try {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("ExecutionException should have been thrown");
+            } catch (ExecutionException e) {
+                assertSame(exception, e.getCause());
+            }
+            assertTrue(reportedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertSame(exception, reported.get());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(oldHandler);
+        }
+    }
+
+    @Test
+    public void testSubmit_SkippedIfCancelled() throws Exception {
+        final CancellationToken token = new CancellationToken();
+        final CountDownLatch release = new CountDownLatch(1);
+        // occupy the single DB thread so that the next task is queued when its token is cancelled
+        mScheduler.submit(TaskScheduler.Lane.DB, new CancellationToken(), new AwaitRunnable(release));
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Future<?> future = mScheduler.submit(TaskScheduler.Lane.DB, token, new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        });
+
+        token.cancel();
+        release.countDown();
+        future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void testDbLane_Serial() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Future<?>[] futures = new Future<?>[8];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = mScheduler.submit(TaskScheduler.Lane.DB, new CancellationToken(),
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            final int count = running.incrementAndGet();
+                            synchronized (maxRunning) {
+                                maxRunning.set(Math.max(maxRunning.get(), count));
+                            }
+                            try {
+                                Thread.sleep(5);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            running.decrementAndGet();
+                        }
+                    });
+        }
+        for (final Future<?> future : futures) {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testLanes_Independent() throws Exception {
+        // block every IO thread; DB work must still run
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                mScheduler.submit(TaskScheduler.Lane.IO, new CancellationToken(),
+                        new AwaitRunnable(release));
+            }
+            final CountDownLatch done = new CountDownLatch(1);
+            mScheduler.submit(TaskScheduler.Lane.DB, new CancellationToken(), new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static class AwaitRunnable implements Runnable {
+
+        private final CountDownLatch mLatch;
+
+        public AwaitRunnable(CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.sleepydragon.sunshine.forecast;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class Utf8ReaderTest {
+
+    private static final String MIXED_TEXT =
+            "{\"name\":\"Montr\u00e9al\",\"description\":\"\u6674\u308c\",\"icon\":\"\ud83c\udf24\"}";
+
+    @Test
+    public void testRead_Ascii() throws Exception {
+        assertEquals("{\"cod\":\"200\"}", readAll(utf8("{\"cod\":\"200\"}"), 1024));
+    }
+
+    @Test
+    public void testRead_MultiByteCharacters() throws Exception {
+        assertEquals(MIXED_TEXT, readAll(utf8(MIXED_TEXT), 1024));
+    }
+
+    @Test
+    public void testRead_CharactersSplitAcrossReads() throws Exception {
+        // every character straddles the reads of a stream that returns one byte at a time, and the
+        // supplementary character straddles the reads of a caller with a one-character buffer
+        final InputStream in = new OneByteInputStream(utf8(MIXED_TEXT));
+        assertEquals(MIXED_TEXT, readAll(in, 1));
+    }
+
+    @Test
+    public void testRead_LongerThanBuffer() throws Exception {
+        final String json = Fixtures.forecastWithDays(200);
+        assertEquals(json, readAll(utf8(json), 1000));
+    }
+
+    @Test
+    public void testRead_Malformed() throws Exception {
+        final byte[] bytes = {'a', (byte) 0x80, 'b', (byte) 0xc3, 'c', (byte) 0xed, (byte) 0xa0,
+                (byte) 0x80, 'd', (byte) 0xe6};
+        // malformed sequences are replaced just as the JDK's decoder replaces them
+        final String expected = new String(bytes, StandardCharsets.UTF_8);
+        assertEquals("a\ufffdb\ufffdc\ufffdd\ufffd", expected);
+        assertEquals(expected,
+                readAll(new ByteArrayInputStream(bytes), 1024));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_Closed() throws Exception {
+        final Reader reader = new Utf8Reader(utf8("abc"));
+        reader.close();
+        reader.read(new char[1], 0, 1);
+    }
+
+    private static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readAll(InputStream in, int bufferSize) throws IOException {
+        final Reader reader = new Utf8Reader(in);
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final char[] buf = new char[bufferSize];
+            while (true) {
+                final int readCount = reader.read(buf, 0, buf.length);
+                if (readCount < 0) {
+                    break;
+                }
+                sb.append(buf, 0, readCount);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static class OneByteInputStream extends FilterInputStream {
+
+        public OneByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] buf, int offset, int count) throws IOException {
+            return super.read(buf, offset, Math.min(count, 1));
+        }
+    }
+
+}